@@ -14,9 +14,14 @@ import org.alex_melan.secureAuth.listeners.PlayerListener;
 import org.alex_melan.secureAuth.managers.AuthManager;
 import org.alex_melan.secureAuth.managers.SessionManager;
 import org.alex_melan.secureAuth.managers.LobbyManager;
+import org.alex_melan.secureAuth.managers.NetworkSessionSync;
 import org.alex_melan.secureAuth.config.ConfigManager;
+import org.alex_melan.secureAuth.utils.BreachedPasswordFilter;
+import org.alex_melan.secureAuth.utils.NamedThreadFactory;
 
+import java.io.File;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.logging.Level;
 
 public class SecureAuthPlugin extends JavaPlugin {
@@ -25,12 +30,18 @@ public class SecureAuthPlugin extends JavaPlugin {
     private DatabaseMigrations databaseMigrations;
     private AuthManager authManager;
     private SessionManager sessionManager;
+    private NetworkSessionSync networkSync;
     private LobbyManager lobbyManager;
     private ConfigManager configManager;
     private SecureAuthAPI api;
+    // НОВОЕ: Фильтр утёкших паролей (null пока не загружен или отключён)
+    private volatile BreachedPasswordFilter breachedPasswordFilter;
+    // ИСПРАВЛЕНО: Одна загрузка фильтра за раз - reload во время построения встаёт в очередь
+    private CompletableFuture<Void> breachedPasswordsLoading;
 
     private BukkitTask sessionCleanupTask;
     private BukkitTask autoSaveTask;
+    private BukkitTask activityFlushTask;
 
     private boolean fullyInitialized = false;
 
@@ -44,6 +55,9 @@ public class SecureAuthPlugin extends JavaPlugin {
             configManager = new ConfigManager(this);
             configManager.loadConfig();
 
+            // НОВОЕ: Построение фильтра утёкших паролей не зависит от БД
+            loadBreachedPasswords();
+
             // Асинхронная инициализация БД
             CompletableFuture.runAsync(() -> {
                 try {
@@ -61,6 +75,19 @@ public class SecureAuthPlugin extends JavaPlugin {
                         throw new RuntimeException("Проверка целостности базы данных не пройдена");
                     }
 
+                    // НОВОЕ: Фоновое обслуживание SQLite и сжатие профилей старого формата
+                    databaseManager.startMaintenance();
+                    databaseManager.startProfileConversion();
+
+                    // НОВОЕ: Подбор стоимости хеширования паролей под этот сервер
+                    if (configManager.isCalibrateOnStartup()) {
+                        databaseManager.calibratePasswordHashing(configManager.isCalibrationAutoApply())
+                                .exceptionally(ex -> {
+                                    getLogger().log(Level.WARNING, "Ошибка калибровки хеширования паролей", ex);
+                                    return null;
+                                });
+                    }
+
                     // Инициализация менеджеров после БД (в основном потоке)
                     Bukkit.getScheduler().runTask(this, () -> {
                         try {
@@ -91,11 +118,57 @@ public class SecureAuthPlugin extends JavaPlugin {
         }
     }
 
+    /**
+     * Загрузка фильтра утёкших паролей в отдельном потоке: построение из большого
+     * списка занимает секунды, до его окончания действует встроенный список
+     */
+    private synchronized void loadBreachedPasswords() {
+        if (!configManager.isBreachedPasswordsEnabled()) {
+            breachedPasswordFilter = null;
+            return;
+        }
+
+        File source = new File(getDataFolder(), configManager.getBreachedPasswordsFile());
+        File index = new File(getDataFolder(), source.getName() + ".bloom");
+        double falsePositiveRate = configManager.getBreachedPasswordsFalsePositiveRate();
+        long maxBytes = configManager.getBreachedPasswordsMaxBytes();
+
+        Runnable load = () -> {
+            try {
+                BreachedPasswordFilter filter = BreachedPasswordFilter.openOrBuild(source, index, falsePositiveRate, maxBytes, getLogger());
+                if (!configManager.isBreachedPasswordsEnabled()) {
+                    // Фильтр отключили через reload, пока он строился
+                    return;
+                }
+                breachedPasswordFilter = filter;
+                if (filter != null) {
+                    getLogger().info("Фильтр утёкших паролей загружен: " + filter.getEntries() + " паролей, "
+                            + (filter.getSizeBytes() / 1024) + " КБ, ложных срабатываний ~"
+                            + String.format("%.4f", filter.getExpectedFalsePositiveRate() * 100) + "%");
+                }
+            } catch (Exception e) {
+                getLogger().log(Level.WARNING, "Ошибка загрузки фильтра утёкших паролей " + index.getName(), e);
+            }
+        };
+
+        Executor thread = runnable -> new NamedThreadFactory("SecureAuth-Breached-Passwords").newThread(runnable).start();
+        breachedPasswordsLoading = breachedPasswordsLoading == null || breachedPasswordsLoading.isDone()
+                ? CompletableFuture.runAsync(load, thread)
+                : breachedPasswordsLoading.handle((ignored, ex) -> null).thenRunAsync(load, thread);
+    }
+
     private void initializeManagers() {
         getLogger().info("Инициализация менеджеров...");
 
         authManager = new AuthManager(this, databaseManager);
         sessionManager = new SessionManager(this, databaseManager);
+        sessionManager.loadActiveSessions();
+
+        // НОВОЕ: Общие сессии сети серверов
+        if (databaseManager.isNetworkMode()) {
+            networkSync = new NetworkSessionSync(this, databaseManager, sessionManager);
+            networkSync.start();
+        }
         lobbyManager = new LobbyManager(this);
 
         // Инициализируем API
@@ -128,22 +201,37 @@ public class SecureAuthPlugin extends JavaPlugin {
     private void startTasks() {
         getLogger().info("Запуск фоновых задач...");
 
-        // Очистка просроченных сессий каждые 5 минут
-        long cleanupInterval = 20L * 60 * 5; // 5 минут в тиках
+        // ИСПРАВЛЕНО: вместо полного обхода раз в 5 минут - наступившие сроки сессий
+        // и блокировок раз в секунду
         sessionCleanupTask = Bukkit.getScheduler().runTaskTimerAsynchronously(this, () -> {
             if (sessionManager != null && fullyInitialized) {
-                sessionManager.cleanExpiredSessions();
+                sessionManager.expireDue();
             }
-        }, cleanupInterval, cleanupInterval);
+        }, 20L, 20L);
 
         // Автосохранение данных игроков каждые 5 минут
         long autoSaveInterval = 20L * 60 * configManager.getAutoSaveInterval();
-        autoSaveTask = Bukkit.getScheduler().runTaskTimerAsynchronously(this, () -> {
+        // ИСПРАВЛЕНО: снимок игроков делается в основном потоке, сериализация и запись - в пуле БД.
+        // Прогресс (достижения, статистика, рецепты) снимается каждый N-й цикл и при выходе игрока
+        int progressEvery = configManager.getAutoSaveProgressEvery();
+        int[] autoSaveCycle = new int[1];
+        autoSaveTask = Bukkit.getScheduler().runTaskTimer(this, () -> {
             if (authManager != null && fullyInitialized) {
-                authManager.saveAllPlayerData();
+                boolean withProgress = ++autoSaveCycle[0] % progressEvery == 0;
+                authManager.saveAllPlayerData(withProgress);
             }
         }, autoSaveInterval, autoSaveInterval);
 
+        // НОВОЕ: Пакетная запись активности сессий
+        if (configManager.isSessionActivityPersisted()) {
+            long flushInterval = configManager.getSessionActivityFlushInterval() / 50;
+            activityFlushTask = Bukkit.getScheduler().runTaskTimerAsynchronously(this, () -> {
+                if (sessionManager != null && fullyInitialized) {
+                    sessionManager.flushActivity();
+                }
+            }, flushInterval, flushInterval);
+        }
+
         getLogger().info("Фоновые задачи запущены");
     }
 
@@ -160,16 +248,20 @@ public class SecureAuthPlugin extends JavaPlugin {
         // Сохранение данных игроков и закрытие БД
         if (authManager != null) {
             getLogger().info("Сохранение данных игроков...");
-            authManager.saveAllPlayerData();
-
-            try {
-                Thread.sleep(500);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
+            authManager.saveAllPlayerData(true);
         }
 
         if (sessionManager != null) {
+            sessionManager.flushActivity();
+        }
+
+        if (networkSync != null) {
+            networkSync.stop();
+        }
+
+        // ИСПРАВЛЕНО: при выключенной опции сессии переживают перезапуск.
+        // В режиме сети сессии общие и не завершаются при выключении одного сервера
+        if (sessionManager != null && configManager.isInvalidateSessionsOnShutdown() && networkSync == null) {
             getLogger().info("Деактивация активных сессий...");
             sessionManager.invalidateAllSessionsSync();
         }
@@ -177,12 +269,7 @@ public class SecureAuthPlugin extends JavaPlugin {
         if (databaseManager != null) {
             getLogger().info("Закрытие соединения с базой данных...");
 
-            try {
-                Thread.sleep(200);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
-
+            // ИСПРАВЛЕНО: вместо фиксированных пауз close() дожидается выполнения очереди БД
             databaseManager.close();
         }
 
@@ -199,6 +286,10 @@ public class SecureAuthPlugin extends JavaPlugin {
             autoSaveTask.cancel();
             getLogger().info("Задача автосохранения остановлена");
         }
+
+        if (activityFlushTask != null && !activityFlushTask.isCancelled()) {
+            activityFlushTask.cancel();
+        }
     }
 
     private void disablePlugin() {
@@ -219,6 +310,10 @@ public class SecureAuthPlugin extends JavaPlugin {
         return sessionManager;
     }
 
+    public NetworkSessionSync getNetworkSync() {
+        return networkSync;
+    }
+
     public LobbyManager getLobbyManager() {
         return lobbyManager;
     }
@@ -227,6 +322,10 @@ public class SecureAuthPlugin extends JavaPlugin {
         return configManager;
     }
 
+    public BreachedPasswordFilter getBreachedPasswordFilter() {
+        return breachedPasswordFilter;
+    }
+
     /**
      * Получение API для других плагинов
      * @return SecureAuthAPI экземпляр
@@ -252,6 +351,7 @@ public class SecureAuthPlugin extends JavaPlugin {
 
                 // Перезагружаем конфигурацию
                 configManager.loadConfig();
+                loadBreachedPasswords();
 
                 // Перезапускаем задачи с новыми интервалами
                 cancelTasks();
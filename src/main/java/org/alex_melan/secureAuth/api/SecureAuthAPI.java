@@ -1,11 +1,14 @@
 package org.alex_melan.secureAuth.api;
 
 import org.alex_melan.secureAuth.SecureAuthPlugin;
+import org.alex_melan.secureAuth.models.HashCalibration;
 import org.alex_melan.secureAuth.models.PlayerData;
+import org.alex_melan.secureAuth.utils.PasswordPolicy;
 import org.bukkit.entity.Player;
 import org.bukkit.event.Event;
 import org.bukkit.event.HandlerList;
 
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.logging.Level;
@@ -299,6 +302,70 @@ public class SecureAuthAPI {
         return plugin.reloadPlugin();
     }
 
+    /**
+     * Текущий алгоритм хеширования паролей и его параметры
+     *
+     * @return описание, например "bcrypt (раундов: 12)"
+     */
+    public String getPasswordHashingInfo() {
+        if (!plugin.isFullyInitialized()) {
+            return null;
+        }
+
+        return plugin.getDatabaseManager().getPasswordHashers().getCurrent().describe();
+    }
+
+    /**
+     * Результат последней калибровки хеширования паролей
+     *
+     * @return выбранные параметры и замеры, null если калибровка не выполнялась
+     */
+    public HashCalibration getLastHashCalibration() {
+        if (!plugin.isFullyInitialized()) {
+            return null;
+        }
+
+        return plugin.getDatabaseManager().getLastHashCalibration();
+    }
+
+    /**
+     * Калибровка стоимости хеширования паролей под процессор сервера (асинхронно)
+     *
+     * @param apply сразу использовать выбранные параметры для новых паролей
+     * @return CompletableFuture с результатом калибровки
+     */
+    public CompletableFuture<HashCalibration> calibratePasswordHashing(boolean apply) {
+        if (!plugin.isFullyInitialized()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return plugin.getDatabaseManager().calibratePasswordHashing(apply)
+                .exceptionally(ex -> {
+                    plugin.getLogger().log(Level.WARNING, "API: Ошибка калибровки хеширования паролей", ex);
+                    return null;
+                });
+    }
+
+    /**
+     * Проверка пароля по требованиям сервера (без хеширования)
+     *
+     * @param password пароль для проверки
+     * @param playerName никнейм игрока (null - без проверки вхождения никнейма)
+     * @return нарушения, сообщения для игрока и оценка надёжности
+     */
+    public PasswordPolicy.Result checkPassword(String password, String playerName) {
+        return plugin.getConfigManager().getPasswordPolicy().check(password, playerName);
+    }
+
+    /**
+     * Требования к паролю в том виде, в котором их видят игроки
+     *
+     * @return строки требований
+     */
+    public List<String> getPasswordRequirements() {
+        return plugin.getConfigManager().getPasswordPolicy().getRequirements();
+    }
+
     // Вложенные классы для возврата данных
 
     /**
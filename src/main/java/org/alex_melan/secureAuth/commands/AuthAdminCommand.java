@@ -1,6 +1,15 @@
 package org.alex_melan.secureAuth.commands;
 
 import org.alex_melan.secureAuth.SecureAuthPlugin;
+import org.alex_melan.secureAuth.database.DatabaseExecutor;
+import org.alex_melan.secureAuth.database.DatabaseWriter;
+import org.alex_melan.secureAuth.database.ProfileBlobConverter;
+import org.alex_melan.secureAuth.database.SQLiteMaintenance;
+import org.alex_melan.secureAuth.database.SecurityLogWriter;
+import org.alex_melan.secureAuth.managers.LoginRateLimiter;
+import org.alex_melan.secureAuth.managers.NetworkSessionSync;
+import org.alex_melan.secureAuth.utils.BreachedPasswordFilter;
+import org.alex_melan.secureAuth.utils.PasswordHashingPool;
 import org.bukkit.Bukkit;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
@@ -13,6 +22,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
 public class AuthAdminCommand implements CommandExecutor, TabCompleter {
@@ -71,6 +81,14 @@ public class AuthAdminCommand implements CommandExecutor, TabCompleter {
                 handleDebug(sender, args);
                 break;
 
+            case "db":
+                handleDatabaseStats(sender);
+                break;
+
+            case "calibrate":
+                handleCalibrate(sender, args);
+                break;
+
             case "help":
                 sendHelp(sender);
                 break;
@@ -206,6 +224,144 @@ public class AuthAdminCommand implements CommandExecutor, TabCompleter {
         });
     }
 
+    private void handleDatabaseStats(CommandSender sender) {
+        if (!sender.hasPermission("secureauth.admin")) {
+            sender.sendMessage(plugin.getConfigManager().getMessage("no-permission"));
+            return;
+        }
+
+        DatabaseExecutor executor = plugin.getDatabaseManager().getExecutor();
+
+        sender.sendMessage("§6=== Очередь базы данных ===");
+        sender.sendMessage("§7Потоков: §e" + executor.getThreadCount() + " §7(занято: §e" + executor.getActiveThreads() + "§7)");
+        sender.sendMessage("§7Лимит очереди: §e" + executor.getQueueCapacity());
+
+        for (DatabaseExecutor.Priority priority : DatabaseExecutor.Priority.values()) {
+            sender.sendMessage("§e" + priority.name().toLowerCase() + "§7: в очереди §e" + executor.getQueueDepth(priority)
+                    + "§7, ожидание ср. §e" + String.format("%.1f", executor.getAverageWaitMillis(priority))
+                    + "§7 / макс. §e" + String.format("%.1f", executor.getMaxWaitMillis(priority)) + "§7 мс");
+            sender.sendMessage("§7  выполнено: §e" + executor.getCompletedCount(priority)
+                    + "§7, отклонено: §e" + executor.getRejectedCount(priority));
+        }
+
+        PasswordHashingPool hashingPool = plugin.getDatabaseManager().getHashingPool();
+        sender.sendMessage("§7Хеширование паролей: потоков §e" + hashingPool.getThreadCount()
+                + "§7 (занято: §e" + hashingPool.getActiveThreads() + "§7), в очереди §e"
+                + hashingPool.getQueueDepth() + "/" + hashingPool.getQueueCapacity());
+        sender.sendMessage("§7  хеш ср. §e" + String.format("%.1f", hashingPool.getAverageHashMillis())
+                + "§7 / макс. §e" + String.format("%.1f", hashingPool.getMaxHashMillis())
+                + "§7 мс, ожидание ср. §e" + String.format("%.1f", hashingPool.getAverageWaitMillis())
+                + "§7 мс, выполнено: §e" + hashingPool.getCompletedCount());
+        sender.sendMessage("§7  отклонено: очередь §e" + hashingPool.getRejectedCount(PasswordHashingPool.Rejection.QUEUE_FULL)
+                + "§7, лимит IP §e" + hashingPool.getRejectedCount(PasswordHashingPool.Rejection.IP_LIMIT)
+                + "§7, лимит аккаунта §e" + hashingPool.getRejectedCount(PasswordHashingPool.Rejection.ACCOUNT_LIMIT));
+
+        LoginRateLimiter rateLimiter = plugin.getSessionManager().getLoginRateLimiter();
+        if (rateLimiter.isEnabled()) {
+            sender.sendMessage("§7Лимит попыток входа: отклонено по IP §e" + rateLimiter.getRejectedCount(LoginRateLimiter.Limit.IP)
+                    + "§7, по аккаунту §e" + rateLimiter.getRejectedCount(LoginRateLimiter.Limit.ACCOUNT)
+                    + "§7, общим §e" + rateLimiter.getRejectedCount(LoginRateLimiter.Limit.GLOBAL)
+                    + "§7 (отслеживается ключей: §e" + rateLimiter.getTrackedKeys() + "§7)");
+        }
+
+        BreachedPasswordFilter breached = plugin.getBreachedPasswordFilter();
+        if (breached != null) {
+            sender.sendMessage("§7Фильтр утёкших паролей: §e" + breached.getEntries() + "§7 паролей, §e"
+                    + (breached.getSizeBytes() / 1024) + "§7 КБ, хешей §e" + breached.getHashCount()
+                    + "§7, ложных срабатываний ~§e" + String.format("%.4f", breached.getExpectedFalsePositiveRate() * 100) + "%");
+        }
+
+        DatabaseWriter writer = plugin.getDatabaseManager().getWriter();
+        if (writer != null) {
+            sender.sendMessage("§7Поток записи: в очереди §e" + writer.getQueueDepth()
+                    + "§7, коммитов §e" + writer.getCommitCount() + "§7, команд §e" + writer.getCommandCount()
+                    + "§7, ошибок §e" + writer.getFailedCount());
+            sender.sendMessage("§7  пачка ср. §e" + String.format("%.1f", writer.getAverageBatchSize())
+                    + "§7 / макс. §e" + writer.getMaxBatchSize()
+                    + "§7, коммит ср. §e" + String.format("%.1f", writer.getAverageCommitMillis())
+                    + "§7 / макс. §e" + String.format("%.1f", writer.getMaxCommitMillis()) + "§7 мс");
+        }
+
+        if (plugin.getAuthManager() != null) {
+            sender.sendMessage("§7Последнее автосохранение: §e" + plugin.getAuthManager().getLastSaveCycleWrites()
+                    + "§7 записей, §e" + plugin.getAuthManager().getLastSaveCycleBytes() + "§7 байт (всего: §e"
+                    + plugin.getAuthManager().getTotalSavedBytes() + "§7 байт)");
+        }
+
+        SQLiteMaintenance maintenance = plugin.getDatabaseManager().getMaintenance();
+        if (maintenance != null) {
+            sender.sendMessage("§7Файл SQLite: §e" + formatSize(maintenance.getDatabaseFileSize())
+                    + "§7, WAL: §e" + formatSize(maintenance.getWalFileSize())
+                    + "§7, свободно внутри: §e" + formatSize(maintenance.getFreelistBytes()));
+            sender.sendMessage("§7  контрольных точек: §e" + maintenance.getCheckpointCount()
+                    + "§7 (последняя: §e" + maintenance.getLastCheckpointedPages() + "/" + maintenance.getLastCheckpointLogPages()
+                    + "§7 страниц" + (maintenance.isLastCheckpointBusy() ? ", §cзанято§7" : "")
+                    + ", §e" + String.format("%.1f", maintenance.getLastCheckpointMillis())
+                    + "§7 / макс. §e" + String.format("%.1f", maintenance.getMaxCheckpointMillis()) + "§7 мс)");
+            sender.sendMessage("§7  возвращено vacuum: §e" + formatSize(maintenance.getVacuumedBytes())
+                    + (maintenance.isIncrementalVacuum() ? "" : " §c(auto_vacuum не INCREMENTAL)")
+                    + "§7, optimize: §e" + maintenance.getOptimizeRuns() + "§7 раз");
+        }
+
+        ProfileBlobConverter converter = plugin.getDatabaseManager().getProfileConverter();
+        if (converter != null && converter.getConvertedProfiles() > 0) {
+            sender.sendMessage("§7Сжатие профилей: §e" + converter.getConvertedProfiles() + "§7 сконвертировано"
+                    + (converter.isRunning() ? " §e(идёт)" : "") + "§7, в среднем §e" + converter.getAverageBytesBefore()
+                    + "§7 -> §e" + converter.getAverageBytesAfter() + "§7 байт на профиль");
+        }
+
+        NetworkSessionSync networkSync = plugin.getNetworkSync();
+        if (networkSync != null) {
+            sender.sendMessage("§7Сеть: сервер §e" + plugin.getDatabaseManager().getServerId()
+                    + "§7, последнее событие: §e#" + networkSync.getLastEventId()
+                    + "§7, применено событий других серверов: §e" + networkSync.getAppliedEvents());
+        }
+
+        SecurityLogWriter logWriter = plugin.getDatabaseManager().getSecurityLogWriter();
+        if (logWriter != null) {
+            sender.sendMessage("§7Лог безопасности: §e" + logWriter.getBufferedCount() + "/" + logWriter.getCapacity()
+                    + " §7в буфере (§e" + logWriter.getOverflowPolicy() + "§7)");
+            sender.sendMessage("§7  записано: §e" + logWriter.getWrittenCount()
+                    + "§7 за §e" + logWriter.getFlushCount() + "§7 транзакций, отброшено: §e" + logWriter.getDroppedCount()
+                    + "§7, ошибок: §e" + logWriter.getFailedCount());
+        }
+
+        sender.sendMessage("§6===========================");
+    }
+
+    private void handleCalibrate(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("secureauth.admin")) {
+            sender.sendMessage(plugin.getConfigManager().getMessage("no-permission"));
+            return;
+        }
+
+        boolean apply = args.length > 1 && "apply".equalsIgnoreCase(args[1]);
+        sender.sendMessage("§7Калибровка хеширования паролей (" + plugin.getDatabaseManager().getPasswordHashers().getCurrent().describe()
+                + ")§7, это займёт несколько секунд...");
+
+        plugin.getDatabaseManager().calibratePasswordHashing(apply).whenComplete((calibration, ex) -> {
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                if (ex != null) {
+                    sender.sendMessage("§cОшибка калибровки: " + ex.getMessage());
+                    return;
+                }
+
+                sender.sendMessage("§6=== Калибровка хеширования ===");
+                sender.sendMessage("§7Бюджет на хеш: §e" + calibration.getBudgetMillis() + "§7 мс");
+                for (Map.Entry<String, Double> measurement : calibration.getMeasurements().entrySet()) {
+                    sender.sendMessage("§7  " + measurement.getKey() + " - §e" + String.format("%.1f", measurement.getValue()) + "§7 мс");
+                }
+                if (calibration.isApplied()) {
+                    sender.sendMessage("§aПрименено и сохранено в config.yml: §e" + calibration.getParameters()
+                            + "§a. Хеши игроков обновятся при следующем входе.");
+                } else {
+                    sender.sendMessage("§7Рекомендуется: §e" + calibration.getParameters()
+                            + "§7. Применить сейчас: §e/secureauth calibrate apply");
+                }
+            });
+        });
+    }
+
     private void handlePlayerInfo(CommandSender sender, String[] args) {
         if (!sender.hasPermission("secureauth.admin")) {
             sender.sendMessage(plugin.getConfigManager().getMessage("no-permission"));
@@ -220,7 +376,7 @@ public class AuthAdminCommand implements CommandExecutor, TabCompleter {
         String playerName = args[1];
 
         CompletableFuture.runAsync(() -> {
-            plugin.getDatabaseManager().getPlayerData(playerName).thenAccept(data -> {
+            plugin.getDatabaseManager().getPlayerSummary(playerName).thenAccept(data -> {
                 Bukkit.getScheduler().runTask(plugin, () -> {
                     if (data != null) {
                         boolean isOnline = Bukkit.getPlayerExact(playerName) != null;
@@ -297,11 +453,20 @@ public class AuthAdminCommand implements CommandExecutor, TabCompleter {
         sender.sendMessage("§e/secureauth cleanup §7- очистить просроченные данные");
         sender.sendMessage("§e/secureauth stats §7- статистика плагина");
         sender.sendMessage("§e/secureauth info <игрок> §7- информация об игроке");
+        sender.sendMessage("§e/secureauth db §7- состояние очереди базы данных");
+        sender.sendMessage("§e/secureauth calibrate [apply] §7- подобрать стоимость хеширования паролей");
         sender.sendMessage("§e/secureauth version §7- информация о версии");
         sender.sendMessage("§e/secureauth debug <on|off|info> §7- режим отладки");
         sender.sendMessage("§6===============================================");
     }
 
+    private String formatSize(long bytes) {
+        if (bytes < 1024 * 1024) {
+            return String.format("%.1f КБ", bytes / 1024.0);
+        }
+        return String.format("%.1f МБ", bytes / 1024.0 / 1024.0);
+    }
+
     private String formatDate(long timestamp) {
         if (timestamp == 0) {
             return "никогда";
@@ -338,7 +503,7 @@ public class AuthAdminCommand implements CommandExecutor, TabCompleter {
             // Первый аргумент - подкоманды
             List<String> subCommands = Arrays.asList(
                     "reload", "forcelogout", "sessions", "cleanup",
-                    "stats", "info", "version", "debug", "help"
+                    "stats", "info", "db", "calibrate", "version", "debug", "help"
             );
 
             String partial = args[0].toLowerCase();
@@ -358,6 +523,10 @@ public class AuthAdminCommand implements CommandExecutor, TabCompleter {
                         completions.add(player.getName());
                     }
                 }
+            } else if ("calibrate".equals(subCommand)) {
+                if ("apply".startsWith(args[1].toLowerCase())) {
+                    completions.add("apply");
+                }
             } else if ("debug".equals(subCommand)) {
                 // Автодополнение для debug команды
                 List<String> debugArgs = Arrays.asList("on", "off", "info");
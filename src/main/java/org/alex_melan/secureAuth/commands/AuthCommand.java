@@ -1,6 +1,8 @@
 package org.alex_melan.secureAuth.commands;
 
 import org.alex_melan.secureAuth.SecureAuthPlugin;
+import org.alex_melan.secureAuth.managers.AuthSession;
+import org.alex_melan.secureAuth.managers.LoginRateLimiter;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
@@ -62,99 +64,112 @@ public class AuthCommand implements CommandExecutor {
             return true;
         }
 
-        // Проверка существования аккаунта
-        plugin.getDatabaseManager().isPlayerRegistered(username)
-                .thenAccept(registered -> {
-                    plugin.getServer().getScheduler().runTask(plugin, () -> {
-                        if (!registered) {
-                            player.sendMessage(plugin.getConfigManager().getMessage("login-not-registered"));
-                            return;
-                        }
-
-                        // Асинхронная аутентификация
-                        authenticatePlayer(player, password, ipAddress);
-                    });
-                })
-                .exceptionally(ex -> {
-                    plugin.getLogger().severe("Ошибка проверки регистрации для игрока " + username + ": " + ex.getMessage());
-                    plugin.getServer().getScheduler().runTask(plugin, () -> {
-                        player.sendMessage(plugin.getConfigManager().getMessage("error-database"));
-                    });
-                    return null;
-                });
+        // НОВОЕ: Лимит частоты попыток - до чтения аккаунта и проверки пароля
+        LoginRateLimiter.Decision rate = plugin.getSessionManager().checkLoginRate(ipAddress, username);
+        if (!rate.isAllowed()) {
+            player.sendMessage(plugin.getConfigManager().getMessage(
+                    "rate-limit-" + rate.getLimit().name().toLowerCase(), String.valueOf(rate.getRetryAfterSeconds())));
+            return true;
+        }
 
-        return true;
-    }
+        // НОВОЕ: Только один вход за раз - повторный /login во время проверки отклоняется
+        AuthSession authSession = plugin.getSessionManager().getAuthSession(username);
+        if (!authSession.transition(AuthSession.State.UNAUTHENTICATED, AuthSession.State.VERIFYING)) {
+            // ИСПРАВЛЕНО: сообщение по фактическому состоянию
+            switch (authSession.getState()) {
+                case CONNECTING:
+                case RESOLVING:
+                    player.sendMessage("§eПроверяется сохранённая сессия, подождите...");
+                    break;
+                case RESTORING:
+                case AUTHENTICATED:
+                    player.sendMessage(plugin.getConfigManager().getMessage("login-already-authenticated"));
+                    break;
+                default:
+                    player.sendMessage("§eПроверка уже выполняется, подождите...");
+                    break;
+            }
+            return true;
+        }
 
-    private void authenticatePlayer(Player player, String password, String ipAddress) {
-        String username = player.getName();
+        // ИСПРАВЛЕНО: Вход одной операцией - пароль и профиль читаются одним запросом,
+        // время входа, сессия и запись аудита пишутся одной транзакцией
+        authSession.handoff(plugin.getAuthManager().login(username, password, ipAddress), (result, ex) -> {
+            if (ex != null) {
+                plugin.getLogger().severe("Ошибка аутентификации игрока " + username + ": " + ex.getMessage());
+                authSession.transition(AuthSession.State.VERIFYING, AuthSession.State.UNAUTHENTICATED);
+                player.sendMessage(plugin.getConfigManager().getMessage("error-database"));
+                return;
+            }
+
+            switch (result.getStatus()) {
+                case SUCCESS:
+                    handleSuccessfulLogin(player, authSession, ipAddress);
+                    return;
+                case NOT_REGISTERED:
+                    player.sendMessage(plugin.getConfigManager().getMessage("login-not-registered"));
+                    break;
+                case WRONG_PASSWORD:
+                    handleFailedLogin(player, ipAddress);
+                    break;
+                case RAPID_IP_CHANGE:
+                    player.sendMessage(plugin.getConfigManager().getMessage("error-session"));
+                    plugin.getLogger().warning("Не удалось создать сессию для игрока " + username);
+                    break;
+                case BUSY:
+                    // Попытка не проверялась и не считается неудачной
+                    player.sendMessage(plugin.getConfigManager().getMessage("error-server-busy"));
+                    break;
+                default:
+                    player.sendMessage(plugin.getConfigManager().getMessage("error-database"));
+                    break;
+            }
+            authSession.transition(AuthSession.State.VERIFYING, AuthSession.State.UNAUTHENTICATED);
+        }, (result, ex) -> {
+            // Игрок вышел во время проверки
+            plugin.getLogger().info("Игрок " + username + " отключился во время аутентификации");
+            if (result != null && result.isSuccess()) {
+                plugin.getSessionManager().invalidateSession(username);
+                plugin.getAuthManager().removeCachedData(username);
+            }
+        });
 
-        plugin.getAuthManager().authenticatePlayer(username, password, ipAddress)
-                .thenAccept(success -> {
-                    plugin.getServer().getScheduler().runTask(plugin, () -> {
-                        // Проверяем что игрок все еще онлайн
-                        if (!player.isOnline()) {
-                            plugin.getLogger().info("Игрок " + username + " отключился во время аутентификации");
-                            return;
-                        }
-
-                        if (success) {
-                            handleSuccessfulLogin(player, ipAddress);
-                        } else {
-                            handleFailedLogin(player, ipAddress);
-                        }
-                    });
-                })
-                .exceptionally(ex -> {
-                    plugin.getLogger().severe("Ошибка аутентификации игрока " + username + ": " + ex.getMessage());
-                    plugin.getServer().getScheduler().runTask(plugin, () -> {
-                        if (player.isOnline()) {
-                            player.sendMessage(plugin.getConfigManager().getMessage("error-database"));
-                        }
-                    });
-                    return null;
-                });
+        return true;
     }
 
-    private void handleSuccessfulLogin(Player player, String ipAddress) {
+    private void handleSuccessfulLogin(Player player, AuthSession authSession, String ipAddress) {
         String username = player.getName();
 
         // Очищаем неудачные попытки
         plugin.getSessionManager().clearFailedLogins(ipAddress);
 
-        // Создание сессии
-        plugin.getSessionManager().createSession(username, ipAddress)
-                .thenAccept(sessionCreated -> {
-                    plugin.getServer().getScheduler().runTask(plugin, () -> {
-                        if (!player.isOnline()) {
-                            return;
-                        }
-
-                        if (sessionCreated) {
-                            // Загружаем данные игрока и возвращаем в мир
-                            loadPlayerDataAndReturn(player);
-                        } else {
-                            player.sendMessage(plugin.getConfigManager().getMessage("error-session"));
-                            plugin.getLogger().warning("Не удалось создать сессию для игрока " + username);
-                        }
-                    });
-                })
-                .exceptionally(ex -> {
-                    plugin.getLogger().severe("Ошибка создания сессии для игрока " + username + ": " + ex.getMessage());
-                    plugin.getServer().getScheduler().runTask(plugin, () -> {
-                        if (player.isOnline()) {
-                            player.sendMessage(plugin.getConfigManager().getMessage("error-session"));
-                        }
-                    });
-                    return null;
-                });
+        // ИСПРАВЛЕНО: данные проверены и кешированы при входе - возврат из лобби в этом же тике
+        authSession.transition(AuthSession.State.VERIFYING, AuthSession.State.RESTORING);
+        plugin.getLobbyManager().returnFromAuthLobby(player, plugin.getAuthManager().getCachedPlayerData(username));
+        authSession.transition(AuthSession.State.RESTORING, AuthSession.State.AUTHENTICATED);
+
+        // Отправляем сообщение об успешном входе
+        player.sendMessage(plugin.getConfigManager().getMessage("login-success"));
+
+        // Логируем успешный вход
+        if (plugin.getConfigManager().isLogSuccessfulLogins()) {
+            plugin.getDatabaseManager().logSecurityAction(
+                    username,
+                    ipAddress,
+                    "SUCCESSFUL_LOGIN",
+                    true,
+                    "Player logged in successfully"
+            );
+        }
+
+        plugin.getLogger().info("Игрок " + username + " успешно авторизован");
     }
 
     private void handleFailedLogin(Player player, String ipAddress) {
         String username = player.getName();
 
         // Записываем неудачную попытку
-        plugin.getSessionManager().recordFailedLogin(ipAddress);
+        int attempt = plugin.getSessionManager().recordFailedLogin(ipAddress);
 
         // Отправляем сообщение об ошибке
         player.sendMessage(plugin.getConfigManager().getMessage("login-wrong-password"));
@@ -180,54 +195,8 @@ public class AuthCommand implements CommandExecutor {
                     ipAddress,
                     "FAILED_LOGIN",
                     false,
-                    "Invalid password attempt"
+                    "Invalid password attempt " + attempt + "/" + plugin.getConfigManager().getMaxLoginAttempts()
             );
         }
     }
-
-    private void loadPlayerDataAndReturn(Player player) {
-        String username = player.getName();
-
-        plugin.getAuthManager().loadPlayerData(username)
-                .thenAccept(data -> {
-                    plugin.getServer().getScheduler().runTask(plugin, () -> {
-                        if (!player.isOnline()) {
-                            return;
-                        }
-
-                        if (data != null) {
-                            // Возвращаем игрока из лобби авторизации
-                            plugin.getLobbyManager().returnFromAuthLobby(player);
-
-                            // Отправляем сообщение об успешном входе
-                            player.sendMessage(plugin.getConfigManager().getMessage("login-success"));
-
-                            // Логируем успешный вход
-                            if (plugin.getConfigManager().isLogSuccessfulLogins()) {
-                                plugin.getDatabaseManager().logSecurityAction(
-                                        username,
-                                        player.getAddress().getAddress().getHostAddress(),
-                                        "SUCCESSFUL_LOGIN",
-                                        true,
-                                        "Player logged in successfully"
-                                );
-                            }
-
-                            plugin.getLogger().info("Игрок " + username + " успешно авторизован");
-                        } else {
-                            player.sendMessage(plugin.getConfigManager().getMessage("error-load-data"));
-                            plugin.getLogger().warning("Не удалось загрузить данные игрока " + username);
-                        }
-                    });
-                })
-                .exceptionally(ex -> {
-                    plugin.getLogger().severe("Ошибка загрузки данных игрока " + username + ": " + ex.getMessage());
-                    plugin.getServer().getScheduler().runTask(plugin, () -> {
-                        if (player.isOnline()) {
-                            player.sendMessage(plugin.getConfigManager().getMessage("error-load-data"));
-                        }
-                    });
-                    return null;
-                });
-    }
 }
\ No newline at end of file
@@ -34,10 +34,7 @@ public class LogoutCommand implements CommandExecutor {
             return true;
         }
 
-        // ИСПРАВЛЕНО: Принудительно обновляем кеш с текущими данными
-        plugin.getAuthManager().forceCacheUpdate(player);
-
-        // Сохраняем данные игрока ПЕРЕД деактивацией сессии
+        // Сохраняем данные игрока ПЕРЕД деактивацией сессии (снимок делается сразу)
         plugin.getAuthManager().savePlayerData(player);
 
         // ИСПРАВЛЕНО: Деактивируем сессию ПЕРЕД отправкой в лобби
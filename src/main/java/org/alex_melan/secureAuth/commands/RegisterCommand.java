@@ -1,12 +1,19 @@
 package org.alex_melan.secureAuth.commands;
 
 import org.alex_melan.secureAuth.SecureAuthPlugin;
+import org.alex_melan.secureAuth.managers.AuthManager;
+import org.alex_melan.secureAuth.managers.AuthSession;
+import org.alex_melan.secureAuth.managers.LoginRateLimiter;
+import org.alex_melan.secureAuth.utils.PasswordHashingPool;
+import org.alex_melan.secureAuth.utils.PasswordPolicy;
 import org.alex_melan.secureAuth.utils.PasswordUtils;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 
+import java.util.concurrent.CompletableFuture;
+
 public class RegisterCommand implements CommandExecutor {
 
     private final SecureAuthPlugin plugin;
@@ -70,32 +77,86 @@ public class RegisterCommand implements CommandExecutor {
             return true;
         }
 
-        // Проверка существования аккаунта
-        plugin.getDatabaseManager().isPlayerRegistered(username)
-                .thenAccept(alreadyRegistered -> {
-                    plugin.getServer().getScheduler().runTask(plugin, () -> {
-                        if (!player.isOnline()) {
-                            return;
-                        }
-
-                        if (alreadyRegistered) {
-                            player.sendMessage(plugin.getConfigManager().getMessage("register-already-registered"));
-                            return;
-                        }
-
-                        // Асинхронная регистрация
-                        registerPlayer(player, password);
-                    });
-                })
-                .exceptionally(ex -> {
-                    plugin.getLogger().severe("Ошибка проверки регистрации для игрока " + username + ": " + ex.getMessage());
-                    plugin.getServer().getScheduler().runTask(plugin, () -> {
-                        if (player.isOnline()) {
-                            player.sendMessage(plugin.getConfigManager().getMessage("error-database"));
-                        }
-                    });
-                    return null;
-                });
+        // НОВОЕ: Лимит частоты попыток - до хеширования пароля
+        LoginRateLimiter.Decision rate = plugin.getSessionManager().checkLoginRate(ipAddress, username);
+        if (!rate.isAllowed()) {
+            player.sendMessage(plugin.getConfigManager().getMessage(
+                    "rate-limit-" + rate.getLimit().name().toLowerCase(), String.valueOf(rate.getRetryAfterSeconds())));
+            return true;
+        }
+
+        // НОВОЕ: Только одна регистрация или вход за раз
+        AuthSession authSession = plugin.getSessionManager().getAuthSession(username);
+        if (!authSession.transition(AuthSession.State.UNAUTHENTICATED, AuthSession.State.VERIFYING)) {
+            // ИСПРАВЛЕНО: сообщение по фактическому состоянию
+            switch (authSession.getState()) {
+                case CONNECTING:
+                case RESOLVING:
+                    player.sendMessage("§eПроверяется сохранённая сессия, подождите...");
+                    break;
+                case RESTORING:
+                case AUTHENTICATED:
+                    player.sendMessage(plugin.getConfigManager().getMessage("register-already-registered"));
+                    break;
+                default:
+                    player.sendMessage("§eПроверка уже выполняется, подождите...");
+                    break;
+            }
+            return true;
+        }
+
+        // ИСПРАВЛЕНО: проверка аккаунта, регистрация, сессия и загрузка данных - одна цепочка
+        // и одна передача результата в основной поток
+        AuthManager authManager = plugin.getAuthManager();
+        CompletableFuture<Outcome> registration = plugin.getDatabaseManager().isPlayerRegistered(username)
+                .thenCompose(alreadyRegistered -> alreadyRegistered
+                        ? CompletableFuture.completedFuture(Outcome.ALREADY_REGISTERED)
+                        : authManager.registerPlayer(username, password, player.getUniqueId(), ipAddress)
+                        .thenCompose(success -> !success
+                                ? CompletableFuture.completedFuture(Outcome.FAILED)
+                                : plugin.getSessionManager().createSession(username, ipAddress)
+                                .thenCompose(sessionCreated -> !sessionCreated
+                                        ? CompletableFuture.completedFuture(Outcome.NO_SESSION)
+                                        : authManager.loadPlayerData(username).thenApply(data -> Outcome.LOGGED_IN))));
+
+        authSession.handoff(registration, (outcome, ex) -> {
+            if (ex != null) {
+                authSession.transition(AuthSession.State.VERIFYING, AuthSession.State.UNAUTHENTICATED);
+                if (ex.getCause() instanceof PasswordHashingPool.RejectedException) {
+                    player.sendMessage(plugin.getConfigManager().getMessage("error-server-busy"));
+                    return;
+                }
+                plugin.getLogger().severe("Ошибка регистрации игрока " + username + ": " + ex.getMessage());
+                player.sendMessage(plugin.getConfigManager().getMessage("error-database"));
+                return;
+            }
+
+            switch (outcome) {
+                case ALREADY_REGISTERED:
+                    authSession.transition(AuthSession.State.VERIFYING, AuthSession.State.UNAUTHENTICATED);
+                    player.sendMessage(plugin.getConfigManager().getMessage("register-already-registered"));
+                    break;
+                case FAILED:
+                    authSession.transition(AuthSession.State.VERIFYING, AuthSession.State.UNAUTHENTICATED);
+                    handleFailedRegistration(player);
+                    break;
+                case NO_SESSION:
+                    authSession.transition(AuthSession.State.VERIFYING, AuthSession.State.UNAUTHENTICATED);
+                    handleSuccessfulRegistration(player);
+                    player.sendMessage("§cОшибка автоматического входа! Используйте /login <пароль>");
+                    break;
+                case LOGGED_IN:
+                    handleSuccessfulRegistration(player);
+                    handleAutoLogin(player, authSession);
+                    break;
+            }
+        }, (outcome, ex) -> {
+            // Игрок вышел во время регистрации - созданная сессия не нужна
+            if (outcome == Outcome.LOGGED_IN) {
+                plugin.getSessionManager().invalidateSession(username);
+                plugin.getAuthManager().removeCachedData(username);
+            }
+        });
 
         return true;
     }
@@ -107,113 +168,33 @@ public class RegisterCommand implements CommandExecutor {
             return false;
         }
 
-        // Проверка сложности пароля (если включена)
-        if (plugin.getConfigManager().isPasswordComplexityEnforced()) {
-            if (!PasswordUtils.isPasswordValid(password)) {
-                int minLength = plugin.getConfigManager().getConfig().getInt("security.min-password-length", 8);
-                int maxLength = plugin.getConfigManager().getConfig().getInt("security.max-password-length", 32);
-
-                player.sendMessage("§cПароль слишком слабый! Требования:");
-                player.sendMessage("§7• От §e" + minLength + "§7 до §e" + maxLength + "§7 символов");
-                player.sendMessage("§7• Минимум одна заглавная буква");
-                player.sendMessage("§7• Минимум одна строчная буква");
-                player.sendMessage("§7• Минимум одна цифра");
-
-                showPasswordRequirements(player);
-                return false;
+        // ИСПРАВЛЕНО: Длина, классы символов, последовательности и никнейм проверяются
+        // политикой из конфига за один проход
+        PasswordPolicy.Result result = plugin.getConfigManager().getPasswordPolicy().check(password, player.getName());
+        if (!result.isValid()) {
+            for (String message : result.getMessages()) {
+                player.sendMessage("§c" + message);
             }
-        } else {
-            // Минимальная проверка длины даже при отключенной сложности
-            int minLength = plugin.getConfigManager().getConfig().getInt("security.min-password-length", 8);
-            int maxLength = plugin.getConfigManager().getConfig().getInt("security.max-password-length", 32);
-
-            if (password.length() < minLength || password.length() > maxLength) {
-                player.sendMessage("§cПароль должен содержать от " + minLength + " до " + maxLength + " символов!");
-                return false;
-            }
-        }
-
-        // Проверка на простые пароли
-        if (isCommonPassword(password)) {
-            player.sendMessage("§cЭтот пароль слишком простой! Выберите более сложный пароль.");
+            showPasswordRequirements(player);
             return false;
         }
 
-        // Проверка что пароль не совпадает с никнеймом
-        if (password.toLowerCase().contains(player.getName().toLowerCase()) ||
-                player.getName().toLowerCase().contains(password.toLowerCase())) {
-            player.sendMessage("§cПароль не должен содержать ваш никнейм!");
+        // Проверка на простые и утёкшие пароли (фильтр из файла списка, если он загружен)
+        if (PasswordUtils.isCommonPassword(password, plugin.getBreachedPasswordFilter())) {
+            player.sendMessage("§cЭтот пароль слишком простой! Выберите более сложный пароль.");
             return false;
         }
 
         return true;
     }
 
-    private boolean isCommonPassword(String password) {
-        String[] commonPasswords = {
-                "password", "123456", "123456789", "qwerty", "abc123",
-                "password123", "admin", "root", "guest", "user",
-                "12345", "1234567", "12345678", "qwerty123", "letmein",
-                "welcome", "monkey", "dragon", "master", "hello"
-        };
-
-        String lowerPassword = password.toLowerCase();
-        for (String common : commonPasswords) {
-            if (lowerPassword.equals(common)) {
-                return true;
-            }
-        }
-
-        return false;
-    }
-
     private void showPasswordRequirements(Player player) {
-        int minLength = plugin.getConfigManager().getConfig().getInt("security.min-password-length", 8);
-        int maxLength = plugin.getConfigManager().getConfig().getInt("security.max-password-length", 32);
-
-        if (plugin.getConfigManager().isPasswordComplexityEnforced()) {
-            player.sendMessage("§7§lТребования к паролю:");
-            player.sendMessage("§7• От §e" + minLength + "§7 до §e" + maxLength + "§7 символов");
-            player.sendMessage("§7• Минимум одна заглавная буква (A-Z)");
-            player.sendMessage("§7• Минимум одна строчная буква (a-z)");
-            player.sendMessage("§7• Минимум одна цифра (0-9)");
-            player.sendMessage("§7• Разрешенные спецсимволы:");
-            player.sendMessage("§7  @$!%*?&.,_-+=~`|[]{}():;\"'<>/\\^#");
-            player.sendMessage("§7• Не должен содержать ваш никнейм");
-        } else {
-            player.sendMessage("§7Пароль должен содержать от §e" + minLength + "§7 до §e" + maxLength + "§7 символов");
-            player.sendMessage("§7Разрешены: буквы, цифры и символы @$!%*?&.,_-+=~`|[]{}():;\"'<>/\\^#");
+        player.sendMessage("§7§lТребования к паролю:");
+        for (String requirement : plugin.getConfigManager().getPasswordPolicy().getRequirements()) {
+            player.sendMessage("§7• " + requirement);
         }
     }
 
-    private void registerPlayer(Player player, String password) {
-        String username = player.getName();
-
-        plugin.getAuthManager().registerPlayer(username, password, player.getUniqueId())
-                .thenAccept(success -> {
-                    plugin.getServer().getScheduler().runTask(plugin, () -> {
-                        if (!player.isOnline()) {
-                            return;
-                        }
-
-                        if (success) {
-                            handleSuccessfulRegistration(player);
-                        } else {
-                            handleFailedRegistration(player);
-                        }
-                    });
-                })
-                .exceptionally(ex -> {
-                    plugin.getLogger().severe("Ошибка регистрации игрока " + username + ": " + ex.getMessage());
-                    plugin.getServer().getScheduler().runTask(plugin, () -> {
-                        if (player.isOnline()) {
-                            player.sendMessage(plugin.getConfigManager().getMessage("error-database"));
-                        }
-                    });
-                    return null;
-                });
-    }
-
     private void handleSuccessfulRegistration(Player player) {
         String username = player.getName();
         String ipAddress = player.getAddress().getAddress().getHostAddress();
@@ -233,49 +214,27 @@ public class RegisterCommand implements CommandExecutor {
         }
 
         plugin.getLogger().info("Новый пользователь зарегистрирован: " + username + " с IP " + ipAddress);
+    }
+
+    // ДОБАВЛЕНО: Автоматическая авторизация после регистрации
+    private void handleAutoLogin(Player player, AuthSession authSession) {
+        String username = player.getName();
+        String ipAddress = player.getAddress().getAddress().getHostAddress();
+
+        authSession.transition(AuthSession.State.VERIFYING, AuthSession.State.RESTORING);
+        plugin.getLobbyManager().returnFromAuthLobby(player, plugin.getAuthManager().getCachedPlayerData(username));
+        authSession.transition(AuthSession.State.RESTORING, AuthSession.State.AUTHENTICATED);
 
-        // ДОБАВЛЕНО: Автоматическая авторизация после регистрации
-        player.sendMessage("§aАвтоматический вход в аккаунт...");
-
-        // Создаем сессию
-        plugin.getSessionManager().createSession(username, ipAddress)
-                .thenAccept(sessionCreated -> {
-                    plugin.getServer().getScheduler().runTask(plugin, () -> {
-                        if (!player.isOnline()) {
-                            return;
-                        }
-
-                        if (sessionCreated) {
-                            // Загружаем данные игрока и возвращаем в мир
-                            plugin.getAuthManager().loadPlayerData(username)
-                                    .thenAccept(data -> {
-                                        plugin.getServer().getScheduler().runTask(plugin, () -> {
-                                            if (!player.isOnline()) {
-                                                return;
-                                            }
-
-                                            if (data != null) {
-                                                plugin.getLobbyManager().returnFromAuthLobby(player);
-                                                player.sendMessage("§aДобро пожаловать на сервер! Вы автоматически авторизованы.");
-
-                                                // Логируем автоматический вход
-                                                plugin.getDatabaseManager().logSecurityAction(
-                                                        username,
-                                                        ipAddress,
-                                                        "AUTO_LOGIN",
-                                                        true,
-                                                        "Automatic login after registration"
-                                                );
-                                            } else {
-                                                player.sendMessage("§cОшибка загрузки данных!");
-                                            }
-                                        });
-                                    });
-                        } else {
-                            player.sendMessage("§cОшибка автоматического входа! Используйте /login <пароль>");
-                        }
-                    });
-                });
+        player.sendMessage("§aДобро пожаловать на сервер! Вы автоматически авторизованы.");
+
+        // Логируем автоматический вход
+        plugin.getDatabaseManager().logSecurityAction(
+                username,
+                ipAddress,
+                "AUTO_LOGIN",
+                true,
+                "Automatic login after registration"
+        );
     }
 
     private void handleFailedRegistration(Player player) {
@@ -295,4 +254,12 @@ public class RegisterCommand implements CommandExecutor {
 
         plugin.getLogger().warning("Неудачная попытка регистрации: " + username + " с IP " + ipAddress);
     }
-}
\ No newline at end of file
+
+    private enum Outcome {
+        ALREADY_REGISTERED,
+        FAILED,
+        // Аккаунт создан, но сессию создать не удалось
+        NO_SESSION,
+        LOGGED_IN
+    }
+}
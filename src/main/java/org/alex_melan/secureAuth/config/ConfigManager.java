@@ -1,24 +1,75 @@
 package org.alex_melan.secureAuth.config;
 
 import org.alex_melan.secureAuth.SecureAuthPlugin;
+import org.alex_melan.secureAuth.database.SecurityLogWriter;
+import org.alex_melan.secureAuth.utils.Argon2idHasher;
+import org.alex_melan.secureAuth.utils.BCryptHasher;
+import org.alex_melan.secureAuth.utils.PasswordHasher;
+import org.alex_melan.secureAuth.utils.PasswordPolicy;
+import org.alex_melan.secureAuth.utils.Pbkdf2Hasher;
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.FileConfiguration;
 
+import java.util.Collections;
+import java.util.Map;
+
 public class ConfigManager {
 
     private final SecureAuthPlugin plugin;
     private FileConfiguration config;
 
+    // НОВОЕ: Настройки базы данных
+    private String databaseType;
+    private String databaseHost;
+    private int databasePort;
+    private String databaseName;
+    private String databaseUsername;
+    private String databasePassword;
+    private Map<String, Object> databaseConnectionProperties;
+    private int databasePoolSize;
+
     // Настройки безопасности
     private long sessionTTL;
+    private boolean invalidateSessionsOnShutdown;
+    private boolean persistSessionActivity;
+    private long sessionActivityFlushInterval;
     private int maxLoginAttempts;
     private long loginBlockDuration;
     private boolean enforcePasswordComplexity;
+    // НОВОЕ: Требования к паролю, собранные один раз при загрузке
+    private int minPasswordLength;
+    private int maxPasswordLength;
+    private PasswordPolicy passwordPolicy;
+    // НОВОЕ: Фильтр утёкших паролей
+    private boolean breachedPasswordsEnabled;
+    private String breachedPasswordsFile;
+    private double breachedPasswordsFalsePositiveRate;
+    private int breachedPasswordsMaxSizeMb;
     private boolean enableIpCheck;
     private long ipChangeGracePeriod;
     private int bcryptRounds;
+    // НОВОЕ: Алгоритм хеширования паролей и его параметры
+    private String passwordHashAlgorithm;
+    private int pbkdf2Iterations;
+    private int argon2MemoryKb;
+    private int argon2Iterations;
+    private int argon2Parallelism;
+    private boolean calibrateOnStartup;
+    // НОВОЕ: Ограничение частоты попыток входа
+    private boolean loginRateLimitEnabled;
+    private int loginRateLimitIpPerMinute;
+    private int loginRateLimitIpBurst;
+    private int loginRateLimitAccountPerMinute;
+    private int loginRateLimitAccountBurst;
+    private int loginRateLimitGlobalPerMinute;
+    private int loginRateLimitGlobalBurst;
+    private boolean calibrationAutoApply;
+    private long calibrationTargetMillis;
+    private double calibrationLoginsPerSecond;
 
     // Настройки системы
     private int autoSaveInterval;
+    private int autoSaveProgressEvery;
     private boolean logSuccessfulLogins;
     private boolean logFailedLogins;
     private boolean logRegistrations;
@@ -30,6 +81,35 @@ public class ConfigManager {
     private float lobbyYaw, lobbyPitch;
     private boolean giveStarterItems;
 
+    // НОВОЕ: Настройки производительности
+    private int databaseThreads;
+    private int databaseQueueCapacity;
+    private long databaseShutdownTimeout;
+    // НОВОЕ: Пул хеширования паролей
+    private double passwordHashingCpuShare;
+    private int passwordHashingQueueCapacity;
+    private int passwordHashingMaxPerIp;
+    private int passwordHashingMaxPerAccount;
+    private int sqliteReaderPoolSize;
+    private int writerBatchSize;
+    private int securityLogBufferSize;
+    private int securityLogBatchSize;
+    private long securityLogFlushInterval;
+    private SecurityLogWriter.OverflowPolicy securityLogOverflowPolicy;
+    private int securityLogSampleRate;
+    private long securityLogBlockTimeout;
+    private int profileConversionBatchSize;
+    private long sqliteCheckpointInterval;
+    private int sqliteIncrementalVacuumPages;
+    private long sqliteOptimizeInterval;
+    private int sqliteWalAutocheckpointPages;
+    private boolean sqliteConvertToIncremental;
+
+    // НОВОЕ: Настройки сети серверов за прокси
+    private boolean networkEnabled;
+    private String serverId;
+    private long networkPollInterval;
+
     public ConfigManager(SecureAuthPlugin plugin) {
         this.plugin = plugin;
     }
@@ -40,6 +120,9 @@ public class ConfigManager {
         plugin.reloadConfig();
         config = plugin.getConfig();
 
+        // Загружаем настройки базы данных
+        loadDatabaseSettings();
+
         // Загружаем настройки безопасности
         loadSecuritySettings();
 
@@ -49,25 +132,90 @@ public class ConfigManager {
         // Загружаем настройки лобби
         loadLobbySettings();
 
+        // Загружаем настройки производительности
+        loadPerformanceSettings();
+
+        // Загружаем настройки сети серверов
+        loadNetworkSettings();
+
         // Валидация настроек
         validateSettings();
 
+        // Требования к паролю используют уже проверенные длины
+        loadPasswordPolicy();
+
         // Логируем загруженные настройки
         logConfiguration();
     }
 
+    private void loadDatabaseSettings() {
+        databaseType = config.getString("database.type", "sqlite").toLowerCase();
+        databaseHost = config.getString("database.host", "localhost");
+        databasePort = config.getInt("database.port", 3306);
+        databaseName = config.getString("database.database", "secureauth");
+        databaseUsername = config.getString("database.username", "root");
+        databasePassword = config.getString("database.password", "");
+        databasePoolSize = config.getInt("performance.database-pool-size", 10);
+
+        ConfigurationSection properties = config.getConfigurationSection("database.connection_properties");
+        databaseConnectionProperties = properties != null ? properties.getValues(false) : Collections.emptyMap();
+    }
+
     private void loadSecuritySettings() {
         sessionTTL = config.getLong("session.ttl-hours", 24) * 60 * 60 * 1000;
+        invalidateSessionsOnShutdown = config.getBoolean("session.invalidate-on-shutdown", true);
+        persistSessionActivity = config.getBoolean("session.persist-activity", true);
+        sessionActivityFlushInterval = config.getLong("session.activity-flush-seconds", 60) * 1000;
         maxLoginAttempts = config.getInt("security.max-login-attempts", 5);
         loginBlockDuration = config.getLong("security.login-block-minutes", 15) * 60 * 1000;
+        loginRateLimitEnabled = config.getBoolean("security.rate-limit.enabled", true);
+        loginRateLimitIpPerMinute = config.getInt("security.rate-limit.per-ip.per-minute", 10);
+        loginRateLimitIpBurst = config.getInt("security.rate-limit.per-ip.burst", 5);
+        loginRateLimitAccountPerMinute = config.getInt("security.rate-limit.per-account.per-minute", 6);
+        loginRateLimitAccountBurst = config.getInt("security.rate-limit.per-account.burst", 3);
+        loginRateLimitGlobalPerMinute = config.getInt("security.rate-limit.global.per-minute", 300);
+        loginRateLimitGlobalBurst = config.getInt("security.rate-limit.global.burst", 20);
         enforcePasswordComplexity = config.getBoolean("security.enforce-password-complexity", true);
+        minPasswordLength = config.getInt("security.min-password-length", 8);
+        maxPasswordLength = config.getInt("security.max-password-length", 32);
+        breachedPasswordsEnabled = config.getBoolean("security.breached-passwords.enabled", true);
+        breachedPasswordsFile = config.getString("security.breached-passwords.file", "breached-passwords.txt");
+        breachedPasswordsFalsePositiveRate = config.getDouble("security.breached-passwords.false-positive-rate", 0.001);
+        breachedPasswordsMaxSizeMb = config.getInt("security.breached-passwords.max-size-mb", 64);
         enableIpCheck = config.getBoolean("security.enable-ip-check", true);
         ipChangeGracePeriod = config.getLong("security.ip-change-grace-minutes", 30) * 60 * 1000;
         bcryptRounds = config.getInt("security.bcrypt-rounds", 12);
+        passwordHashAlgorithm = config.getString("security.hash-algorithm", "bcrypt").toLowerCase();
+        pbkdf2Iterations = config.getInt("security.pbkdf2-iterations", 310000);
+        argon2MemoryKb = config.getInt("security.argon2-memory-kb", 65536);
+        argon2Iterations = config.getInt("security.argon2-iterations", 3);
+        argon2Parallelism = config.getInt("security.argon2-parallelism", 1);
+        calibrateOnStartup = config.getBoolean("security.calibration.on-startup", false);
+        calibrationAutoApply = config.getBoolean("security.calibration.auto-apply", false);
+        calibrationTargetMillis = config.getLong("security.calibration.target-ms", 250);
+        calibrationLoginsPerSecond = config.getDouble("security.calibration.expected-logins-per-second", 4);
+    }
+
+    private void loadPasswordPolicy() {
+        // При отключенной сложности остаются длина, допустимые символы и проверка никнейма
+        boolean complexity = enforcePasswordComplexity;
+        passwordPolicy = new PasswordPolicy(
+                minPasswordLength,
+                maxPasswordLength,
+                complexity && config.getBoolean("security.password-policy.require-lowercase", true),
+                complexity && config.getBoolean("security.password-policy.require-uppercase", true),
+                complexity && config.getBoolean("security.password-policy.require-digit", true),
+                complexity && config.getBoolean("security.password-policy.require-special", false),
+                config.getString("security.password-policy.special-characters", "@$!%*?&.,_-+=~`|[]{}():;\"'<>/\\^#"),
+                complexity && config.getBoolean("security.password-policy.forbid-sequences", false),
+                complexity && config.getBoolean("security.password-policy.forbid-repeating", false),
+                config.getBoolean("security.password-policy.forbid-username", true)
+        );
     }
 
     private void loadSystemSettings() {
         autoSaveInterval = config.getInt("misc.auto-save-interval-minutes", 5);
+        autoSaveProgressEvery = config.getInt("misc.auto-save-progress-every", 6);
         logSuccessfulLogins = config.getBoolean("misc.log-successful-logins", true);
         logFailedLogins = config.getBoolean("misc.log-failed-logins", true);
         logRegistrations = config.getBoolean("misc.log-registrations", true);
@@ -84,13 +232,71 @@ public class ConfigManager {
         giveStarterItems = config.getBoolean("misc.give-starter-items", false);
     }
 
+    private void loadNetworkSettings() {
+        networkEnabled = config.getBoolean("network.enabled", false);
+        serverId = config.getString("network.server-id", "server");
+        networkPollInterval = config.getLong("network.poll-interval-ms", 1000);
+    }
+
+    private void loadPerformanceSettings() {
+        databaseThreads = config.getInt("performance.database-threads", 4);
+        databaseQueueCapacity = config.getInt("performance.database-queue-capacity", 1000);
+        databaseShutdownTimeout = config.getLong("performance.database-shutdown-timeout-seconds", 10) * 1000;
+        sqliteReaderPoolSize = config.getInt("performance.sqlite-reader-pool-size", 4);
+        passwordHashingCpuShare = config.getDouble("performance.password-hashing.cpu-share", 0.5);
+        passwordHashingQueueCapacity = config.getInt("performance.password-hashing.queue-capacity", 64);
+        passwordHashingMaxPerIp = config.getInt("performance.password-hashing.max-per-ip", 2);
+        passwordHashingMaxPerAccount = config.getInt("performance.password-hashing.max-per-account", 1);
+        writerBatchSize = config.getInt("performance.sqlite-writer-batch-size", 64);
+
+        securityLogBufferSize = config.getInt("performance.security-log.buffer-size", 4096);
+        securityLogBatchSize = config.getInt("performance.security-log.batch-size", 256);
+        securityLogFlushInterval = config.getLong("performance.security-log.flush-interval-ms", 1000);
+        securityLogSampleRate = config.getInt("performance.security-log.sample-rate", 10);
+        securityLogBlockTimeout = config.getLong("performance.security-log.block-timeout-ms", 50);
+
+        profileConversionBatchSize = config.getInt("performance.profile-conversion-batch-size", 100);
+
+        sqliteCheckpointInterval = config.getLong("performance.sqlite-maintenance.checkpoint-interval-seconds", 30) * 1000;
+        sqliteIncrementalVacuumPages = config.getInt("performance.sqlite-maintenance.incremental-vacuum-pages", 512);
+        sqliteOptimizeInterval = config.getLong("performance.sqlite-maintenance.optimize-interval-minutes", 60) * 60 * 1000;
+        sqliteWalAutocheckpointPages = config.getInt("performance.sqlite-maintenance.wal-autocheckpoint-pages", 10000);
+        sqliteConvertToIncremental = config.getBoolean("performance.sqlite-maintenance.convert-to-incremental", false);
+
+        String policy = config.getString("performance.security-log.overflow-policy", "DROP_OLDEST");
+        try {
+            securityLogOverflowPolicy = SecurityLogWriter.OverflowPolicy.valueOf(policy.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            plugin.getLogger().warning("Неизвестная политика переполнения лога безопасности: " + policy + ", использую DROP_OLDEST");
+            securityLogOverflowPolicy = SecurityLogWriter.OverflowPolicy.DROP_OLDEST;
+        }
+    }
+
     private void validateSettings() {
+        // Валидация типа базы данных
+        if (!databaseType.equals("sqlite") && !databaseType.equals("mysql") && !databaseType.equals("mariadb")
+                && !databaseType.equals("postgresql") && !databaseType.equals("postgres")) {
+            plugin.getLogger().warning("Неизвестный тип базы данных: " + databaseType + ", использую sqlite");
+            databaseType = "sqlite";
+        }
+
+        if (databasePoolSize < 1 || databasePoolSize > 100) {
+            plugin.getLogger().warning("Некорректный размер пула соединений, использую значение по умолчанию (10)");
+            databasePoolSize = 10;
+        }
+
         // Валидация TTL сессий (от 1 часа до 30 дней)
         if (sessionTTL < 60 * 60 * 1000 || sessionTTL > 30L * 24 * 60 * 60 * 1000) {
             plugin.getLogger().warning("Некорректное значение TTL сессий, использую значение по умолчанию (24 часа)");
             sessionTTL = 24 * 60 * 60 * 1000;
         }
 
+        // Валидация интервала записи активности сессий (от 5 секунд до 1 часа)
+        if (sessionActivityFlushInterval < 5 * 1000 || sessionActivityFlushInterval > 60 * 60 * 1000) {
+            plugin.getLogger().warning("Некорректный интервал записи активности сессий, использую значение по умолчанию (60 секунд)");
+            sessionActivityFlushInterval = 60 * 1000;
+        }
+
         // Валидация максимального количества попыток входа
         if (maxLoginAttempts < 1 || maxLoginAttempts > 50) {
             plugin.getLogger().warning("Некорректное значение максимальных попыток входа, использую значение по умолчанию (5)");
@@ -103,18 +309,223 @@ public class ConfigManager {
             loginBlockDuration = 15 * 60 * 1000;
         }
 
+        // Валидация ограничения частоты попыток входа
+        if (loginRateLimitIpPerMinute < 1 || loginRateLimitIpPerMinute > 10000
+                || loginRateLimitIpBurst < 1 || loginRateLimitIpBurst > 1000) {
+            plugin.getLogger().warning("Некорректный лимит попыток входа на IP, использую значения по умолчанию (10 в минуту, 5 подряд)");
+            loginRateLimitIpPerMinute = 10;
+            loginRateLimitIpBurst = 5;
+        }
+
+        if (loginRateLimitAccountPerMinute < 1 || loginRateLimitAccountPerMinute > 10000
+                || loginRateLimitAccountBurst < 1 || loginRateLimitAccountBurst > 1000) {
+            plugin.getLogger().warning("Некорректный лимит попыток входа на аккаунт, использую значения по умолчанию (6 в минуту, 3 подряд)");
+            loginRateLimitAccountPerMinute = 6;
+            loginRateLimitAccountBurst = 3;
+        }
+
+        if (loginRateLimitGlobalPerMinute < 1 || loginRateLimitGlobalPerMinute > 1000000
+                || loginRateLimitGlobalBurst < 1 || loginRateLimitGlobalBurst > 10000) {
+            plugin.getLogger().warning("Некорректный общий лимит попыток входа, использую значения по умолчанию (300 в минуту, 20 подряд)");
+            loginRateLimitGlobalPerMinute = 300;
+            loginRateLimitGlobalBurst = 20;
+        }
+
+        // Валидация длины пароля
+        if (minPasswordLength < 4 || minPasswordLength > 64) {
+            plugin.getLogger().warning("Некорректная минимальная длина пароля, использую значение по умолчанию (8)");
+            minPasswordLength = 8;
+        }
+
+        if (maxPasswordLength < minPasswordLength || maxPasswordLength > 128) {
+            plugin.getLogger().warning("Некорректная максимальная длина пароля, использую значение " + Math.max(32, minPasswordLength));
+            maxPasswordLength = Math.max(32, minPasswordLength);
+        }
+
+        // Валидация фильтра утёкших паролей
+        if (breachedPasswordsFalsePositiveRate <= 0 || breachedPasswordsFalsePositiveRate >= 0.5) {
+            plugin.getLogger().warning("Некорректная доля ложных срабатываний фильтра паролей, использую значение по умолчанию (0.001)");
+            breachedPasswordsFalsePositiveRate = 0.001;
+        }
+
+        if (breachedPasswordsMaxSizeMb < 1 || breachedPasswordsMaxSizeMb > 2047) {
+            plugin.getLogger().warning("Некорректный размер фильтра паролей, использую значение по умолчанию (64 МБ)");
+            breachedPasswordsMaxSizeMb = 64;
+        }
+
         // Валидация раундов BCrypt
         if (bcryptRounds < 10 || bcryptRounds > 15) {
             plugin.getLogger().warning("Некорректное количество раундов BCrypt, использую значение по умолчанию (12)");
             bcryptRounds = 12;
         }
 
+        // Валидация алгоритма хеширования паролей
+        if (!passwordHashAlgorithm.equals("bcrypt") && !passwordHashAlgorithm.equals("pbkdf2")
+                && !passwordHashAlgorithm.equals("argon2id")) {
+            plugin.getLogger().warning("Неизвестный алгоритм хеширования паролей: " + passwordHashAlgorithm + ", использую bcrypt");
+            passwordHashAlgorithm = "bcrypt";
+        }
+
+        if (pbkdf2Iterations < 10000 || pbkdf2Iterations > 10000000) {
+            plugin.getLogger().warning("Некорректное количество итераций PBKDF2, использую значение по умолчанию (310000)");
+            pbkdf2Iterations = 310000;
+        }
+
+        if (argon2MemoryKb < 8192 || argon2MemoryKb > 1048576) {
+            plugin.getLogger().warning("Некорректный объём памяти Argon2, использую значение по умолчанию (65536 КБ)");
+            argon2MemoryKb = 65536;
+        }
+
+        if (argon2Iterations < 1 || argon2Iterations > 10) {
+            plugin.getLogger().warning("Некорректное количество итераций Argon2, использую значение по умолчанию (3)");
+            argon2Iterations = 3;
+        }
+
+        if (argon2Parallelism < 1 || argon2Parallelism > 8) {
+            plugin.getLogger().warning("Некорректное количество потоков Argon2, использую значение по умолчанию (1)");
+            argon2Parallelism = 1;
+        }
+
+        // Валидация калибровки хеширования
+        if (calibrationTargetMillis < 10 || calibrationTargetMillis > 5000) {
+            plugin.getLogger().warning("Некорректное целевое время хеширования, использую значение по умолчанию (250 мс)");
+            calibrationTargetMillis = 250;
+        }
+
+        if (calibrationLoginsPerSecond <= 0 || calibrationLoginsPerSecond > 1000) {
+            plugin.getLogger().warning("Некорректное ожидаемое число входов в секунду, использую значение по умолчанию (4)");
+            calibrationLoginsPerSecond = 4;
+        }
+
         // Валидация интервала автосохранения
         if (autoSaveInterval < 1 || autoSaveInterval > 60) {
             plugin.getLogger().warning("Некорректный интервал автосохранения, использую значение по умолчанию (5 минут)");
             autoSaveInterval = 5;
         }
 
+        // Валидация частоты сохранения прогресса при автосохранении
+        if (autoSaveProgressEvery < 1 || autoSaveProgressEvery > 100) {
+            plugin.getLogger().warning("Некорректная частота сохранения прогресса, использую значение по умолчанию (каждый 6-й цикл)");
+            autoSaveProgressEvery = 6;
+        }
+
+        // Валидация пула потоков БД (минимум 2, чтобы фоновые задачи не занимали единственный поток)
+        if (databaseThreads < 2 || databaseThreads > 32) {
+            plugin.getLogger().warning("Некорректное количество потоков БД, использую значение по умолчанию (4)");
+            databaseThreads = 4;
+        }
+
+        if (databaseQueueCapacity < 10 || databaseQueueCapacity > 100000) {
+            plugin.getLogger().warning("Некорректный размер очереди БД, использую значение по умолчанию (1000)");
+            databaseQueueCapacity = 1000;
+        }
+
+        if (databaseShutdownTimeout < 1000 || databaseShutdownTimeout > 120 * 1000) {
+            plugin.getLogger().warning("Некорректный таймаут остановки БД, использую значение по умолчанию (10 секунд)");
+            databaseShutdownTimeout = 10 * 1000;
+        }
+
+        // Валидация пула хеширования паролей
+        if (passwordHashingCpuShare <= 0 || passwordHashingCpuShare > 1) {
+            plugin.getLogger().warning("Некорректная доля ядер для хеширования паролей, использую значение по умолчанию (0.5)");
+            passwordHashingCpuShare = 0.5;
+        }
+
+        if (passwordHashingQueueCapacity < 1 || passwordHashingQueueCapacity > 10000) {
+            plugin.getLogger().warning("Некорректный размер очереди хеширования паролей, использую значение по умолчанию (64)");
+            passwordHashingQueueCapacity = 64;
+        }
+
+        if (passwordHashingMaxPerIp < 1 || passwordHashingMaxPerIp > 100) {
+            plugin.getLogger().warning("Некорректный лимит хеширования на IP, использую значение по умолчанию (2)");
+            passwordHashingMaxPerIp = 2;
+        }
+
+        if (passwordHashingMaxPerAccount < 1 || passwordHashingMaxPerAccount > 100) {
+            plugin.getLogger().warning("Некорректный лимит хеширования на аккаунт, использую значение по умолчанию (1)");
+            passwordHashingMaxPerAccount = 1;
+        }
+
+        if (sqliteReaderPoolSize < 1 || sqliteReaderPoolSize > 16) {
+            plugin.getLogger().warning("Некорректный размер пула читателей SQLite, использую значение по умолчанию (4)");
+            sqliteReaderPoolSize = 4;
+        }
+
+        if (writerBatchSize < 1 || writerBatchSize > 1000) {
+            plugin.getLogger().warning("Некорректный размер пачки записи SQLite, использую значение по умолчанию (64)");
+            writerBatchSize = 64;
+        }
+
+        if (securityLogBufferSize < 64 || securityLogBufferSize > 1000000) {
+            plugin.getLogger().warning("Некорректный размер буфера лога безопасности, использую значение по умолчанию (4096)");
+            securityLogBufferSize = 4096;
+        }
+
+        if (securityLogBatchSize < 1 || securityLogBatchSize > securityLogBufferSize) {
+            plugin.getLogger().warning("Некорректный размер пачки лога безопасности, использую значение по умолчанию (256)");
+            securityLogBatchSize = Math.min(256, securityLogBufferSize);
+        }
+
+        if (securityLogFlushInterval < 50 || securityLogFlushInterval > 60 * 1000) {
+            plugin.getLogger().warning("Некорректный интервал записи лога безопасности, использую значение по умолчанию (1000 мс)");
+            securityLogFlushInterval = 1000;
+        }
+
+        if (securityLogSampleRate < 1) {
+            securityLogSampleRate = 10;
+        }
+
+        if (securityLogBlockTimeout < 0 || securityLogBlockTimeout > 5000) {
+            plugin.getLogger().warning("Некорректный таймаут ожидания лога безопасности, использую значение по умолчанию (50 мс)");
+            securityLogBlockTimeout = 50;
+        }
+
+        if (profileConversionBatchSize < 0 || profileConversionBatchSize > 10000) {
+            plugin.getLogger().warning("Некорректный размер пачки конвертации профилей, использую значение по умолчанию (100)");
+            profileConversionBatchSize = 100;
+        }
+
+        if (sqliteCheckpointInterval < 1000 || sqliteCheckpointInterval > 60 * 60 * 1000) {
+            plugin.getLogger().warning("Некорректный интервал контрольных точек SQLite, использую значение по умолчанию (30 секунд)");
+            sqliteCheckpointInterval = 30 * 1000;
+        }
+
+        if (sqliteIncrementalVacuumPages < 0 || sqliteIncrementalVacuumPages > 100000) {
+            plugin.getLogger().warning("Некорректный шаг incremental_vacuum, использую значение по умолчанию (512 страниц)");
+            sqliteIncrementalVacuumPages = 512;
+        }
+
+        if (sqliteOptimizeInterval < 0) {
+            sqliteOptimizeInterval = 60 * 60 * 1000;
+        }
+
+        if (sqliteWalAutocheckpointPages < 1000 || sqliteWalAutocheckpointPages > 1000000) {
+            plugin.getLogger().warning("Некорректный порог автоматической контрольной точки SQLite, использую значение по умолчанию (10000 страниц)");
+            sqliteWalAutocheckpointPages = 10000;
+        }
+
+        // Валидация настроек сети
+        if (serverId == null || serverId.isEmpty() || serverId.length() > 64) {
+            plugin.getLogger().warning("Некорректный network.server-id, использую значение по умолчанию (server)");
+            serverId = "server";
+        }
+
+        // ИСПРАВЛЕНО: серверы с одинаковым именем считают события друг друга своими и пропускают их
+        if (networkEnabled && serverId.equals("server")) {
+            plugin.getLogger().severe("network.enabled включен, но network.server-id не задан (server) - "
+                    + "синхронизация сессий сети отключена. Задайте каждому серверу уникальное имя");
+            networkEnabled = false;
+        }
+
+        if (networkPollInterval < 100 || networkPollInterval > 60 * 1000) {
+            plugin.getLogger().warning("Некорректный интервал опроса событий сессий, использую значение по умолчанию (1000 мс)");
+            networkPollInterval = 1000;
+        }
+
+        if (networkEnabled && databaseType.equals("sqlite")) {
+            plugin.getLogger().warning("Режим сети с SQLite работает только для серверов с общим файлом базы на одной машине");
+        }
+
         // Валидация координат лобби
         if (lobbyY < -64 || lobbyY > 320) {
             plugin.getLogger().warning("Некорректная Y координата лобби, использую значение по умолчанию (100)");
@@ -124,28 +535,71 @@ public class ConfigManager {
 
     private void logConfiguration() {
         plugin.getLogger().info("=== Конфигурация загружена ===");
+        plugin.getLogger().info("База данных: " + databaseType);
         plugin.getLogger().info("TTL сессий: " + (sessionTTL / 1000 / 60 / 60) + " часов");
         plugin.getLogger().info("Максимум попыток входа: " + maxLoginAttempts);
         plugin.getLogger().info("Время блокировки: " + (loginBlockDuration / 1000 / 60) + " минут");
-        plugin.getLogger().info("BCrypt раундов: " + bcryptRounds);
+        plugin.getLogger().info("Хеширование паролей: " + passwordHashAlgorithm);
         plugin.getLogger().info("Проверка IP: " + (enableIpCheck ? "включена" : "отключена"));
         plugin.getLogger().info("Сложность паролей: " + (enforcePasswordComplexity ? "включена" : "отключена"));
         plugin.getLogger().info("Автосохранение: каждые " + autoSaveInterval + " минут");
         plugin.getLogger().info("Мир лобби: " + lobbyWorld);
+        plugin.getLogger().info("Потоков БД: " + databaseThreads + ", очередь: " + databaseQueueCapacity);
+        plugin.getLogger().info("Потоков хеширования паролей: " + getPasswordHashingThreads() + ", очередь: " + passwordHashingQueueCapacity);
+        if (networkEnabled) {
+            plugin.getLogger().info("Режим сети: включен, сервер " + serverId);
+        }
         plugin.getLogger().info("================================");
     }
 
+    // Геттеры для настроек базы данных
+    public String getDatabaseType() { return databaseType; }
+    public String getDatabaseHost() { return databaseHost; }
+    public int getDatabasePort() { return databasePort; }
+    public String getDatabaseName() { return databaseName; }
+    public String getDatabaseUsername() { return databaseUsername; }
+    public String getDatabasePassword() { return databasePassword; }
+    public Map<String, Object> getDatabaseConnectionProperties() { return databaseConnectionProperties; }
+    public int getDatabasePoolSize() { return databasePoolSize; }
+
     // Геттеры для настроек безопасности
     public long getSessionTTL() { return sessionTTL; }
+    public boolean isInvalidateSessionsOnShutdown() { return invalidateSessionsOnShutdown; }
+    public boolean isSessionActivityPersisted() { return persistSessionActivity; }
+    public long getSessionActivityFlushInterval() { return sessionActivityFlushInterval; }
     public int getMaxLoginAttempts() { return maxLoginAttempts; }
     public long getLoginBlockDuration() { return loginBlockDuration; }
+    public boolean isLoginRateLimitEnabled() { return loginRateLimitEnabled; }
+    public int getLoginRateLimitIpPerMinute() { return loginRateLimitIpPerMinute; }
+    public int getLoginRateLimitIpBurst() { return loginRateLimitIpBurst; }
+    public int getLoginRateLimitAccountPerMinute() { return loginRateLimitAccountPerMinute; }
+    public int getLoginRateLimitAccountBurst() { return loginRateLimitAccountBurst; }
+    public int getLoginRateLimitGlobalPerMinute() { return loginRateLimitGlobalPerMinute; }
+    public int getLoginRateLimitGlobalBurst() { return loginRateLimitGlobalBurst; }
     public boolean isPasswordComplexityEnforced() { return enforcePasswordComplexity; }
+    public int getMinPasswordLength() { return minPasswordLength; }
+    public int getMaxPasswordLength() { return maxPasswordLength; }
+    public PasswordPolicy getPasswordPolicy() { return passwordPolicy; }
+    public boolean isBreachedPasswordsEnabled() { return breachedPasswordsEnabled; }
+    public String getBreachedPasswordsFile() { return breachedPasswordsFile; }
+    public double getBreachedPasswordsFalsePositiveRate() { return breachedPasswordsFalsePositiveRate; }
+    public long getBreachedPasswordsMaxBytes() { return breachedPasswordsMaxSizeMb * 1024L * 1024L; }
     public boolean isIpCheckEnabled() { return enableIpCheck; }
     public long getIpChangeGracePeriod() { return ipChangeGracePeriod; }
     public int getBcryptRounds() { return bcryptRounds; }
+    public String getPasswordHashAlgorithm() { return passwordHashAlgorithm; }
+    public int getPbkdf2Iterations() { return pbkdf2Iterations; }
+    public int getArgon2MemoryKb() { return argon2MemoryKb; }
+    public int getArgon2Iterations() { return argon2Iterations; }
+    public int getArgon2Parallelism() { return argon2Parallelism; }
+    public boolean isCalibrateOnStartup() { return calibrateOnStartup; }
+    public boolean isCalibrationAutoApply() { return calibrationAutoApply; }
+    public long getCalibrationTargetMillis() { return calibrationTargetMillis; }
+    public double getCalibrationLoginsPerSecond() { return calibrationLoginsPerSecond; }
 
     // Геттеры для системных настроек
     public int getAutoSaveInterval() { return autoSaveInterval; }
+    public int getAutoSaveProgressEvery() { return autoSaveProgressEvery; }
     public boolean isLogSuccessfulLogins() { return logSuccessfulLogins; }
     public boolean isLogFailedLogins() { return logFailedLogins; }
     public boolean isLogRegistrations() { return logRegistrations; }
@@ -160,6 +614,34 @@ public class ConfigManager {
     public float getLobbyPitch() { return lobbyPitch; }
     public boolean isGiveStarterItems() { return giveStarterItems; }
 
+    // Геттеры для настроек производительности
+    public int getDatabaseThreads() { return databaseThreads; }
+    public int getDatabaseQueueCapacity() { return databaseQueueCapacity; }
+    public long getDatabaseShutdownTimeout() { return databaseShutdownTimeout; }
+    public int getSqliteReaderPoolSize() { return sqliteReaderPoolSize; }
+    public int getPasswordHashingThreads() { return Math.max(1, (int) (Runtime.getRuntime().availableProcessors() * passwordHashingCpuShare)); }
+    public int getPasswordHashingQueueCapacity() { return passwordHashingQueueCapacity; }
+    public int getPasswordHashingMaxPerIp() { return passwordHashingMaxPerIp; }
+    public int getPasswordHashingMaxPerAccount() { return passwordHashingMaxPerAccount; }
+    public int getWriterBatchSize() { return writerBatchSize; }
+    public int getSecurityLogBufferSize() { return securityLogBufferSize; }
+    public int getSecurityLogBatchSize() { return securityLogBatchSize; }
+    public long getSecurityLogFlushInterval() { return securityLogFlushInterval; }
+    public SecurityLogWriter.OverflowPolicy getSecurityLogOverflowPolicy() { return securityLogOverflowPolicy; }
+    public int getSecurityLogSampleRate() { return securityLogSampleRate; }
+    public long getSecurityLogBlockTimeout() { return securityLogBlockTimeout; }
+    public int getProfileConversionBatchSize() { return profileConversionBatchSize; }
+    public long getSqliteCheckpointInterval() { return sqliteCheckpointInterval; }
+    public int getSqliteIncrementalVacuumPages() { return sqliteIncrementalVacuumPages; }
+    public long getSqliteOptimizeInterval() { return sqliteOptimizeInterval; }
+    public int getSqliteWalAutocheckpointPages() { return sqliteWalAutocheckpointPages; }
+    public boolean isSqliteConvertToIncremental() { return sqliteConvertToIncremental; }
+
+    // Геттеры для настроек сети
+    public boolean isNetworkEnabled() { return networkEnabled; }
+    public String getServerId() { return serverId; }
+    public long getNetworkPollInterval() { return networkPollInterval; }
+
     // Получение сообщений с поддержкой плейсхолдеров
     public String getMessage(String key) {
         return getMessage(key, (String) null);
@@ -218,4 +700,28 @@ public class ConfigManager {
         config.set(path, value);
         saveConfig();
     }
+
+    // ИСПРАВЛЕНО: Сохранение алгоритма и стоимости хеширования (применённая калибровка)
+    public synchronized void savePasswordHasher(PasswordHasher hasher) {
+        passwordHashAlgorithm = hasher.getName();
+        config.set("security.hash-algorithm", passwordHashAlgorithm);
+
+        if (hasher instanceof BCryptHasher) {
+            bcryptRounds = ((BCryptHasher) hasher).getRounds();
+            config.set("security.bcrypt-rounds", bcryptRounds);
+        } else if (hasher instanceof Pbkdf2Hasher) {
+            pbkdf2Iterations = ((Pbkdf2Hasher) hasher).getIterations();
+            config.set("security.pbkdf2-iterations", pbkdf2Iterations);
+        } else if (hasher instanceof Argon2idHasher) {
+            Argon2idHasher argon2 = (Argon2idHasher) hasher;
+            argon2MemoryKb = argon2.getMemoryKb();
+            argon2Iterations = argon2.getIterations();
+            argon2Parallelism = argon2.getParallelism();
+            config.set("security.argon2-memory-kb", argon2MemoryKb);
+            config.set("security.argon2-iterations", argon2Iterations);
+            config.set("security.argon2-parallelism", argon2Parallelism);
+        }
+
+        saveConfig();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,230 @@
+package org.alex_melan.secureAuth.database;
+
+import org.alex_melan.secureAuth.utils.NamedThreadFactory;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Выделенный пул потоков для блокирующих операций с базой данных.
+ *
+ * Задачи делятся на две полосы: интерактивные (вход, регистрация, загрузка
+ * данных при подключении) всегда забираются из очереди раньше фоновых
+ * (автосохранение, очистка, логи). Каждая полоса ограничена по размеру,
+ * при переполнении задача отклоняется вместо бесконечного роста очереди.
+ */
+public class DatabaseExecutor {
+
+    public enum Priority {
+        INTERACTIVE,
+        BACKGROUND
+    }
+
+    private final Logger logger;
+    private final ThreadPoolExecutor executor;
+    private final int queueCapacity;
+    private final AtomicLong sequence = new AtomicLong();
+    private final LaneStats[] lanes = new LaneStats[Priority.values().length];
+
+    public DatabaseExecutor(Logger logger, int threads, int queueCapacity) {
+        this.logger = logger;
+        this.queueCapacity = queueCapacity;
+
+        for (Priority priority : Priority.values()) {
+            lanes[priority.ordinal()] = new LaneStats();
+        }
+
+        this.executor = new ThreadPoolExecutor(
+                threads, threads,
+                60L, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<>(),
+                new NamedThreadFactory("SecureAuth-DB")
+        );
+
+        // Все задачи должны проходить через очередь, иначе приоритеты не работают
+        executor.prestartAllCoreThreads();
+    }
+
+    public <T> CompletableFuture<T> supply(Priority priority, Supplier<T> supplier) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+
+        boolean accepted = submit(priority, () -> {
+            try {
+                future.complete(supplier.get());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        }, () -> future.completeExceptionally(new CancellationException("Пул БД остановлен до выполнения задачи")));
+
+        if (!accepted) {
+            future.completeExceptionally(new RejectedExecutionException(
+                    "Очередь БД переполнена (" + priority + ", лимит " + queueCapacity + ")"));
+        }
+
+        return future;
+    }
+
+    public CompletableFuture<Void> run(Priority priority, Runnable runnable) {
+        return supply(priority, () -> {
+            runnable.run();
+            return null;
+        });
+    }
+
+    private boolean submit(Priority priority, Runnable body, Runnable onCancel) {
+        LaneStats lane = lanes[priority.ordinal()];
+
+        if (executor.isShutdown()) {
+            lane.rejected.incrementAndGet();
+            return false;
+        }
+
+        if (lane.queued.incrementAndGet() > queueCapacity) {
+            lane.queued.decrementAndGet();
+            lane.rejected.incrementAndGet();
+            return false;
+        }
+
+        try {
+            executor.execute(new PrioritizedTask(priority, sequence.getAndIncrement(), body, onCancel));
+            return true;
+        } catch (RejectedExecutionException e) {
+            lane.queued.decrementAndGet();
+            lane.rejected.incrementAndGet();
+            return false;
+        }
+    }
+
+    /**
+     * Остановка пула с ожиданием завершения уже поставленных задач
+     * @param timeoutMillis максимальное время ожидания
+     */
+    public void shutdown(long timeoutMillis) {
+        executor.shutdown();
+
+        try {
+            if (!executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                int dropped = cancel(executor.shutdownNow());
+                logger.warning("Пул БД не завершился за " + timeoutMillis + " мс, отменено задач: " + dropped);
+            }
+        } catch (InterruptedException e) {
+            cancel(executor.shutdownNow());
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * ИСПРАВЛЕНО: Задачи, снятые с очереди при остановке, завершают свои future с CancellationException,
+     * иначе ожидающие их цепочки (сохранение при выходе, вход) не завершились бы никогда
+     */
+    private static int cancel(List<Runnable> dropped) {
+        for (Runnable task : dropped) {
+            ((PrioritizedTask) task).cancel();
+        }
+        return dropped.size();
+    }
+
+    public boolean isShutdown() {
+        return executor.isShutdown();
+    }
+
+    // Метрики
+
+    public int getThreadCount() {
+        return executor.getPoolSize();
+    }
+
+    public int getActiveThreads() {
+        return executor.getActiveCount();
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public int getQueueDepth(Priority priority) {
+        return lanes[priority.ordinal()].queued.get();
+    }
+
+    public long getCompletedCount(Priority priority) {
+        return lanes[priority.ordinal()].completed.get();
+    }
+
+    public long getRejectedCount(Priority priority) {
+        return lanes[priority.ordinal()].rejected.get();
+    }
+
+    public double getAverageWaitMillis(Priority priority) {
+        LaneStats lane = lanes[priority.ordinal()];
+        long started = lane.started.get();
+        return started == 0 ? 0 : lane.totalWaitNanos.get() / (double) started / 1_000_000.0;
+    }
+
+    public double getMaxWaitMillis(Priority priority) {
+        return lanes[priority.ordinal()].maxWaitNanos.get() / 1_000_000.0;
+    }
+
+    private final class PrioritizedTask implements Runnable, Comparable<PrioritizedTask> {
+        private final Priority priority;
+        private final long seq;
+        private final long enqueuedAt;
+        private final Runnable body;
+        private final Runnable onCancel;
+
+        private PrioritizedTask(Priority priority, long seq, Runnable body, Runnable onCancel) {
+            this.priority = priority;
+            this.seq = seq;
+            this.enqueuedAt = System.nanoTime();
+            this.body = body;
+            this.onCancel = onCancel;
+        }
+
+        @Override
+        public void run() {
+            LaneStats lane = lanes[priority.ordinal()];
+            lane.queued.decrementAndGet();
+            lane.recordWait(System.nanoTime() - enqueuedAt);
+
+            try {
+                body.run();
+            } finally {
+                lane.completed.incrementAndGet();
+            }
+        }
+
+        private void cancel() {
+            lanes[priority.ordinal()].queued.decrementAndGet();
+            onCancel.run();
+        }
+
+        @Override
+        public int compareTo(PrioritizedTask other) {
+            int byPriority = Integer.compare(priority.ordinal(), other.priority.ordinal());
+            return byPriority != 0 ? byPriority : Long.compare(seq, other.seq);
+        }
+    }
+
+    private static final class LaneStats {
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicLong started = new AtomicLong();
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final AtomicLong totalWaitNanos = new AtomicLong();
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+
+        private void recordWait(long waitNanos) {
+            started.incrementAndGet();
+            totalWaitNanos.addAndGet(waitNanos);
+            maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+        }
+    }
+}
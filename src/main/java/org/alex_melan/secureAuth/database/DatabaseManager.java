@@ -1,31 +1,106 @@
 package org.alex_melan.secureAuth.database;
 
 import org.alex_melan.secureAuth.SecureAuthPlugin;
+import org.alex_melan.secureAuth.config.ConfigManager;
+import org.alex_melan.secureAuth.database.DatabaseExecutor.Priority;
+import org.alex_melan.secureAuth.models.HashCalibration;
+import org.alex_melan.secureAuth.models.LoginResult;
 import org.alex_melan.secureAuth.models.PlayerData;
-import org.alex_melan.secureAuth.utils.PasswordUtils;
+import org.alex_melan.secureAuth.models.PlayerSummary;
+import org.alex_melan.secureAuth.models.SessionData;
+import org.alex_melan.secureAuth.models.SessionEvent;
+import org.alex_melan.secureAuth.utils.Argon2idHasher;
+import org.alex_melan.secureAuth.utils.BCryptHasher;
+import org.alex_melan.secureAuth.utils.NamedThreadFactory;
+import org.alex_melan.secureAuth.utils.PasswordHashCalibrator;
+import org.alex_melan.secureAuth.utils.PasswordHasher;
+import org.alex_melan.secureAuth.utils.PasswordHashers;
+import org.alex_melan.secureAuth.utils.PasswordHashingPool;
+import org.alex_melan.secureAuth.utils.Pbkdf2Hasher;
+import org.alex_melan.secureAuth.utils.ProfileCodec;
+import org.alex_melan.secureAuth.utils.SessionTokenService;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 
 import java.io.File;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 
 public class DatabaseManager {
 
     private final SecureAuthPlugin plugin;
     private HikariDataSource dataSource;
+    private HikariDataSource readDataSource;
+    private DatabaseWriter writer;
+    private final DatabaseExecutor executor;
+    // НОВОЕ: Хеширование паролей не занимает потоки БД и общий пул
+    private final PasswordHashingPool hashingPool;
+    private final PasswordHashers passwordHashers;
+    private volatile HashCalibration lastHashCalibration;
+    private CompletableFuture<HashCalibration> runningCalibration;
+    private boolean runningCalibrationApplies;
+    private final StorageBackend backend;
+    private SecurityLogWriter securityLogWriter;
+    private ProfileBlobConverter profileConverter;
+    private SQLiteMaintenance maintenance;
+    private final SessionTokenService sessionTokens = new SessionTokenService();
+    // НОВОЕ: Имя сервера в сети и режим общих сессий
+    private final String serverId;
+    private final boolean networkMode;
+
+    private static final String SESSION_COLUMNS =
+            "session_hash, username, ip_address, created_at, expires_at, last_activity";
     private final Object initLock = new Object();
 
     public DatabaseManager(SecureAuthPlugin plugin) {
         this.plugin = plugin;
+        this.backend = StorageBackend.forType(plugin.getConfigManager().getDatabaseType());
+        this.serverId = plugin.getConfigManager().getServerId();
+        this.networkMode = plugin.getConfigManager().isNetworkEnabled();
+        this.executor = new DatabaseExecutor(
+                plugin.getLogger(),
+                plugin.getConfigManager().getDatabaseThreads(),
+                plugin.getConfigManager().getDatabaseQueueCapacity()
+        );
+        this.hashingPool = new PasswordHashingPool(
+                plugin.getLogger(),
+                plugin.getConfigManager().getPasswordHashingThreads(),
+                plugin.getConfigManager().getPasswordHashingQueueCapacity(),
+                plugin.getConfigManager().getPasswordHashingMaxPerIp(),
+                plugin.getConfigManager().getPasswordHashingMaxPerAccount()
+        );
+        this.passwordHashers = new PasswordHashers(createPasswordHasher(plugin.getConfigManager()));
+    }
+
+    /**
+     * Алгоритм для новых паролей по настройкам security.hash-algorithm
+     */
+    public static PasswordHasher createPasswordHasher(ConfigManager config) {
+        switch (config.getPasswordHashAlgorithm()) {
+            case "pbkdf2":
+                return new Pbkdf2Hasher(config.getPbkdf2Iterations());
+            case "argon2id":
+                return new Argon2idHasher(config.getArgon2MemoryKb(), config.getArgon2Iterations(), config.getArgon2Parallelism());
+            default:
+                return new BCryptHasher(config.getBcryptRounds());
+        }
     }
 
     public void initialize() throws SQLException {
         synchronized (initLock) {
             setupDatabase();
             createTables();
+            createSecurityLogWriter();
             plugin.getLogger().info("База данных инициализирована успешно!");
         }
     }
@@ -37,26 +112,18 @@ public class DatabaseManager {
                 pluginDir.mkdirs();
             }
 
-            String dbPath = new File(pluginDir, "database.db").getAbsolutePath();
-            plugin.getLogger().info("Инициализация базы данных: " + dbPath);
+            plugin.getLogger().info("Инициализация базы данных: " + backend.getName());
 
             HikariConfig config = new HikariConfig();
+            config.setPoolName("SecureAuth-" + backend.getName());
 
-            config.setJdbcUrl("jdbc:sqlite:" + dbPath);
-            config.setDriverClassName("org.sqlite.JDBC");
-
-            config.setMaximumPoolSize(1);
-            config.setMinimumIdle(1);
             config.setConnectionTimeout(30000);
             config.setIdleTimeout(600000);
             config.setMaxLifetime(1800000);
             config.setLeakDetectionThreshold(60000);
 
-            config.addDataSourceProperty("foreign_keys", "true");
-            config.addDataSourceProperty("journal_mode", "WAL");
-            config.addDataSourceProperty("synchronous", "NORMAL");
-            config.addDataSourceProperty("cache_size", "10000");
-            config.addDataSourceProperty("temp_store", "memory");
+            // НОВОЕ: URL, драйвер и размер пула задаются диалектом
+            backend.configure(config, plugin.getConfigManager(), pluginDir);
 
             config.setConnectionTestQuery("SELECT 1");
             config.setValidationTimeout(5000);
@@ -64,7 +131,21 @@ public class DatabaseManager {
             dataSource = new HikariDataSource(config);
 
             try (Connection testConn = dataSource.getConnection()) {
-                plugin.getLogger().info("Тестовое соединение с базой данных успешно");
+                plugin.getLogger().info("Тестовое соединение с базой данных успешно (пул: "
+                        + config.getMaximumPoolSize() + ")");
+            }
+
+            // НОВОЕ: Для SQLite в режиме WAL - отдельный пул читателей и единственный поток записи
+            HikariConfig readerConfig = new HikariConfig();
+            readerConfig.setPoolName("SecureAuth-" + backend.getName() + "-Read");
+            readerConfig.setConnectionTimeout(30000);
+            readerConfig.setIdleTimeout(600000);
+            readerConfig.setMaxLifetime(1800000);
+
+            if (backend.configureReader(readerConfig, plugin.getConfigManager(), pluginDir)) {
+                readDataSource = new HikariDataSource(readerConfig);
+                writer = new DatabaseWriter(plugin.getLogger(), this, plugin.getConfigManager().getWriterBatchSize());
+                plugin.getLogger().info("Пул читателей: " + readerConfig.getMaximumPoolSize() + ", запись - один поток с групповым коммитом");
             }
 
         } catch (Exception e) {
@@ -74,552 +155,875 @@ public class DatabaseManager {
         }
     }
 
+    private void createSecurityLogWriter() {
+        ConfigManager config = plugin.getConfigManager();
+        securityLogWriter = new SecurityLogWriter(
+                plugin.getLogger(),
+                this,
+                config.getSecurityLogBufferSize(),
+                config.getSecurityLogBatchSize(),
+                config.getSecurityLogFlushInterval(),
+                config.getSecurityLogOverflowPolicy(),
+                config.getSecurityLogSampleRate(),
+                config.getSecurityLogBlockTimeout()
+        );
+    }
+
     private void createTables() throws SQLException {
-        try (Connection conn = dataSource.getConnection()) {
-            conn.createStatement().execute("PRAGMA foreign_keys = ON");
-
-            conn.createStatement().executeUpdate("""
-                CREATE TABLE IF NOT EXISTS players (
-                    id INTEGER PRIMARY KEY AUTOINCREMENT,
-                    username TEXT NOT NULL UNIQUE COLLATE NOCASE,
-                    password_hash TEXT NOT NULL,
-                    salt TEXT NOT NULL,
-                    premium_uuid TEXT,
-                    cracked_uuid TEXT NOT NULL UNIQUE,
-                    last_ip TEXT,
-                    last_login BIGINT DEFAULT 0,
-                    registration_date BIGINT DEFAULT 0,
-                    world_name TEXT DEFAULT 'world',
-                    x REAL DEFAULT 0,
-                    y REAL DEFAULT 64,
-                    z REAL DEFAULT 0,
-                    yaw REAL DEFAULT 0,
-                    pitch REAL DEFAULT 0,
-                    inventory_data TEXT,
-                    enderchest_data TEXT,
-                    experience INTEGER DEFAULT 0,
-                    level INTEGER DEFAULT 0,
-                    health REAL DEFAULT 20,
-                    food INTEGER DEFAULT 20,
-                    saturation REAL DEFAULT 5,
-                    game_mode TEXT DEFAULT 'SURVIVAL',
-                    created_at BIGINT DEFAULT (strftime('%s', 'now') * 1000),
-                    updated_at BIGINT DEFAULT (strftime('%s', 'now') * 1000)
-                )
-            """);
-
-            conn.createStatement().executeUpdate("""
-                CREATE TABLE IF NOT EXISTS sessions (
-                    id INTEGER PRIMARY KEY AUTOINCREMENT,
-                    session_hash TEXT NOT NULL UNIQUE,
-                    username TEXT NOT NULL COLLATE NOCASE,
-                    ip_address TEXT NOT NULL,
-                    created_at BIGINT NOT NULL,
-                    expires_at BIGINT NOT NULL,
-                    last_activity BIGINT DEFAULT 0,
-                    is_active BOOLEAN DEFAULT 1,
-                    FOREIGN KEY (username) REFERENCES players(username) ON DELETE CASCADE
-                )
-            """);
-
-            conn.createStatement().executeUpdate("""
-                CREATE TABLE IF NOT EXISTS security_logs (
-                    id INTEGER PRIMARY KEY AUTOINCREMENT,
-                    username TEXT,
-                    ip_address TEXT NOT NULL,
-                    action_type TEXT NOT NULL,
-                    success BOOLEAN NOT NULL,
-                    details TEXT,
-                    timestamp BIGINT DEFAULT (strftime('%s', 'now') * 1000)
-                )
-            """);
-
-            String[] indexes = {
-                    "CREATE INDEX IF NOT EXISTS idx_players_username ON players(username)",
-                    "CREATE INDEX IF NOT EXISTS idx_players_premium_uuid ON players(premium_uuid)",
-                    "CREATE INDEX IF NOT EXISTS idx_players_cracked_uuid ON players(cracked_uuid)",
-                    "CREATE INDEX IF NOT EXISTS idx_sessions_hash ON sessions(session_hash)",
-                    "CREATE INDEX IF NOT EXISTS idx_sessions_username ON sessions(username)",
-                    "CREATE INDEX IF NOT EXISTS idx_sessions_expires ON sessions(expires_at)",
-                    "CREATE INDEX IF NOT EXISTS idx_sessions_active ON sessions(is_active)",
-                    "CREATE INDEX IF NOT EXISTS idx_security_logs_username ON security_logs(username)",
-                    "CREATE INDEX IF NOT EXISTS idx_security_logs_ip ON security_logs(ip_address)",
-                    "CREATE INDEX IF NOT EXISTS idx_security_logs_timestamp ON security_logs(timestamp)"
-            };
-
-            for (String index : indexes) {
-                conn.createStatement().executeUpdate(index);
-            }
-
-            conn.createStatement().executeUpdate("""
-                CREATE TRIGGER IF NOT EXISTS players_updated_at 
-                AFTER UPDATE ON players 
-                FOR EACH ROW 
-                BEGIN 
-                    UPDATE players SET updated_at = strftime('%s', 'now') * 1000 WHERE id = NEW.id;
-                END
-            """);
+        try (Connection conn = dataSource.getConnection();
+             Statement stmt = conn.createStatement()) {
+
+            backend.prepareConnection(conn);
+
+            // ИСПРАВЛЕНО: без strftime() и триггеров - created_at/updated_at заполняются в запросах,
+            // типы колонок берутся из диалекта
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS players ("
+                    + "id " + backend.autoIncrementPrimaryKey() + ", "
+                    + "username " + backend.usernameType() + " NOT NULL UNIQUE, "
+                    + "password_hash " + backend.varcharType(255) + " NOT NULL, "
+                    + "salt " + backend.varcharType(64) + " NOT NULL, "
+                    + "premium_uuid " + backend.varcharType(36) + ", "
+                    + "cracked_uuid " + backend.varcharType(36) + " NOT NULL UNIQUE, "
+                    + "last_ip " + backend.varcharType(45) + ", "
+                    + "last_login BIGINT DEFAULT 0, "
+                    + "registration_date BIGINT DEFAULT 0, "
+                    + "world_name " + backend.varcharType(64) + " DEFAULT 'world', "
+                    + "x " + backend.doubleType() + " DEFAULT 0, "
+                    + "y " + backend.doubleType() + " DEFAULT 64, "
+                    + "z " + backend.doubleType() + " DEFAULT 0, "
+                    + "yaw " + backend.doubleType() + " DEFAULT 0, "
+                    + "pitch " + backend.doubleType() + " DEFAULT 0, "
+                    + "inventory_data " + backend.largeTextType() + ", "
+                    + "enderchest_data " + backend.largeTextType() + ", "
+                    + "experience INTEGER DEFAULT 0, "
+                    + "level INTEGER DEFAULT 0, "
+                    + "health " + backend.doubleType() + " DEFAULT 20, "
+                    + "food INTEGER DEFAULT 20, "
+                    + "saturation " + backend.doubleType() + " DEFAULT 5, "
+                    + "game_mode " + backend.varcharType(16) + " DEFAULT 'SURVIVAL', "
+                    + "created_at BIGINT DEFAULT 0, "
+                    + "updated_at BIGINT DEFAULT 0"
+                    + ")" + backend.tableOptions());
+
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS sessions ("
+                    + "id " + backend.autoIncrementPrimaryKey() + ", "
+                    + "session_hash " + backend.varcharType(255) + " NOT NULL UNIQUE, "
+                    + "username " + backend.usernameType() + " NOT NULL, "
+                    + "ip_address " + backend.varcharType(45) + " NOT NULL, "
+                    + "created_at BIGINT NOT NULL, "
+                    + "expires_at BIGINT NOT NULL, "
+                    + "last_activity BIGINT DEFAULT 0, "
+                    + "is_active BOOLEAN DEFAULT TRUE, "
+                    + "FOREIGN KEY (username) REFERENCES players(username) ON DELETE CASCADE"
+                    + ")" + backend.tableOptions());
+
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS security_logs ("
+                    + "id " + backend.autoIncrementPrimaryKey() + ", "
+                    + "username " + backend.usernameType() + ", "
+                    + "ip_address " + backend.varcharType(45) + " NOT NULL, "
+                    + "action_type " + backend.varcharType(32) + " NOT NULL, "
+                    + "success BOOLEAN NOT NULL, "
+                    + "details " + backend.largeTextType() + ", "
+                    + "timestamp BIGINT DEFAULT 0"
+                    + ")" + backend.tableOptions());
+
+            backend.createIndex(conn, "idx_players_premium_uuid", "players", "premium_uuid");
+            backend.createIndex(conn, "idx_sessions_username", "sessions", "username");
+            backend.createIndex(conn, "idx_sessions_expires", "sessions", "expires_at");
+            backend.createIndex(conn, "idx_sessions_active", "sessions", "is_active");
+            backend.createIndex(conn, "idx_security_logs_username", "security_logs", "username");
+            backend.createIndex(conn, "idx_security_logs_ip", "security_logs", "ip_address");
+            backend.createIndex(conn, "idx_security_logs_timestamp", "security_logs", "timestamp");
 
             plugin.getLogger().info("Таблицы базы данных созданы/проверены успешно");
         }
     }
 
-    public CompletableFuture<Void> logSecurityAction(String username, String ipAddress,
-                                                     String actionType, boolean success, String details) {
-        return CompletableFuture.runAsync(() -> {
-            try (Connection conn = dataSource.getConnection();
-                 PreparedStatement stmt = conn.prepareStatement("""
-                     INSERT INTO security_logs (username, ip_address, action_type, success, details, timestamp)
-                     VALUES (?, ?, ?, ?, ?, ?)
-                 """)) {
-
-                stmt.setString(1, username);
-                stmt.setString(2, ipAddress);
-                stmt.setString(3, actionType);
-                stmt.setBoolean(4, success);
-                stmt.setString(5, details);
-                stmt.setLong(6, System.currentTimeMillis());
-
-                stmt.executeUpdate();
+    /**
+     * Запись события безопасности. Событие попадает в буфер и записывается
+     * в базу данных пачкой вместе с остальными (см. SecurityLogWriter)
+     */
+    public void logSecurityAction(String username, String ipAddress,
+                                  String actionType, boolean success, String details) {
+        SecurityLogWriter writer = securityLogWriter;
+        if (writer == null) {
+            plugin.getLogger().warning("Лог безопасности ещё не инициализирован, событие пропущено: " + actionType);
+            return;
+        }
 
-            } catch (SQLException e) {
-                plugin.getLogger().log(Level.WARNING, "Ошибка записи лога безопасности", e);
-            }
-        });
+        writer.append(username, ipAddress, actionType, success, details);
     }
 
     public CompletableFuture<Boolean> isPlayerRegistered(String username) {
-        return CompletableFuture.supplyAsync(() -> {
-            try (Connection conn = dataSource.getConnection();
-                 PreparedStatement stmt = conn.prepareStatement("SELECT 1 FROM players WHERE username = ? COLLATE NOCASE")) {
-
+        return withFallback(read(Priority.INTERACTIVE, conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement("SELECT 1 FROM players WHERE username = ?")) {
                 stmt.setString(1, username.toLowerCase());
-                return stmt.executeQuery().next();
-
-            } catch (SQLException e) {
-                plugin.getLogger().log(Level.SEVERE, "Ошибка проверки регистрации игрока " + username, e);
-                return false;
+                try (ResultSet rs = stmt.executeQuery()) {
+                    return rs.next();
+                }
             }
-        });
+        }), "Ошибка проверки регистрации игрока " + username, false);
     }
 
-    public CompletableFuture<Boolean> registerPlayer(String username, String password, UUID crackedUuid) {
-        return CompletableFuture.supplyAsync(() -> {
-            try (Connection conn = dataSource.getConnection();
-                 PreparedStatement stmt = conn.prepareStatement("""
-                     INSERT INTO players (username, password_hash, salt, cracked_uuid, registration_date, last_login)
-                     VALUES (?, ?, ?, ?, ?, ?)
-                 """)) {
-
-                String salt = PasswordUtils.generateSalt();
-                String hash = PasswordUtils.hashPassword(password, salt);
-                long now = System.currentTimeMillis();
+    public CompletableFuture<Boolean> registerPlayer(String username, String password, UUID crackedUuid, String ipAddress) {
+        // ИСПРАВЛЕНО: хеширование выполняется в пуле хеширования с лимитами на IP и аккаунт,
+        // сама вставка уходит в поток записи короткой командой
+        return hashingPool.submit(ipAddress, username, () -> {
+            String hash = passwordHashers.hash(password);
+            return new String[]{passwordHashers.extractSalt(hash), hash};
+        }).thenCompose(credentials -> write(Priority.INTERACTIVE, conn -> {
+            long now = System.currentTimeMillis();
+
+            try (PreparedStatement stmt = conn.prepareStatement("""
+                    INSERT INTO players (username, password_hash, salt, cracked_uuid, registration_date, last_login,
+                                         created_at, updated_at)
+                    VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+                """)) {
 
                 stmt.setString(1, username.toLowerCase());
-                stmt.setString(2, hash);
-                stmt.setString(3, salt);
+                stmt.setString(2, credentials[1]);
+                stmt.setString(3, credentials[0]);
                 stmt.setString(4, crackedUuid.toString());
                 stmt.setLong(5, now);
                 stmt.setLong(6, now);
+                stmt.setLong(7, now);
+                stmt.setLong(8, now);
 
-                boolean success = stmt.executeUpdate() > 0;
-
-                logSecurityAction(username, "unknown", "REGISTER", success,
-                        success ? "User registered successfully" : "Registration failed");
-
-                return success;
-
-            } catch (SQLException e) {
-                plugin.getLogger().log(Level.SEVERE, "Ошибка регистрации игрока " + username, e);
-                logSecurityAction(username, "unknown", "REGISTER", false, "Database error: " + e.getMessage());
-                return false;
+                return stmt.executeUpdate() > 0;
+            }
+        })).thenApply(success -> {
+            logSecurityAction(username, ipAddress, "REGISTER", success,
+                    success ? "User registered successfully" : "Registration failed");
+            return success;
+        }).exceptionally(ex -> {
+            Throwable cause = unwrap(ex);
+            if (cause instanceof PasswordHashingPool.RejectedException) {
+                // Пул перегружен - вызывающий код сообщит игроку повторить попытку
+                throw new CompletionException(cause);
             }
+            plugin.getLogger().log(Level.SEVERE, "Ошибка регистрации игрока " + username, cause);
+            logSecurityAction(username, ipAddress, "REGISTER", false, "Database error: " + cause.getMessage());
+            return false;
         });
     }
 
-    public CompletableFuture<Boolean> authenticatePlayer(String username, String password, String ipAddress) {
-        return CompletableFuture.supplyAsync(() -> {
-            try (Connection conn = dataSource.getConnection();
-                 PreparedStatement stmt = conn.prepareStatement("""
-                     SELECT password_hash, salt FROM players WHERE username = ? COLLATE NOCASE
-                 """)) {
-
+    /**
+     * Вход игрока за два обращения к БД: одно чтение учётных данных вместе с профилем
+     * и одна транзакция записи (время входа, сессия и запись аудита).
+     * Проверка пароля и хеш сессии считаются между ними, без соединения
+     */
+    public CompletableFuture<LoginResult> login(String username, String password, String ipAddress) {
+        // Шаг 1: пароль и профиль одним запросом
+        return read(Priority.INTERACTIVE, conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement("SELECT * FROM players WHERE username = ?")) {
                 stmt.setString(1, username.toLowerCase());
-                ResultSet rs = stmt.executeQuery();
-
-                if (rs.next()) {
-                    String storedHash = rs.getString("password_hash");
-                    String salt = rs.getString("salt");
-                    String inputHash = PasswordUtils.hashPassword(password, salt);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    return rs.next() ? PlayerData.fromResultSet(rs) : null;
+                }
+            }
+        }).thenCompose(data -> {
+            if (data == null) {
+                logSecurityAction(username, ipAddress, "LOGIN", false, "User not found");
+                return CompletableFuture.completedFuture(LoginResult.failure(LoginResult.Status.NOT_REGISTERED));
+            }
 
-                    boolean success = storedHash.equals(inputHash);
+            // Шаг 2: проверка пароля в пуле хеширования, без соединения с БД
+            return hashingPool.submit(ipAddress, username, () -> verifyLogin(data, username, password, ipAddress));
+        }).exceptionally(ex -> {
+            Throwable cause = unwrap(ex);
+            if (cause instanceof PasswordHashingPool.RejectedException) {
+                return LoginResult.failure(LoginResult.Status.BUSY);
+            }
+            plugin.getLogger().log(Level.SEVERE, "Ошибка аутентификации игрока " + username, cause);
+            logSecurityAction(username, ipAddress, "LOGIN", false, "Database error: " + cause.getMessage());
+            return LoginResult.failure(LoginResult.Status.ERROR);
+        }).thenCompose(result -> {
+            if (!result.isSuccess()) {
+                return CompletableFuture.completedFuture(result);
+            }
 
-                    if (success) {
-                        updateLastLogin(username, ipAddress);
-                        logSecurityAction(username, ipAddress, "LOGIN", true, "Successful authentication");
-                    } else {
-                        logSecurityAction(username, ipAddress, "LOGIN", false, "Invalid password");
+            // Шаг 3: одна транзакция записи
+            return write(Priority.INTERACTIVE, conn -> {
+                SessionData session = result.getSession();
+                long now = session.getCreatedAt();
+
+                updateLastLogin(conn, username, ipAddress);
+
+                String upgradedHash = result.getUpgradedPasswordHash();
+                if (upgradedHash != null) {
+                    try (PreparedStatement stmt = conn.prepareStatement(
+                            "UPDATE players SET password_hash = ?, salt = ? WHERE username = ?")) {
+                        stmt.setString(1, upgradedHash);
+                        stmt.setString(2, passwordHashers.extractSalt(upgradedHash));
+                        stmt.setString(3, username.toLowerCase());
+                        stmt.executeUpdate();
                     }
-
-                    return success;
                 }
 
-                logSecurityAction(username, ipAddress, "LOGIN", false, "User not found");
-                return false;
+                try (PreparedStatement deactivateStmt = conn.prepareStatement(
+                             "UPDATE sessions SET is_active = FALSE WHERE username = ?");
+                     PreparedStatement sessionStmt = conn.prepareStatement("""
+                             INSERT INTO sessions (session_hash, username, ip_address, created_at, expires_at, last_activity, is_active, server_id)
+                             VALUES (?, ?, ?, ?, ?, ?, TRUE, ?)
+                         """);
+                     PreparedStatement logStmt = conn.prepareStatement("""
+                             INSERT INTO security_logs (username, ip_address, action_type, success, details, timestamp)
+                             VALUES (?, ?, 'LOGIN', TRUE, 'Successful authentication', ?),
+                                    (?, ?, 'SESSION_CREATE', TRUE, 'Session created', ?)
+                         """)) {
+
+                    deactivateStmt.setString(1, username.toLowerCase());
+                    deactivateStmt.executeUpdate();
+
+                    sessionStmt.setString(1, session.getSessionHash());
+                    sessionStmt.setString(2, session.getUsername());
+                    sessionStmt.setString(3, ipAddress);
+                    sessionStmt.setLong(4, now);
+                    sessionStmt.setLong(5, session.getExpiresAt());
+                    sessionStmt.setLong(6, now);
+                    sessionStmt.setString(7, serverId);
+                    sessionStmt.executeUpdate();
+                    recordSessionEvents(conn, SessionEvent.Type.CREATE, List.of(session.getSessionHash()));
+
+                    for (int row = 0; row < 2; row++) {
+                        logStmt.setString(row * 3 + 1, username);
+                        logStmt.setString(row * 3 + 2, ipAddress);
+                        logStmt.setLong(row * 3 + 3, now);
+                    }
+                    logStmt.executeUpdate();
+                }
 
-            } catch (SQLException e) {
-                plugin.getLogger().log(Level.SEVERE, "Ошибка аутентификации игрока " + username, e);
-                logSecurityAction(username, ipAddress, "LOGIN", false, "Database error: " + e.getMessage());
-                return false;
-            }
+                // Профиль в памяти отражает только что записанный вход
+                result.getPlayerData().setLastIp(ipAddress);
+                result.getPlayerData().setLastLogin(now);
+                if (upgradedHash != null) {
+                    result.getPlayerData().setPasswordHash(upgradedHash);
+                    result.getPlayerData().setSalt(passwordHashers.extractSalt(upgradedHash));
+                    logSecurityAction(username, ipAddress, "PASSWORD_REHASH", true,
+                            "Password hash upgraded to " + passwordHashers.getCurrent().getName());
+                }
+                return result;
+            }).exceptionally(ex -> {
+                Throwable cause = unwrap(ex);
+                plugin.getLogger().log(Level.SEVERE, "Ошибка создания сессии для " + username, cause);
+                logSecurityAction(username, ipAddress, "SESSION_CREATE", false, "Database error: " + cause.getMessage());
+                return LoginResult.failure(LoginResult.Status.ERROR);
+            });
         });
     }
 
-    public CompletableFuture<PlayerData> getPlayerData(String username) {
-        return CompletableFuture.supplyAsync(() -> {
-            try (Connection conn = dataSource.getConnection();
-                 PreparedStatement stmt = conn.prepareStatement("""
-                     SELECT * FROM players WHERE username = ? COLLATE NOCASE
-                 """)) {
-
-                stmt.setString(1, username.toLowerCase());
-                ResultSet rs = stmt.executeQuery();
-
-                if (rs.next()) {
-                    PlayerData data = PlayerData.fromResultSet(rs);
+    private LoginResult verifyLogin(PlayerData data, String username, String password, String ipAddress) {
+        // ИСПРАВЛЕНО: алгоритм определяется по префиксу хеша, сравнение за постоянное время
+        if (!passwordHashers.verify(password, data.getPasswordHash())) {
+            logSecurityAction(username, ipAddress, "LOGIN", false, "Invalid password");
+            return LoginResult.failure(LoginResult.Status.WRONG_PASSWORD);
+        }
 
-                    // НОВОЕ: Загружаем расширенные данные если они есть
-                    try {
-                        data.setAdvancementsData(rs.getString("advancements_data"));
-                    } catch (SQLException ignored) {}
+        // Сравниваем с IP прошлого входа до того, как он будет перезаписан
+        long now = System.currentTimeMillis();
+        if (isRapidIpChange(data, ipAddress, now)) {
+            logSecurityAction(username, ipAddress, "SESSION_CREATE", false, "Rapid IP change from " + data.getLastIp());
+            return LoginResult.failure(LoginResult.Status.RAPID_IP_CHANGE);
+        }
 
-                    try {
-                        data.setStatisticsData(rs.getString("statistics_data"));
-                    } catch (SQLException ignored) {}
+        // НОВОЕ: пароль известен только сейчас - пересчитываем хеш, если сменились алгоритм или параметры
+        String upgradedHash = passwordHashers.needsRehash(data.getPasswordHash()) ? passwordHashers.hash(password) : null;
 
-                    try {
-                        data.setRecipesData(rs.getString("recipes_data"));
-                    } catch (SQLException ignored) {}
+        SessionData session = new SessionData(sessionTokens.newSessionHash(),
+                username.toLowerCase(), ipAddress, now, now + plugin.getConfigManager().getSessionTTL());
+        return LoginResult.success(data, session, upgradedHash);
+    }
 
-                    try {
-                        data.setPotionEffectsData(rs.getString("potion_effects_data"));
-                    } catch (SQLException ignored) {}
+    private boolean isRapidIpChange(PlayerData data, String ipAddress, long now) {
+        if (!plugin.getConfigManager().isIpCheckEnabled() || data.getLastIp() == null
+                || data.getLastIp().equals(ipAddress)) {
+            return false;
+        }
 
-                    return data;
-                }
+        long timeSinceLastLogin = now - data.getLastLogin();
+        boolean isRapid = timeSinceLastLogin < plugin.getConfigManager().getIpChangeGracePeriod();
 
-                return null;
+        if (isRapid) {
+            plugin.getLogger().warning(String.format(
+                    "Быстрая смена IP для %s: %s -> %s (прошло %d мс)",
+                    data.getUsername(), data.getLastIp(), ipAddress, timeSinceLastLogin
+            ));
+        }
 
-            } catch (SQLException e) {
-                plugin.getLogger().log(Level.SEVERE, "Ошибка получения данных игрока " + username, e);
-                return null;
-            }
-        });
+        return isRapid;
     }
 
-    public CompletableFuture<Void> savePlayerData(PlayerData playerData) {
-        return CompletableFuture.runAsync(() -> {
-            try (Connection conn = dataSource.getConnection();
-                 PreparedStatement stmt = conn.prepareStatement("""
-                     UPDATE players SET 
-                         world_name = ?, x = ?, y = ?, z = ?, yaw = ?, pitch = ?,
-                         inventory_data = ?, enderchest_data = ?, experience = ?, level = ?,
-                         health = ?, food = ?, saturation = ?, game_mode = ?,
-                         advancements_data = ?, statistics_data = ?, recipes_data = ?, potion_effects_data = ?
-                     WHERE username = ? COLLATE NOCASE
-                 """)) {
-
-                stmt.setString(1, playerData.getWorldName());
-                stmt.setDouble(2, playerData.getX());
-                stmt.setDouble(3, playerData.getY());
-                stmt.setDouble(4, playerData.getZ());
-                stmt.setFloat(5, playerData.getYaw());
-                stmt.setFloat(6, playerData.getPitch());
-                stmt.setString(7, playerData.getInventoryData());
-                stmt.setString(8, playerData.getEnderchestData());
-                stmt.setInt(9, playerData.getExperience());
-                stmt.setInt(10, playerData.getLevel());
-                stmt.setDouble(11, playerData.getHealth());
-                stmt.setInt(12, playerData.getFood());
-                stmt.setFloat(13, playerData.getSaturation());
-                stmt.setString(14, playerData.getGameMode());
-
-                // НОВОЕ: Сохранение расширенных данных
-                stmt.setString(15, playerData.getAdvancementsData());
-                stmt.setString(16, playerData.getStatisticsData());
-                stmt.setString(17, playerData.getRecipesData());
-                stmt.setString(18, playerData.getPotionEffectsData());
-
-                stmt.setString(19, playerData.getUsername().toLowerCase());
-
-                stmt.executeUpdate();
-
-            } catch (SQLException e) {
-                plugin.getLogger().log(Level.SEVERE, "Ошибка сохранения данных игрока " + playerData.getUsername(), e);
+    /**
+     * НОВОЕ: Краткие сведения об игроке (IP, даты, позиция) без тяжёлых колонок профиля.
+     * Полный профиль (getPlayerData) нужен только при применении данных к игроку
+     */
+    public CompletableFuture<PlayerSummary> getPlayerSummary(String username) {
+        return withFallback(read(Priority.INTERACTIVE, conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "SELECT " + PlayerSummary.COLUMNS + " FROM players WHERE username = ?")) {
+                stmt.setString(1, username.toLowerCase());
+                try (ResultSet rs = stmt.executeQuery()) {
+                    return rs.next() ? PlayerSummary.fromResultSet(rs) : null;
+                }
             }
-        });
+        }), "Ошибка получения сведений об игроке " + username, null);
     }
 
-    public CompletableFuture<String> createSession(String username, String ipAddress) {
-        return CompletableFuture.supplyAsync(() -> {
-            try (Connection conn = dataSource.getConnection()) {
-                try (PreparedStatement deleteStmt = conn.prepareStatement("""
-                     UPDATE sessions SET is_active = 0 WHERE username = ? COLLATE NOCASE
-                """)) {
-                    deleteStmt.setString(1, username.toLowerCase());
-                    deleteStmt.executeUpdate();
+    public CompletableFuture<PlayerData> getPlayerData(String username) {
+        return withFallback(read(Priority.INTERACTIVE, conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement("SELECT * FROM players WHERE username = ?")) {
+                stmt.setString(1, username.toLowerCase());
+                try (ResultSet rs = stmt.executeQuery()) {
+                    // Расширенные данные читаются в fromResultSet, загруженный объект не содержит изменений
+                    return rs.next() ? PlayerData.fromResultSet(rs) : null;
                 }
+            }
+        }), "Ошибка получения данных игрока " + username, null);
+    }
 
-                try (PreparedStatement stmt = conn.prepareStatement("""
-                     INSERT INTO sessions (session_hash, username, ip_address, created_at, expires_at, last_activity, is_active)
-                     VALUES (?, ?, ?, ?, ?, ?, 1)
-                 """)) {
+    /**
+     * Сохранение изменённых данных игрока.
+     * Записываются только колонки, изменённые с прошлого сохранения; если изменений нет,
+     * обращения к БД не происходит
+     * @return примерный объём записанных данных в байтах (0 если запись не понадобилась)
+     */
+    public CompletableFuture<Long> savePlayerData(PlayerData playerData) {
+        if (!playerData.isDirty()) {
+            return CompletableFuture.completedFuture(0L);
+        }
 
-                    long now = System.currentTimeMillis();
-                    long expiresAt = now + plugin.getConfigManager().getSessionTTL();
+        // Колонки забираются в момент выполнения команды, чтобы захватить все изменения до неё
+        int[] taken = new int[1];
 
-                    String sessionHash = PasswordUtils.createSessionHash(username, ipAddress, now);
+        return write(Priority.BACKGROUND, conn -> {
+            int dirty = playerData.takeDirtyColumns();
+            taken[0] = dirty;
+            if (dirty == 0) {
+                return 0L;
+            }
 
-                    stmt.setString(1, sessionHash);
-                    stmt.setString(2, username.toLowerCase());
-                    stmt.setString(3, ipAddress);
-                    stmt.setLong(4, now);
-                    stmt.setLong(5, expiresAt);
-                    stmt.setLong(6, now);
-
-                    if (stmt.executeUpdate() > 0) {
-                        logSecurityAction(username, ipAddress, "SESSION_CREATE", true, "Session created");
-                        return sessionHash;
+            StringBuilder sql = new StringBuilder("UPDATE players SET ");
+            for (PlayerData.Column column : PlayerData.Column.values()) {
+                if (!column.isIn(dirty)) {
+                    continue;
+                }
+                if (column.isCompressed()) {
+                    // Текст старого формата больше не нужен
+                    sql.append(column.getBlobColumnName()).append(" = ?, ")
+                            .append(column.getColumnName()).append(" = NULL, ");
+                } else {
+                    sql.append(column.getColumnName()).append(" = ?, ");
+                }
+            }
+            sql.append("updated_at = ? WHERE username = ?");
+
+            try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+                int index = 1;
+                long bytes = 0;
+                for (PlayerData.Column column : PlayerData.Column.values()) {
+                    if (column.isIn(dirty)) {
+                        bytes += bindColumn(stmt, index++, column, playerData);
                     }
                 }
 
-                return null;
+                stmt.setLong(index++, System.currentTimeMillis());
+                stmt.setString(index, playerData.getUsername().toLowerCase());
 
-            } catch (SQLException e) {
-                plugin.getLogger().log(Level.SEVERE, "Ошибка создания сессии для " + username, e);
-                logSecurityAction(username, ipAddress, "SESSION_CREATE", false, "Database error: " + e.getMessage());
-                return null;
+                stmt.executeUpdate();
+                return bytes + Long.BYTES;
             }
+        }).exceptionally(ex -> {
+            // Колонки снова помечаются изменёнными, чтобы попасть в следующее сохранение
+            playerData.restoreDirtyColumns(taken[0]);
+            plugin.getLogger().log(Level.SEVERE, "Ошибка сохранения данных игрока " + playerData.getUsername(), unwrap(ex));
+            return 0L;
         });
     }
 
-    public CompletableFuture<Boolean> validateSession(String sessionHash, String username, String ipAddress) {
-        return CompletableFuture.supplyAsync(() -> {
-            try (Connection conn = dataSource.getConnection();
+    /**
+     * Установка значения колонки в запрос
+     * @return размер значения в байтах
+     */
+    private long bindColumn(PreparedStatement stmt, int index, PlayerData.Column column, PlayerData data) throws SQLException {
+        switch (column) {
+            case WORLD_NAME: return bindString(stmt, index, data.getWorldName());
+            case X: stmt.setDouble(index, data.getX()); return Double.BYTES;
+            case Y: stmt.setDouble(index, data.getY()); return Double.BYTES;
+            case Z: stmt.setDouble(index, data.getZ()); return Double.BYTES;
+            case YAW: stmt.setFloat(index, data.getYaw()); return Float.BYTES;
+            case PITCH: stmt.setFloat(index, data.getPitch()); return Float.BYTES;
+            case INVENTORY: return bindBlob(stmt, index, column, data.getInventoryData());
+            case ENDERCHEST: return bindBlob(stmt, index, column, data.getEnderchestData());
+            case EXPERIENCE: stmt.setInt(index, data.getExperience()); return Integer.BYTES;
+            case LEVEL: stmt.setInt(index, data.getLevel()); return Integer.BYTES;
+            case HEALTH: stmt.setDouble(index, data.getHealth()); return Double.BYTES;
+            case FOOD: stmt.setInt(index, data.getFood()); return Integer.BYTES;
+            case SATURATION: stmt.setFloat(index, data.getSaturation()); return Float.BYTES;
+            case GAME_MODE: return bindString(stmt, index, data.getGameMode());
+            case ADVANCEMENTS: return bindBlob(stmt, index, column, data.getAdvancementsData());
+            case STATISTICS: return bindBlob(stmt, index, column, data.getStatisticsData());
+            case RECIPES: return bindBlob(stmt, index, column, data.getRecipesData());
+            case POTION_EFFECTS: return bindBlob(stmt, index, column, data.getPotionEffectsData());
+            default: throw new SQLException("Неизвестная колонка: " + column);
+        }
+    }
+
+    private long bindString(PreparedStatement stmt, int index, String value) throws SQLException {
+        stmt.setString(index, value);
+        // Короткие строки - ASCII, длина строки равна размеру в байтах
+        return value != null ? value.length() : 0;
+    }
+
+    private long bindBlob(PreparedStatement stmt, int index, PlayerData.Column column, String value) throws SQLException {
+        byte[] blob = ProfileCodec.encode(value, column.getBlobType());
+        stmt.setBytes(index, blob);
+        return blob != null ? blob.length : 0;
+    }
+
+    public CompletableFuture<SessionData> createSession(String username, String ipAddress) {
+        long now = System.currentTimeMillis();
+        long expiresAt = now + plugin.getConfigManager().getSessionTTL();
+
+        // ИСПРАВЛЕНО: хеш сессии - один HMAC, отдельная задача в пуле БД больше не нужна
+        String sessionHash = sessionTokens.newSessionHash();
+        return write(Priority.INTERACTIVE, conn -> {
+            try (PreparedStatement deactivateStmt = conn.prepareStatement(
+                         "UPDATE sessions SET is_active = FALSE WHERE username = ?");
                  PreparedStatement stmt = conn.prepareStatement("""
-                     SELECT expires_at FROM sessions 
-                     WHERE session_hash = ? AND username = ? COLLATE NOCASE AND ip_address = ? AND is_active = 1
-                 """)) {
+                         INSERT INTO sessions (session_hash, username, ip_address, created_at, expires_at, last_activity, is_active, server_id)
+                         VALUES (?, ?, ?, ?, ?, ?, TRUE, ?)
+                     """)) {
+
+                deactivateStmt.setString(1, username.toLowerCase());
+                deactivateStmt.executeUpdate();
 
                 stmt.setString(1, sessionHash);
                 stmt.setString(2, username.toLowerCase());
                 stmt.setString(3, ipAddress);
+                stmt.setLong(4, now);
+                stmt.setLong(5, expiresAt);
+                stmt.setLong(6, now);
+                stmt.setString(7, serverId);
 
-                ResultSet rs = stmt.executeQuery();
-                if (rs.next()) {
-                    long expiresAt = rs.getLong("expires_at");
-                    boolean valid = System.currentTimeMillis() < expiresAt;
+                if (stmt.executeUpdate() == 0) {
+                    return null;
+                }
+                recordSessionEvents(conn, SessionEvent.Type.CREATE, List.of(sessionHash));
+                return new SessionData(sessionHash, username.toLowerCase(), ipAddress, now, expiresAt);
+            }
+        }).thenApply(session -> {
+            if (session != null) {
+                logSecurityAction(username, ipAddress, "SESSION_CREATE", true, "Session created");
+            }
+            return session;
+        }).exceptionally(ex -> {
+            Throwable cause = unwrap(ex);
+            plugin.getLogger().log(Level.SEVERE, "Ошибка создания сессии для " + username, cause);
+            logSecurityAction(username, ipAddress, "SESSION_CREATE", false, "Database error: " + cause.getMessage());
+            return null;
+        });
+    }
 
-                    if (valid) {
-                        updateSessionActivity(sessionHash);
-                    } else {
-                        invalidateSession(sessionHash);
-                    }
+    /**
+     * НОВОЕ: Действующие сессии для загрузки в память при запуске
+     */
+    public CompletableFuture<List<SessionData>> loadActiveSessions() {
+        return withFallback(read(Priority.INTERACTIVE, conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement("SELECT " + SESSION_COLUMNS + " FROM sessions "
+                    + "WHERE is_active = TRUE AND expires_at > ? ORDER BY created_at")) {
 
-                    return valid;
+                stmt.setLong(1, System.currentTimeMillis());
+
+                List<SessionData> sessions = new ArrayList<>();
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        sessions.add(sessionFromResultSet(rs));
+                    }
                 }
+                return sessions;
+            }
+        }), "Ошибка загрузки активных сессий", Collections.emptyList());
+    }
 
-                return false;
+    /**
+     * НОВОЕ: Действующая сессия игрока (режим сети: сессия могла быть создана другим сервером)
+     * @return сессия или null
+     */
+    public CompletableFuture<SessionData> findActiveSession(String username) {
+        return withFallback(read(Priority.INTERACTIVE, conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement("SELECT " + SESSION_COLUMNS + " FROM sessions "
+                    + "WHERE username = ? AND is_active = TRUE AND expires_at > ? ORDER BY created_at DESC LIMIT 1")) {
 
-            } catch (SQLException e) {
-                plugin.getLogger().log(Level.SEVERE, "Ошибка валидации сессии", e);
-                return false;
+                stmt.setString(1, username.toLowerCase());
+                stmt.setLong(2, System.currentTimeMillis());
+
+                try (ResultSet rs = stmt.executeQuery()) {
+                    return rs.next() ? sessionFromResultSet(rs) : null;
+                }
             }
-        });
+        }), "Ошибка загрузки сессии " + username, null);
     }
 
-    public CompletableFuture<Void> invalidateSession(String sessionHash) {
-        return CompletableFuture.runAsync(() -> {
-            try (Connection conn = dataSource.getConnection();
-                 PreparedStatement stmt = conn.prepareStatement("UPDATE sessions SET is_active = 0 WHERE session_hash = ?")) {
+    private static SessionData sessionFromResultSet(ResultSet rs) throws SQLException {
+        return new SessionData(
+                rs.getString("session_hash"),
+                rs.getString("username"),
+                rs.getString("ip_address"),
+                rs.getLong("created_at"),
+                rs.getLong("expires_at"),
+                rs.getLong("last_activity")
+        );
+    }
 
+    public CompletableFuture<Void> invalidateSession(String sessionHash) {
+        return withFallback(write(Priority.INTERACTIVE, conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement("UPDATE sessions SET is_active = FALSE WHERE session_hash = ?")) {
                 stmt.setString(1, sessionHash);
                 stmt.executeUpdate();
-
-            } catch (SQLException e) {
-                plugin.getLogger().log(Level.SEVERE, "Ошибка деактивации сессии", e);
             }
-        });
+            recordSessionEvents(conn, SessionEvent.Type.INVALIDATE, List.of(sessionHash));
+            return null;
+        }), "Ошибка деактивации сессии", null);
     }
 
-    public void invalidateSessionSync(String sessionHash) {
+    /**
+     * Деактивация сессий с ожиданием (выключение сервера). Одна транзакция через поток записи
+     */
+    public void invalidateSessionsSync(List<String> sessionHashes) {
         if (dataSource == null || dataSource.isClosed()) {
-            plugin.getLogger().warning("DataSource уже закрыт, пропускаем деактивацию сессии");
+            plugin.getLogger().warning("DataSource уже закрыт, пропускаем деактивацию сессий");
             return;
         }
 
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement stmt = conn.prepareStatement("UPDATE sessions SET is_active = 0 WHERE session_hash = ?")) {
-
-            stmt.setString(1, sessionHash);
-            stmt.executeUpdate();
-
+        try {
+            writeSync(Priority.INTERACTIVE, conn -> {
+                try (PreparedStatement stmt = conn.prepareStatement("UPDATE sessions SET is_active = FALSE WHERE session_hash = ?")) {
+                    for (String sessionHash : sessionHashes) {
+                        stmt.setString(1, sessionHash);
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+                }
+                recordSessionEvents(conn, SessionEvent.Type.INVALIDATE, sessionHashes);
+                return null;
+            }, plugin.getConfigManager().getDatabaseShutdownTimeout());
         } catch (SQLException e) {
-            if (!e.getMessage().contains("has been closed")) {
-                plugin.getLogger().log(Level.WARNING, "Ошибка синхронной деактивации сессии", e);
-            }
+            plugin.getLogger().log(Level.WARNING, "Ошибка синхронной деактивации сессий", e);
         }
     }
 
     public CompletableFuture<Void> invalidateUserSessions(String username) {
-        return CompletableFuture.runAsync(() -> {
-            try (Connection conn = dataSource.getConnection();
-                 PreparedStatement stmt = conn.prepareStatement("UPDATE sessions SET is_active = 0 WHERE username = ? COLLATE NOCASE")) {
-
+        return withFallback(write(Priority.INTERACTIVE, conn -> {
+            int updated;
+            try (PreparedStatement stmt = conn.prepareStatement("UPDATE sessions SET is_active = FALSE WHERE username = ?")) {
                 stmt.setString(1, username.toLowerCase());
-                int updated = stmt.executeUpdate();
+                updated = stmt.executeUpdate();
+            }
 
-                logSecurityAction(username, "admin", "SESSION_INVALIDATE", true,
-                        "Invalidated " + updated + " sessions");
+            if (networkMode) {
+                // Событие без хеша - деактивированы все сессии игрока
+                try (PreparedStatement stmt = conn.prepareStatement(
+                        "INSERT INTO session_events (event_type, username, session_hash, server_id, created_at) VALUES (?, ?, NULL, ?, ?)")) {
+                    stmt.setString(1, SessionEvent.Type.INVALIDATE.name());
+                    stmt.setString(2, username.toLowerCase());
+                    stmt.setString(3, serverId);
+                    stmt.setLong(4, System.currentTimeMillis());
+                    stmt.executeUpdate();
+                }
+            }
+            return updated;
+        }).thenAccept(updated -> logSecurityAction(username, "admin", "SESSION_INVALIDATE", true,
+                "Invalidated " + updated + " sessions")
+        ), "Ошибка деактивации сессий пользователя " + username, null);
+    }
 
-            } catch (SQLException e) {
-                plugin.getLogger().log(Level.SEVERE, "Ошибка деактивации сессий пользователя " + username, e);
+    /**
+     * НОВОЕ: Запись событий сессий для других серверов сети в той же транзакции,
+     * что и изменение сессии. Имя игрока берётся из строки сессии
+     */
+    private void recordSessionEvents(Connection conn, SessionEvent.Type type, List<String> sessionHashes) throws SQLException {
+        if (!networkMode || sessionHashes.isEmpty()) {
+            return;
+        }
+
+        try (PreparedStatement stmt = conn.prepareStatement("""
+                INSERT INTO session_events (event_type, username, session_hash, server_id, created_at)
+                SELECT ?, username, session_hash, ?, ? FROM sessions WHERE session_hash = ?
+            """)) {
+            long now = System.currentTimeMillis();
+            for (String sessionHash : sessionHashes) {
+                stmt.setString(1, type.name());
+                stmt.setString(2, serverId);
+                stmt.setLong(3, now);
+                stmt.setString(4, sessionHash);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    /**
+     * НОВОЕ: События сессий после указанного номера, а также недавние
+     * (номер выделяется до фиксации транзакции, поэтому событие с меньшим номером
+     * может стать видимым позже события с большим)
+     */
+    public CompletableFuture<List<SessionEvent>> readSessionEvents(long afterId, long since, int limit) {
+        return read(Priority.INTERACTIVE, conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "SELECT id, event_type, username, session_hash, server_id FROM session_events "
+                            + "WHERE id > ? OR created_at >= ? ORDER BY id LIMIT " + limit)) {
+
+                stmt.setLong(1, afterId);
+                stmt.setLong(2, since);
+
+                List<SessionEvent> events = new ArrayList<>();
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        events.add(new SessionEvent(
+                                rs.getLong("id"),
+                                SessionEvent.Type.valueOf(rs.getString("event_type")),
+                                rs.getString("username"),
+                                rs.getString("session_hash"),
+                                rs.getString("server_id")
+                        ));
+                    }
+                }
+                return events;
             }
         });
     }
 
-    private void updateSessionActivity(String sessionHash) {
-        CompletableFuture.runAsync(() -> {
-            try (Connection conn = dataSource.getConnection();
-                 PreparedStatement stmt = conn.prepareStatement("UPDATE sessions SET last_activity = ? WHERE session_hash = ?")) {
+    public CompletableFuture<Long> getLatestSessionEventId() {
+        return read(Priority.INTERACTIVE, conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement("SELECT MAX(id) FROM session_events");
+                 ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0L;
+            }
+        });
+    }
 
-                stmt.setLong(1, System.currentTimeMillis());
-                stmt.setString(2, sessionHash);
+    public CompletableFuture<Void> cleanupSessionEvents(long olderThan) {
+        return withFallback(write(Priority.BACKGROUND, conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM session_events WHERE created_at < ?")) {
+                stmt.setLong(1, olderThan);
                 stmt.executeUpdate();
+                return null;
+            }
+        }), "Ошибка очистки событий сессий", null);
+    }
 
-            } catch (SQLException e) {
-                plugin.getLogger().log(Level.WARNING, "Ошибка обновления активности сессии", e);
+    /**
+     * ИСПРАВЛЕНО: Запись накопленной активности сессий одним пакетом
+     * @param activity хеш сессии -> время последней активности
+     */
+    public CompletableFuture<Void> updateSessionActivity(Map<String, Long> activity) {
+        return withFallback(write(Priority.BACKGROUND, conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement("UPDATE sessions SET last_activity = ? WHERE session_hash = ?")) {
+                for (Map.Entry<String, Long> entry : activity.entrySet()) {
+                    stmt.setLong(1, entry.getValue());
+                    stmt.setString(2, entry.getKey());
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+                return null;
             }
-        });
+        }), "Ошибка обновления активности сессий", null);
+    }
+
+    /**
+     * НОВОЕ: Деактивация группы сессий одним пакетом (истечение по таймеру)
+     */
+    public CompletableFuture<Void> invalidateSessions(List<String> sessionHashes) {
+        return withFallback(write(Priority.BACKGROUND, conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement("UPDATE sessions SET is_active = FALSE WHERE session_hash = ?")) {
+                for (String sessionHash : sessionHashes) {
+                    stmt.setString(1, sessionHash);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+                // События для сети не пишутся: каждый сервер сам истекает свою копию сессии
+                return null;
+            }
+        }), "Ошибка деактивации истёкших сессий", null);
     }
 
     public CompletableFuture<Void> cleanExpiredSessions() {
-        return CompletableFuture.runAsync(() -> {
-            try (Connection conn = dataSource.getConnection();
-                 PreparedStatement stmt = conn.prepareStatement("UPDATE sessions SET is_active = 0 WHERE expires_at < ? AND is_active = 1")) {
+        long now = System.currentTimeMillis();
 
-                long now = System.currentTimeMillis();
+        return withFallback(write(Priority.BACKGROUND, conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "UPDATE sessions SET is_active = FALSE WHERE expires_at < ? AND is_active = TRUE")) {
                 stmt.setLong(1, now);
-                int deleted = stmt.executeUpdate();
-
-                if (deleted > 0) {
-                    plugin.getLogger().info("Деактивировано " + deleted + " просроченных сессий (текущее время: " +
-                            new java.util.Date(now) + ")");
-                } else {
-                    plugin.getLogger().fine("Просроченных сессий не найдено");
-                }
-
-            } catch (SQLException e) {
-                plugin.getLogger().log(Level.SEVERE, "Ошибка очистки просроченных сессий", e);
+                return stmt.executeUpdate();
             }
-        });
+        }).thenAccept(deleted -> {
+            if (deleted > 0) {
+                plugin.getLogger().info("Деактивировано " + deleted + " просроченных сессий (текущее время: " +
+                        new java.util.Date(now) + ")");
+            } else {
+                plugin.getLogger().fine("Просроченных сессий не найдено");
+            }
+        }), "Ошибка очистки просроченных сессий", null);
     }
 
     public CompletableFuture<Boolean> linkPremiumAccount(String username, UUID premiumUuid) {
-        return CompletableFuture.supplyAsync(() -> {
-            try (Connection conn = dataSource.getConnection();
-                 PreparedStatement stmt = conn.prepareStatement("""
-                     UPDATE players SET premium_uuid = ? WHERE username = ? COLLATE NOCASE
-                 """)) {
-
+        return withFallback(write(Priority.INTERACTIVE, conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement("UPDATE players SET premium_uuid = ? WHERE username = ?")) {
                 stmt.setString(1, premiumUuid.toString());
                 stmt.setString(2, username.toLowerCase());
-
-                boolean success = stmt.executeUpdate() > 0;
-
-                logSecurityAction(username, "system", "UUID_LINK", success,
-                        "Premium UUID linked: " + premiumUuid);
-
-                return success;
-
-            } catch (SQLException e) {
-                plugin.getLogger().log(Level.SEVERE, "Ошибка привязки премиум аккаунта", e);
-                return false;
+                return stmt.executeUpdate() > 0;
             }
-        });
+        }).thenApply(success -> {
+            logSecurityAction(username, "system", "UUID_LINK", success,
+                    "Premium UUID linked: " + premiumUuid);
+            return success;
+        }), "Ошибка привязки премиум аккаунта", false);
     }
 
     // НОВОЕ: Обновление UUID игрока (для питомцев)
     public CompletableFuture<Boolean> updatePlayerUUID(String username, UUID newUUID) {
-        return CompletableFuture.supplyAsync(() -> {
-            try (Connection conn = dataSource.getConnection();
-                 PreparedStatement stmt = conn.prepareStatement(
-                         "UPDATE players SET cracked_uuid = ? WHERE username = ? COLLATE NOCASE"
-                 )) {
-
+        return withFallback(write(Priority.INTERACTIVE, conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement("UPDATE players SET cracked_uuid = ? WHERE username = ?")) {
                 stmt.setString(1, newUUID.toString());
                 stmt.setString(2, username.toLowerCase());
+                return stmt.executeUpdate() > 0;
+            }
+        }).thenApply(success -> {
+            if (success) {
+                plugin.getLogger().info("UUID обновлен для игрока " + username + ": " + newUUID);
 
-                boolean success = stmt.executeUpdate() > 0;
+                logSecurityAction(username, "system", "UUID_UPDATE", true,
+                        "Cracked UUID updated to: " + newUUID);
+            }
+            return success;
+        }), "Ошибка обновления UUID для игрока " + username, false);
+    }
 
-                if (success) {
-                    plugin.getLogger().info("UUID обновлен для игрока " + username + ": " + newUUID);
+    /**
+     * Обновление времени и IP последнего входа на переданном соединении
+     */
+    private void updateLastLogin(Connection conn, String username, String ipAddress) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "UPDATE players SET last_login = ?, last_ip = ? WHERE username = ?")) {
 
-                    logSecurityAction(username, "system", "UUID_UPDATE", true,
-                            "Cracked UUID updated to: " + newUUID);
+            stmt.setLong(1, System.currentTimeMillis());
+            stmt.setString(2, ipAddress);
+            stmt.setString(3, username.toLowerCase());
+            stmt.executeUpdate();
+        }
+    }
+
+    public CompletableFuture<Integer> getActiveSessionsCount() {
+        return withFallback(read(Priority.INTERACTIVE, conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "SELECT COUNT(*) FROM sessions WHERE is_active = TRUE AND expires_at > ?")) {
+                stmt.setLong(1, System.currentTimeMillis());
+                try (ResultSet rs = stmt.executeQuery()) {
+                    return rs.next() ? rs.getInt(1) : 0;
                 }
+            }
+        }), "Ошибка получения количества активных сессий", 0);
+    }
 
-                return success;
+    // === НОВОЕ: Разделение чтения и записи ===
 
+    /**
+     * Чтение в пуле потоков БД на соединении только для чтения
+     * (для SQLite - отдельный пул читателей, не ждущий записи)
+     */
+    public <T> CompletableFuture<T> read(Priority priority, SqlWork<T> work) {
+        return executor.supply(priority, () -> {
+            try {
+                return readNow(work);
             } catch (SQLException e) {
-                plugin.getLogger().log(Level.SEVERE,
-                        "Ошибка обновления UUID для игрока " + username, e);
-                return false;
+                throw new CompletionException(e);
             }
         });
     }
 
-    private void updateLastLogin(String username, String ipAddress) {
-        CompletableFuture.runAsync(() -> {
-            try (Connection conn = dataSource.getConnection();
-                 PreparedStatement stmt = conn.prepareStatement("""
-                     UPDATE players SET last_login = ?, last_ip = ? WHERE username = ? COLLATE NOCASE
-                 """)) {
-
-                stmt.setLong(1, System.currentTimeMillis());
-                stmt.setString(2, ipAddress);
-                stmt.setString(3, username.toLowerCase());
-                stmt.executeUpdate();
+    /**
+     * Команда записи. Для SQLite выполняется единственным потоком записи
+     * вместе с другими накопившимися командами в одной транзакции,
+     * для остальных БД - в пуле потоков в отдельной транзакции
+     */
+    public <T> CompletableFuture<T> write(Priority priority, SqlWork<T> work) {
+        if (writer != null) {
+            return writer.submit(priority, work);
+        }
 
+        return executor.supply(priority, () -> {
+            try (Connection conn = dataSource.getConnection()) {
+                return inTransaction(conn, work);
             } catch (SQLException e) {
-                plugin.getLogger().log(Level.SEVERE, "Ошибка обновления времени входа", e);
+                throw new CompletionException(e);
             }
         });
     }
 
-    public CompletableFuture<Integer> getActiveSessionsCount() {
-        return CompletableFuture.supplyAsync(() -> {
-            try (Connection conn = dataSource.getConnection();
-                 PreparedStatement stmt = conn.prepareStatement("""
-                     SELECT COUNT(*) FROM sessions WHERE is_active = 1 AND expires_at > ?
-                 """)) {
+    /**
+     * ИСПРАВЛЕНО: Запись с ожиданием в потоке вызывающего (собственные потоки плагина, выключение).
+     * Для SQLite команда выполняется единственным потоком записи, а не вторым соединением
+     * в обход него; для остальных БД - на соединении из пула, без пула задач, который
+     * при выключении уже может быть остановлен
+     */
+    public <T> T writeSync(Priority priority, SqlWork<T> work, long timeoutMillis) throws SQLException {
+        if (writer == null) {
+            try (Connection conn = dataSource.getConnection()) {
+                return inTransaction(conn, work);
+            }
+        }
 
-                stmt.setLong(1, System.currentTimeMillis());
-                ResultSet rs = stmt.executeQuery();
+        try {
+            return writer.submit(priority, work).get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = unwrap(e.getCause());
+            throw cause instanceof SQLException ? (SQLException) cause : new SQLException(cause);
+        } catch (TimeoutException e) {
+            throw new SQLException("Запись в БД не выполнена за " + timeoutMillis + " мс");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Ожидание записи в БД прервано", e);
+        }
+    }
 
-                if (rs.next()) {
-                    return rs.getInt(1);
-                }
+    private static <T> T inTransaction(Connection conn, SqlWork<T> work) throws SQLException {
+        conn.setAutoCommit(false);
+        try {
+            T result = work.execute(conn);
+            conn.commit();
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
 
-                return 0;
+    private <T> T readNow(SqlWork<T> work) throws SQLException {
+        try (Connection conn = getReadConnection()) {
+            return work.execute(conn);
+        }
+    }
 
-            } catch (SQLException e) {
-                plugin.getLogger().log(Level.SEVERE, "Ошибка получения количества активных сессий", e);
-                return 0;
-            }
+    private Connection getReadConnection() throws SQLException {
+        return readDataSource != null ? readDataSource.getConnection() : getConnection();
+    }
+
+    private <T> CompletableFuture<T> withFallback(CompletableFuture<T> future, String errorMessage, T fallback) {
+        return future.exceptionally(ex -> {
+            plugin.getLogger().log(Level.SEVERE, errorMessage, unwrap(ex));
+            return fallback;
         });
     }
 
+    private static Throwable unwrap(Throwable ex) {
+        while (ex instanceof CompletionException && ex.getCause() != null) {
+            ex = ex.getCause();
+        }
+        return ex;
+    }
+
     public Connection getConnection() throws SQLException {
         if (dataSource == null) {
             throw new SQLException("DataSource не инициализирован");
@@ -627,7 +1031,183 @@ public class DatabaseManager {
         return dataSource.getConnection();
     }
 
+    public boolean isNetworkMode() {
+        return networkMode;
+    }
+
+    public String getServerId() {
+        return serverId;
+    }
+
+    public StorageBackend getBackend() {
+        return backend;
+    }
+
+    public DatabaseExecutor getExecutor() {
+        return executor;
+    }
+
+    public PasswordHashingPool getHashingPool() {
+        return hashingPool;
+    }
+
+    public PasswordHashers getPasswordHashers() {
+        return passwordHashers;
+    }
+
+    /**
+     * НОВОЕ: Подбор стоимости хеширования под процессор сервера
+     * @param apply сразу использовать выбранные параметры для новых хешей
+     */
+    public synchronized CompletableFuture<HashCalibration> calibratePasswordHashing(boolean apply) {
+        if (runningCalibration != null && !runningCalibration.isDone()) {
+            if (apply && !runningCalibrationApplies) {
+                // ИСПРАВЛЕНО: идущая калибровка без применения - её результат применяется по окончании
+                runningCalibrationApplies = true;
+                runningCalibration = runningCalibration.thenApply(calibration -> {
+                    calibration = applyCalibration(calibration);
+                    lastHashCalibration = calibration;
+                    plugin.getLogger().info("Применено и сохранено в config.yml: " + calibration.getParameters());
+                    return calibration;
+                });
+            }
+            return runningCalibration;
+        }
+        runningCalibrationApplies = apply;
+
+        ConfigManager config = plugin.getConfigManager();
+        PasswordHashCalibrator calibrator = new PasswordHashCalibrator(
+                config.getCalibrationTargetMillis(), hashingPool.getThreadCount(), config.getCalibrationLoginsPerSecond());
+        PasswordHasher configured = passwordHashers.getCurrent();
+
+        // Отдельный поток: замеры занимают несколько секунд и не должны занимать пул хеширования
+        runningCalibration = CompletableFuture.supplyAsync(() -> calibrator.calibrate(configured),
+                runnable -> new NamedThreadFactory("SecureAuth-Calibration").newThread(runnable).start()
+        ).thenApply(calibration -> {
+            if (apply) {
+                calibration = applyCalibration(calibration);
+            }
+            lastHashCalibration = calibration;
+            logCalibration(calibration);
+            return calibration;
+        });
+
+        return runningCalibration;
+    }
+
+    /**
+     * ИСПРАВЛЕНО: Выбранные параметры сначала записываются в config.yml, иначе после перезапуска
+     * или reload вернётся прежняя стоимость и уже обновлённые хеши будут переписаны обратно
+     */
+    private HashCalibration applyCalibration(HashCalibration calibration) {
+        plugin.getConfigManager().savePasswordHasher(calibration.getHasher());
+        passwordHashers.setCurrent(calibration.getHasher());
+        return calibration.withApplied(true);
+    }
+
+    private void logCalibration(HashCalibration calibration) {
+        plugin.getLogger().info("Калибровка хеширования (" + calibration.getAlgorithm() + "), бюджет "
+                + calibration.getBudgetMillis() + " мс на хеш:");
+        for (Map.Entry<String, Double> measurement : calibration.getMeasurements().entrySet()) {
+            plugin.getLogger().info("  " + measurement.getKey() + " - " + String.format("%.1f", measurement.getValue()) + " мс");
+        }
+
+        if (calibration.isApplied()) {
+            plugin.getLogger().info("Применено и сохранено в config.yml: " + calibration.getParameters()
+                    + " (" + String.format("%.1f", calibration.getHashMillis()) + " мс)");
+        } else {
+            plugin.getLogger().info("Рекомендуется (security в config.yml): " + calibration.getParameters()
+                    + " (" + String.format("%.1f", calibration.getHashMillis()) + " мс)");
+        }
+    }
+
+    public HashCalibration getLastHashCalibration() {
+        return lastHashCalibration;
+    }
+
+    public DatabaseWriter getWriter() {
+        return writer;
+    }
+
+    public SecurityLogWriter getSecurityLogWriter() {
+        return securityLogWriter;
+    }
+
+    public ProfileBlobConverter getProfileConverter() {
+        return profileConverter;
+    }
+
+    /**
+     * Запуск фоновой конвертации профилей старого формата (после миграций)
+     */
+    public void startProfileConversion() {
+        profileConverter = new ProfileBlobConverter(plugin.getLogger(), this,
+                plugin.getConfigManager().getProfileConversionBatchSize());
+        profileConverter.start();
+    }
+
+    public SQLiteMaintenance getMaintenance() {
+        return maintenance;
+    }
+
+    /**
+     * Запуск фонового обслуживания файла SQLite (после миграций, до подключения игроков)
+     */
+    public void startMaintenance() {
+        if (!(backend instanceof SQLiteBackend)) {
+            return;
+        }
+
+        ConfigManager config = plugin.getConfigManager();
+        SQLiteMaintenance sqliteMaintenance = new SQLiteMaintenance(
+                plugin.getLogger(),
+                SQLiteBackend.databaseFile(plugin.getDataFolder()),
+                config.getSqliteCheckpointInterval(),
+                config.getSqliteIncrementalVacuumPages(),
+                config.getSqliteOptimizeInterval(),
+                config.isSqliteConvertToIncremental()
+        );
+
+        try {
+            sqliteMaintenance.start();
+            maintenance = sqliteMaintenance;
+        } catch (SQLException e) {
+            // Без обслуживания база работает, контрольные точки выполнит сама SQLite
+            plugin.getLogger().log(Level.WARNING, "Не удалось запустить обслуживание SQLite", e);
+            sqliteMaintenance.close();
+        }
+    }
+
     public void close() {
+        if (profileConverter != null) {
+            profileConverter.stop();
+        }
+
+        // Принятые проверки паролей ещё поставят запись в очередь БД
+        hashingPool.shutdown(plugin.getConfigManager().getDatabaseShutdownTimeout());
+
+        // Сначала дожидаемся уже поставленных в очередь сохранений, потом закрываем пул соединений
+        executor.shutdown(plugin.getConfigManager().getDatabaseShutdownTimeout());
+
+        // Задачи из очереди могли добавить события в буфер логов, поэтому он закрывается после пула.
+        // Пачки логов пишет поток записи, поэтому буфер дописывается до его остановки
+        if (securityLogWriter != null) {
+            securityLogWriter.close(plugin.getConfigManager().getDatabaseShutdownTimeout());
+        }
+
+        // Затем записываем команды, которые задачи успели поставить в поток записи
+        if (writer != null) {
+            writer.close(plugin.getConfigManager().getDatabaseShutdownTimeout());
+        }
+
+        if (maintenance != null) {
+            maintenance.close();
+        }
+
+        if (readDataSource != null && !readDataSource.isClosed()) {
+            readDataSource.close();
+        }
+
         if (dataSource != null && !dataSource.isClosed()) {
             plugin.getLogger().info("Закрытие соединения с базой данных...");
             dataSource.close();
@@ -1,6 +1,7 @@
 package org.alex_melan.secureAuth.database;
 
 import org.alex_melan.secureAuth.SecureAuthPlugin;
+import org.alex_melan.secureAuth.models.PlayerData;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -14,11 +15,13 @@ public class DatabaseMigrations {
 
     private final SecureAuthPlugin plugin;
     private final DatabaseManager databaseManager;
+    private final StorageBackend backend;
     private final List<Migration> migrations;
 
     public DatabaseMigrations(SecureAuthPlugin plugin, DatabaseManager databaseManager) {
         this.plugin = plugin;
         this.databaseManager = databaseManager;
+        this.backend = databaseManager.getBackend();
         this.migrations = new ArrayList<>();
 
         initializeMigrations();
@@ -35,6 +38,15 @@ public class DatabaseMigrations {
 
         // НОВОЕ: Миграция 8 для расширенных данных
         migrations.add(new Migration(8, "Add extended player data fields", this::addExtendedPlayerData));
+
+        // НОВОЕ: updated_at теперь пишется запросами, триггер и дублирующие UNIQUE индексы не нужны
+        migrations.add(new Migration(9, "Drop updated_at trigger and redundant indexes", this::dropLegacyTriggerAndIndexes));
+
+        // НОВОЕ: Сжатое хранение больших данных профиля, старые строки конвертируются в фоне
+        migrations.add(new Migration(10, "Add compressed profile data columns", this::addCompressedProfileColumns));
+
+        // НОВОЕ: Общие сессии сети серверов - сервер-источник и журнал событий
+        migrations.add(new Migration(11, "Add session origin and session_events table", this::addSessionEvents));
     }
 
     public void runMigrations() {
@@ -81,13 +93,13 @@ public class DatabaseMigrations {
     }
 
     private boolean tableExists(Connection conn, String tableName) throws SQLException {
-        try (ResultSet rs = conn.getMetaData().getTables(null, null, tableName, null)) {
+        try (ResultSet rs = conn.getMetaData().getTables(conn.getCatalog(), null, tableName, null)) {
             return rs.next();
         }
     }
 
     private boolean columnExists(Connection conn, String tableName, String columnName) throws SQLException {
-        try (ResultSet rs = conn.getMetaData().getColumns(null, null, tableName, columnName)) {
+        try (ResultSet rs = conn.getMetaData().getColumns(conn.getCatalog(), null, tableName, columnName)) {
             return rs.next();
         }
     }
@@ -127,14 +139,12 @@ public class DatabaseMigrations {
     // === МИГРАЦИИ ===
 
     private void createMigrationsTable(Connection conn) throws SQLException {
-        try (PreparedStatement stmt = conn.prepareStatement("""
-            CREATE TABLE IF NOT EXISTS migrations (
-                id INTEGER PRIMARY KEY AUTOINCREMENT,
-                version INTEGER NOT NULL UNIQUE,
-                description TEXT NOT NULL,
-                executed_at BIGINT NOT NULL
-            )
-        """)) {
+        try (PreparedStatement stmt = conn.prepareStatement("CREATE TABLE IF NOT EXISTS migrations ("
+                + "id " + backend.autoIncrementPrimaryKey() + ", "
+                + "version INTEGER NOT NULL UNIQUE, "
+                + "description " + backend.varcharType(255) + " NOT NULL, "
+                + "executed_at BIGINT NOT NULL"
+                + ")" + backend.tableOptions())) {
             stmt.executeUpdate();
         }
     }
@@ -142,7 +152,7 @@ public class DatabaseMigrations {
     private void addGameModeColumn(Connection conn) throws SQLException {
         if (!columnExists(conn, "players", "game_mode")) {
             try (PreparedStatement stmt = conn.prepareStatement(
-                    "ALTER TABLE players ADD COLUMN game_mode TEXT DEFAULT 'SURVIVAL'"
+                    "ALTER TABLE players ADD COLUMN game_mode " + backend.varcharType(16) + " DEFAULT 'SURVIVAL'"
             )) {
                 stmt.executeUpdate();
             }
@@ -150,23 +160,15 @@ public class DatabaseMigrations {
     }
 
     private void addPerformanceIndexes(Connection conn) throws SQLException {
-        String[] indexes = {
-                "CREATE INDEX IF NOT EXISTS idx_players_last_login ON players(last_login)",
-                "CREATE INDEX IF NOT EXISTS idx_players_last_ip ON players(last_ip)",
-                "CREATE INDEX IF NOT EXISTS idx_sessions_created_at ON sessions(created_at)"
-        };
-
-        for (String indexSql : indexes) {
-            try (PreparedStatement stmt = conn.prepareStatement(indexSql)) {
-                stmt.executeUpdate();
-            }
-        }
+        backend.createIndex(conn, "idx_players_last_login", "players", "last_login");
+        backend.createIndex(conn, "idx_players_last_ip", "players", "last_ip");
+        backend.createIndex(conn, "idx_sessions_created_at", "sessions", "created_at");
     }
 
     private void addTimestampColumns(Connection conn) throws SQLException {
         if (!columnExists(conn, "players", "created_at")) {
             try (PreparedStatement stmt = conn.prepareStatement(
-                    "ALTER TABLE players ADD COLUMN created_at BIGINT DEFAULT (strftime('%s', 'now') * 1000)"
+                    "ALTER TABLE players ADD COLUMN created_at BIGINT DEFAULT 0"
             )) {
                 stmt.executeUpdate();
             }
@@ -174,53 +176,32 @@ public class DatabaseMigrations {
 
         if (!columnExists(conn, "players", "updated_at")) {
             try (PreparedStatement stmt = conn.prepareStatement(
-                    "ALTER TABLE players ADD COLUMN updated_at BIGINT DEFAULT (strftime('%s', 'now') * 1000)"
+                    "ALTER TABLE players ADD COLUMN updated_at BIGINT DEFAULT 0"
             )) {
                 stmt.executeUpdate();
             }
-
-            try (PreparedStatement triggerStmt = conn.prepareStatement("""
-                CREATE TRIGGER IF NOT EXISTS players_updated_at 
-                AFTER UPDATE ON players 
-                FOR EACH ROW 
-                BEGIN 
-                    UPDATE players SET updated_at = strftime('%s', 'now') * 1000 WHERE id = NEW.id;
-                END
-            """)) {
-                triggerStmt.executeUpdate();
-            }
         }
     }
 
     private void createSecurityLogsTable(Connection conn) throws SQLException {
         if (!tableExists(conn, "security_logs")) {
-            try (PreparedStatement stmt = conn.prepareStatement("""
-                CREATE TABLE security_logs (
-                    id INTEGER PRIMARY KEY AUTOINCREMENT,
-                    username TEXT,
-                    ip_address TEXT NOT NULL,
-                    action_type TEXT NOT NULL,
-                    success BOOLEAN NOT NULL,
-                    details TEXT,
-                    timestamp BIGINT DEFAULT (strftime('%s', 'now') * 1000)
-                )
-            """)) {
+            try (PreparedStatement stmt = conn.prepareStatement("CREATE TABLE security_logs ("
+                    + "id " + backend.autoIncrementPrimaryKey() + ", "
+                    + "username " + backend.usernameType() + ", "
+                    + "ip_address " + backend.varcharType(45) + " NOT NULL, "
+                    + "action_type " + backend.varcharType(32) + " NOT NULL, "
+                    + "success BOOLEAN NOT NULL, "
+                    + "details " + backend.largeTextType() + ", "
+                    + "timestamp BIGINT DEFAULT 0"
+                    + ")" + backend.tableOptions())) {
                 stmt.executeUpdate();
             }
-
-            String[] indexes = {
-                    "CREATE INDEX IF NOT EXISTS idx_security_logs_username ON security_logs(username)",
-                    "CREATE INDEX IF NOT EXISTS idx_security_logs_ip ON security_logs(ip_address)",
-                    "CREATE INDEX IF NOT EXISTS idx_security_logs_timestamp ON security_logs(timestamp)",
-                    "CREATE INDEX IF NOT EXISTS idx_security_logs_action ON security_logs(action_type)"
-            };
-
-            for (String indexSql : indexes) {
-                try (PreparedStatement indexStmt = conn.prepareStatement(indexSql)) {
-                    indexStmt.executeUpdate();
-                }
-            }
         }
+
+        backend.createIndex(conn, "idx_security_logs_username", "security_logs", "username");
+        backend.createIndex(conn, "idx_security_logs_ip", "security_logs", "ip_address");
+        backend.createIndex(conn, "idx_security_logs_timestamp", "security_logs", "timestamp");
+        backend.createIndex(conn, "idx_security_logs_action", "security_logs", "action_type");
     }
 
     private void addLastActivityColumn(Connection conn) throws SQLException {
@@ -236,17 +217,13 @@ public class DatabaseMigrations {
     private void addIsActiveColumn(Connection conn) throws SQLException {
         if (!columnExists(conn, "sessions", "is_active")) {
             try (PreparedStatement stmt = conn.prepareStatement(
-                    "ALTER TABLE sessions ADD COLUMN is_active BOOLEAN DEFAULT 1"
+                    "ALTER TABLE sessions ADD COLUMN is_active BOOLEAN DEFAULT TRUE"
             )) {
                 stmt.executeUpdate();
             }
-
-            try (PreparedStatement indexStmt = conn.prepareStatement(
-                    "CREATE INDEX IF NOT EXISTS idx_sessions_active ON sessions(is_active)"
-            )) {
-                indexStmt.executeUpdate();
-            }
         }
+
+        backend.createIndex(conn, "idx_sessions_active", "sessions", "is_active");
     }
 
     // НОВОЕ: Миграция 8 - Добавление расширенных данных игрока
@@ -254,7 +231,7 @@ public class DatabaseMigrations {
         // Достижения
         if (!columnExists(conn, "players", "advancements_data")) {
             try (PreparedStatement stmt = conn.prepareStatement(
-                    "ALTER TABLE players ADD COLUMN advancements_data TEXT"
+                    "ALTER TABLE players ADD COLUMN advancements_data " + backend.largeTextType()
             )) {
                 stmt.executeUpdate();
                 plugin.getLogger().info("Добавлена колонка advancements_data");
@@ -264,7 +241,7 @@ public class DatabaseMigrations {
         // Статистика
         if (!columnExists(conn, "players", "statistics_data")) {
             try (PreparedStatement stmt = conn.prepareStatement(
-                    "ALTER TABLE players ADD COLUMN statistics_data TEXT"
+                    "ALTER TABLE players ADD COLUMN statistics_data " + backend.largeTextType()
             )) {
                 stmt.executeUpdate();
                 plugin.getLogger().info("Добавлена колонка statistics_data");
@@ -274,7 +251,7 @@ public class DatabaseMigrations {
         // Рецепты
         if (!columnExists(conn, "players", "recipes_data")) {
             try (PreparedStatement stmt = conn.prepareStatement(
-                    "ALTER TABLE players ADD COLUMN recipes_data TEXT"
+                    "ALTER TABLE players ADD COLUMN recipes_data " + backend.largeTextType()
             )) {
                 stmt.executeUpdate();
                 plugin.getLogger().info("Добавлена колонка recipes_data");
@@ -284,7 +261,7 @@ public class DatabaseMigrations {
         // Эффекты зелий
         if (!columnExists(conn, "players", "potion_effects_data")) {
             try (PreparedStatement stmt = conn.prepareStatement(
-                    "ALTER TABLE players ADD COLUMN potion_effects_data TEXT"
+                    "ALTER TABLE players ADD COLUMN potion_effects_data " + backend.largeTextType()
             )) {
                 stmt.executeUpdate();
                 plugin.getLogger().info("Добавлена колонка potion_effects_data");
@@ -292,6 +269,71 @@ public class DatabaseMigrations {
         }
     }
 
+    // НОВОЕ: Миграция 9 - удаление триггера updated_at и индексов, дублирующих UNIQUE ограничения
+    private void dropLegacyTriggerAndIndexes(Connection conn) throws SQLException {
+        // Триггер и эти индексы создавались только старыми версиями на SQLite
+        if (!(backend instanceof SQLiteBackend)) {
+            return;
+        }
+
+        String[] statements = {
+                // Триггер делал второй UPDATE на каждое сохранение игрока
+                "DROP TRIGGER IF EXISTS players_updated_at",
+                "DROP INDEX IF EXISTS idx_players_username",
+                "DROP INDEX IF EXISTS idx_players_cracked_uuid",
+                "DROP INDEX IF EXISTS idx_sessions_hash"
+        };
+
+        for (String sql : statements) {
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.executeUpdate();
+            }
+        }
+    }
+
+    // НОВОЕ: Миграция 10 - колонки для сжатых данных (ProfileCodec)
+    private void addCompressedProfileColumns(Connection conn) throws SQLException {
+        for (PlayerData.Column column : PlayerData.Column.values()) {
+            if (!column.isCompressed() || columnExists(conn, "players", column.getBlobColumnName())) {
+                continue;
+            }
+
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "ALTER TABLE players ADD COLUMN " + column.getBlobColumnName() + " " + backend.blobType()
+            )) {
+                stmt.executeUpdate();
+                plugin.getLogger().info("Добавлена колонка " + column.getBlobColumnName());
+            }
+        }
+    }
+
+    // НОВОЕ: Миграция 11 - server_id сессий и журнал событий для синхронизации серверов
+    private void addSessionEvents(Connection conn) throws SQLException {
+        if (!columnExists(conn, "sessions", "server_id")) {
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "ALTER TABLE sessions ADD COLUMN server_id " + backend.varcharType(64)
+            )) {
+                stmt.executeUpdate();
+            }
+        }
+
+        if (!tableExists(conn, "session_events")) {
+            // id - монотонный номер события, серверы читают события после последнего увиденного
+            try (PreparedStatement stmt = conn.prepareStatement("CREATE TABLE session_events ("
+                    + "id " + backend.autoIncrementPrimaryKey() + ", "
+                    + "event_type " + backend.varcharType(16) + " NOT NULL, "
+                    + "username " + backend.usernameType() + " NOT NULL, "
+                    + "session_hash " + backend.varcharType(255) + ", "
+                    + "server_id " + backend.varcharType(64) + " NOT NULL, "
+                    + "created_at BIGINT NOT NULL"
+                    + ")" + backend.tableOptions())) {
+                stmt.executeUpdate();
+            }
+        }
+
+        backend.createIndex(conn, "idx_session_events_created_at", "session_events", "created_at");
+    }
+
     public void cleanupOldData() {
         plugin.getLogger().info("Запуск очистки старых данных...");
 
@@ -299,7 +341,7 @@ public class DatabaseMigrations {
             long thirtyDaysAgo = System.currentTimeMillis() - (30L * 24 * 60 * 60 * 1000);
 
             try (PreparedStatement stmt = conn.prepareStatement(
-                    "DELETE FROM sessions WHERE is_active = 0 AND created_at < ?"
+                    "DELETE FROM sessions WHERE is_active = FALSE AND created_at < ?"
             )) {
                 stmt.setLong(1, thirtyDaysAgo);
                 int deleted = stmt.executeUpdate();
@@ -0,0 +1,242 @@
+package org.alex_melan.secureAuth.database;
+
+import org.alex_melan.secureAuth.database.DatabaseExecutor.Priority;
+import org.alex_melan.secureAuth.utils.NamedThreadFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Единственный поток записи для SQLite с групповым коммитом.
+ *
+ * Команды записи от всех вызывающих складываются в очередь; поток забирает всё,
+ * что накопилось (не больше max-batch), и выполняет в одной транзакции.
+ * Каждая команда обёрнута в SAVEPOINT, поэтому ошибка одной команды
+ * откатывает только её, а не всю пачку.
+ */
+public class DatabaseWriter {
+
+    private final Logger logger;
+    private final DatabaseManager databaseManager;
+    private final int maxBatchSize;
+    private final PriorityBlockingQueue<WriteCommand<?>> queue = new PriorityBlockingQueue<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Thread writerThread;
+    private volatile boolean running = true;
+
+    // Метрики
+    private final AtomicLong commits = new AtomicLong();
+    private final AtomicLong commands = new AtomicLong();
+    private final AtomicLong failedCommands = new AtomicLong();
+    private final AtomicLong totalCommitNanos = new AtomicLong();
+    private final AtomicLong maxCommitNanos = new AtomicLong();
+    private final AtomicLong maxBatch = new AtomicLong();
+
+    public DatabaseWriter(Logger logger, DatabaseManager databaseManager, int maxBatchSize) {
+        this.logger = logger;
+        this.databaseManager = databaseManager;
+        this.maxBatchSize = maxBatchSize;
+
+        this.writerThread = new NamedThreadFactory("SecureAuth-DB-Writer").newThread(this::writerLoop);
+        this.writerThread.start();
+    }
+
+    public <T> CompletableFuture<T> submit(Priority priority, SqlWork<T> work) {
+        WriteCommand<T> command = new WriteCommand<>(priority, sequence.getAndIncrement(), work);
+
+        if (!running) {
+            command.future.completeExceptionally(new RejectedExecutionException("Поток записи БД остановлен"));
+            return command.future;
+        }
+
+        queue.add(command);
+
+        // Поток мог завершиться между проверкой и добавлением
+        if (!writerThread.isAlive() && queue.remove(command)) {
+            command.future.completeExceptionally(new RejectedExecutionException("Поток записи БД остановлен"));
+        }
+
+        return command.future;
+    }
+
+    private void writerLoop() {
+        List<WriteCommand<?>> batch = new ArrayList<>(maxBatchSize);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                WriteCommand<?> first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+
+                batch.add(first);
+                queue.drainTo(batch, maxBatchSize - 1);
+                executeBatch(batch);
+
+            } catch (InterruptedException e) {
+                running = false;
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+
+        // Всё, что не успели записать, завершаем ошибкой, чтобы никто не ждал вечно
+        WriteCommand<?> left;
+        while ((left = queue.poll()) != null) {
+            left.future.completeExceptionally(new RejectedExecutionException("Поток записи БД остановлен"));
+        }
+    }
+
+    private void executeBatch(List<WriteCommand<?>> batch) {
+        long start = System.nanoTime();
+        List<Object> results = new ArrayList<>(batch.size());
+        List<Throwable> errors = new ArrayList<>(batch.size());
+
+        try (Connection conn = databaseManager.getConnection()) {
+            conn.setAutoCommit(false);
+
+            try {
+                for (WriteCommand<?> command : batch) {
+                    Savepoint savepoint = conn.setSavepoint();
+                    try {
+                        results.add(command.work.execute(conn));
+                        errors.add(null);
+                        conn.releaseSavepoint(savepoint);
+                    } catch (SQLException | RuntimeException e) {
+                        conn.rollback(savepoint);
+                        results.add(null);
+                        errors.add(e);
+                    }
+                }
+
+                conn.commit();
+
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+
+        } catch (SQLException e) {
+            // Сбой самого коммита: ни одна команда пачки не записана
+            logger.log(Level.SEVERE, "Ошибка группового коммита (" + batch.size() + " команд)", e);
+            failedCommands.addAndGet(batch.size());
+            for (WriteCommand<?> command : batch) {
+                command.future.completeExceptionally(e);
+            }
+            return;
+        }
+
+        recordCommit(System.nanoTime() - start, batch.size());
+
+        // Результаты отдаём только после коммита
+        for (int i = 0; i < batch.size(); i++) {
+            Throwable error = errors.get(i);
+            if (error != null) {
+                failedCommands.incrementAndGet();
+                batch.get(i).future.completeExceptionally(error);
+            } else {
+                batch.get(i).complete(results.get(i));
+            }
+        }
+    }
+
+    private void recordCommit(long nanos, int size) {
+        commits.incrementAndGet();
+        commands.addAndGet(size);
+        totalCommitNanos.addAndGet(nanos);
+        maxCommitNanos.accumulateAndGet(nanos, Math::max);
+        maxBatch.accumulateAndGet(size, Math::max);
+    }
+
+    /**
+     * Остановка с записью всех команд, уже стоящих в очереди
+     */
+    public void close(long timeoutMillis) {
+        running = false;
+
+        try {
+            writerThread.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (writerThread.isAlive()) {
+            writerThread.interrupt();
+            logger.warning("Поток записи БД не завершился за " + timeoutMillis + " мс, в очереди: " + queue.size());
+        }
+    }
+
+    // Метрики
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getCommitCount() {
+        return commits.get();
+    }
+
+    public long getCommandCount() {
+        return commands.get();
+    }
+
+    public long getFailedCount() {
+        return failedCommands.get();
+    }
+
+    public double getAverageBatchSize() {
+        long c = commits.get();
+        return c == 0 ? 0 : commands.get() / (double) c;
+    }
+
+    public long getMaxBatchSize() {
+        return maxBatch.get();
+    }
+
+    public double getAverageCommitMillis() {
+        long c = commits.get();
+        return c == 0 ? 0 : totalCommitNanos.get() / (double) c / 1_000_000.0;
+    }
+
+    public double getMaxCommitMillis() {
+        return maxCommitNanos.get() / 1_000_000.0;
+    }
+
+    private static final class WriteCommand<T> implements Comparable<WriteCommand<?>> {
+        private final Priority priority;
+        private final long seq;
+        private final SqlWork<T> work;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        private WriteCommand(Priority priority, long seq, SqlWork<T> work) {
+            this.priority = priority;
+            this.seq = seq;
+            this.work = work;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void complete(Object result) {
+            future.complete((T) result);
+        }
+
+        @Override
+        public int compareTo(WriteCommand<?> other) {
+            int byPriority = Integer.compare(priority.ordinal(), other.priority.ordinal());
+            return byPriority != 0 ? byPriority : Long.compare(seq, other.seq);
+        }
+    }
+}
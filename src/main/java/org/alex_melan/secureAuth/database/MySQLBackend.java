@@ -0,0 +1,94 @@
+package org.alex_melan.secureAuth.database;
+
+import com.zaxxer.hikari.HikariConfig;
+import org.alex_melan.secureAuth.config.ConfigManager;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * MySQL / MariaDB. Драйвер не входит в плагин: используется драйвер, поставляемый с сервером
+ */
+public class MySQLBackend implements StorageBackend {
+
+    @Override
+    public String getName() {
+        return "MySQL";
+    }
+
+    @Override
+    public void configure(HikariConfig config, ConfigManager configManager, File dataFolder) {
+        config.setJdbcUrl("jdbc:mysql://" + configManager.getDatabaseHost() + ":" + configManager.getDatabasePort()
+                + "/" + configManager.getDatabaseName());
+        config.setDriverClassName("com.mysql.cj.jdbc.Driver");
+        config.setUsername(configManager.getDatabaseUsername());
+        config.setPassword(configManager.getDatabasePassword());
+
+        config.setMaximumPoolSize(configManager.getDatabasePoolSize());
+        config.setMinimumIdle(Math.min(2, configManager.getDatabasePoolSize()));
+
+        config.addDataSourceProperty("cachePrepStmts", "true");
+        config.addDataSourceProperty("prepStmtCacheSize", "250");
+        config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+        config.addDataSourceProperty("useServerPrepStmts", "true");
+        config.addDataSourceProperty("rewriteBatchedStatements", "true");
+
+        StorageBackend.applyConnectionProperties(config, configManager.getDatabaseConnectionProperties());
+    }
+
+    @Override
+    public String autoIncrementPrimaryKey() {
+        return "BIGINT AUTO_INCREMENT PRIMARY KEY";
+    }
+
+    @Override
+    public String usernameType() {
+        return "VARCHAR(32)";
+    }
+
+    @Override
+    public String varcharType(int length) {
+        return "VARCHAR(" + length + ")";
+    }
+
+    @Override
+    public String largeTextType() {
+        // TEXT в MySQL ограничен 64 КБ, сериализованный инвентарь может быть больше
+        return "MEDIUMTEXT";
+    }
+
+    @Override
+    public String doubleType() {
+        return "DOUBLE";
+    }
+
+    @Override
+    public String blobType() {
+        // BLOB в MySQL ограничен 64 КБ
+        return "MEDIUMBLOB";
+    }
+
+    @Override
+    public String tableOptions() {
+        return " ENGINE=InnoDB DEFAULT CHARSET=utf8mb4";
+    }
+
+    @Override
+    public void createIndex(Connection conn, String name, String table, String columns) throws SQLException {
+        // MySQL не поддерживает CREATE INDEX IF NOT EXISTS
+        try (ResultSet rs = conn.getMetaData().getIndexInfo(conn.getCatalog(), null, table, false, false)) {
+            while (rs.next()) {
+                if (name.equalsIgnoreCase(rs.getString("INDEX_NAME"))) {
+                    return;
+                }
+            }
+        }
+
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("CREATE INDEX " + name + " ON " + table + "(" + columns + ")");
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package org.alex_melan.secureAuth.database;
+
+import com.zaxxer.hikari.HikariConfig;
+import org.alex_melan.secureAuth.config.ConfigManager;
+
+import java.io.File;
+
+/**
+ * PostgreSQL. Драйвер должен быть доступен серверу (в плагин не входит)
+ */
+public class PostgreSQLBackend implements StorageBackend {
+
+    @Override
+    public String getName() {
+        return "PostgreSQL";
+    }
+
+    @Override
+    public void configure(HikariConfig config, ConfigManager configManager, File dataFolder) {
+        config.setJdbcUrl("jdbc:postgresql://" + configManager.getDatabaseHost() + ":" + configManager.getDatabasePort()
+                + "/" + configManager.getDatabaseName());
+        config.setDriverClassName("org.postgresql.Driver");
+        config.setUsername(configManager.getDatabaseUsername());
+        config.setPassword(configManager.getDatabasePassword());
+
+        config.setMaximumPoolSize(configManager.getDatabasePoolSize());
+        config.setMinimumIdle(Math.min(2, configManager.getDatabasePoolSize()));
+
+        config.addDataSourceProperty("reWriteBatchedInserts", "true");
+
+        StorageBackend.applyConnectionProperties(config, configManager.getDatabaseConnectionProperties());
+    }
+
+    @Override
+    public String autoIncrementPrimaryKey() {
+        return "BIGSERIAL PRIMARY KEY";
+    }
+
+    @Override
+    public String usernameType() {
+        return "VARCHAR(32)";
+    }
+
+    @Override
+    public String varcharType(int length) {
+        return "VARCHAR(" + length + ")";
+    }
+
+    @Override
+    public String largeTextType() {
+        return "TEXT";
+    }
+
+    @Override
+    public String doubleType() {
+        return "DOUBLE PRECISION";
+    }
+
+    @Override
+    public String blobType() {
+        return "BYTEA";
+    }
+}
@@ -0,0 +1,307 @@
+package org.alex_melan.secureAuth.database;
+
+import org.alex_melan.secureAuth.database.DatabaseExecutor.Priority;
+import org.alex_melan.secureAuth.models.PlayerData;
+import org.alex_melan.secureAuth.utils.ProfileCodec;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Фоновая конвертация профилей, сохранённых старыми версиями текстом (Base64/JSON),
+ * в сжатый формат ProfileCodec.
+ *
+ * Профили обрабатываются пачками с фоновым приоритетом. Сжатие выполняется
+ * в пуле БД без соединения, строка обновляется, только если её не успели
+ * сохранить заново (updated_at не изменился).
+ *
+ * Пачки идут по возрастанию имени, поэтому строка, изменённая параллельно,
+ * не останавливает проход: она пропускается и повторяется следующим проходом.
+ * Ошибка БД повторяет пачку с нарастающей задержкой.
+ */
+public class ProfileBlobConverter {
+
+    private static final PlayerData.Column[] COLUMNS = compressedColumns();
+
+    // Повторные проходы по пропущенным строкам
+    private static final int MAX_PASSES = 5;
+    private static final long PASS_DELAY_MILLIS = 60 * 1000;
+    // Повторы пачки после ошибки БД: 2, 4, 8 ... секунд, не дольше 5 минут
+    private static final int MAX_ERRORS = 10;
+    private static final long MAX_ERROR_DELAY_MILLIS = 5 * 60 * 1000;
+
+    private final Logger logger;
+    private final DatabaseManager databaseManager;
+    private final int batchSize;
+    private volatile boolean running;
+    private volatile boolean finished;
+
+    // Состояние прохода меняется только в цепочке пачек, по одной пачке за раз
+    private String cursor = "";
+    private int skippedInPass;
+    private int passes;
+    private int errors;
+
+    // Метрики
+    private final AtomicLong convertedProfiles = new AtomicLong();
+    private final AtomicLong bytesBefore = new AtomicLong();
+    private final AtomicLong bytesAfter = new AtomicLong();
+
+    public ProfileBlobConverter(Logger logger, DatabaseManager databaseManager, int batchSize) {
+        this.logger = logger;
+        this.databaseManager = databaseManager;
+        this.batchSize = batchSize;
+    }
+
+    public void start() {
+        if (batchSize <= 0) {
+            logger.info("Фоновая конвертация профилей отключена");
+            return;
+        }
+
+        running = true;
+        convertNextBatch();
+    }
+
+    public void stop() {
+        running = false;
+    }
+
+    private void convertNextBatch() {
+        if (!running) {
+            return;
+        }
+
+        String from = cursor;
+        databaseManager.read(Priority.BACKGROUND, conn -> loadBatch(conn, from))
+                .thenCompose(rows -> {
+                    if (rows.isEmpty()) {
+                        return CompletableFuture.completedFuture(-1);
+                    }
+
+                    String last = rows.get(rows.size() - 1).username;
+                    List<ProfileRow> compressed = compress(rows);
+                    CompletableFuture<Integer> write = compressed.isEmpty()
+                            ? CompletableFuture.completedFuture(0)
+                            : databaseManager.write(Priority.BACKGROUND, conn -> writeBatch(conn, compressed));
+
+                    // Курсор сдвигается только после записи - при ошибке пачка повторится
+                    return write.thenApply(converted -> {
+                        cursor = last;
+                        skippedInPass += rows.size() - converted;
+                        return converted;
+                    });
+                })
+                .whenComplete((converted, ex) -> {
+                    if (!running) {
+                        return;
+                    }
+
+                    if (ex != null) {
+                        // ИСПРАВЛЕНО: ошибка не останавливает конвертацию навсегда - повтор с задержкой
+                        if (++errors >= MAX_ERRORS) {
+                            running = false;
+                            logger.log(Level.WARNING, "Фоновая конвертация профилей остановлена после " + errors
+                                    + " ошибок подряд, остальные профили сконвертируются при следующем сохранении", ex);
+                            return;
+                        }
+                        long delay = Math.min(MAX_ERROR_DELAY_MILLIS, 1000L << errors);
+                        logger.log(Level.WARNING, "Ошибка фоновой конвертации профилей, повтор через "
+                                + (delay / 1000) + " с", ex);
+                        schedule(delay);
+                        return;
+                    }
+                    errors = 0;
+
+                    if (converted >= 0) {
+                        convertNextBatch();
+                    } else {
+                        finishPass();
+                    }
+                });
+    }
+
+    /**
+     * Конец прохода: пропущенные строки (изменённые параллельно) повторяются следующим проходом
+     */
+    private void finishPass() {
+        if (skippedInPass == 0) {
+            finish();
+            return;
+        }
+
+        if (++passes >= MAX_PASSES) {
+            running = false;
+            logger.info("Фоновая конвертация профилей остановлена: " + skippedInPass
+                    + " профилей не удалось сконвертировать, они сконвертируются при следующем сохранении");
+            return;
+        }
+
+        logger.fine("Проход конвертации профилей завершён, пропущено " + skippedInPass + ", повтор через "
+                + (PASS_DELAY_MILLIS / 1000) + " с");
+        cursor = "";
+        skippedInPass = 0;
+        schedule(PASS_DELAY_MILLIS);
+    }
+
+    private void schedule(long delayMillis) {
+        CompletableFuture.delayedExecutor(delayMillis, TimeUnit.MILLISECONDS).execute(this::convertNextBatch);
+    }
+
+    private void finish() {
+        running = false;
+        finished = true;
+
+        long count = convertedProfiles.get();
+        if (count > 0) {
+            logger.info(String.format("Конвертация профилей завершена: %d профилей, в среднем %d -> %d байт",
+                    count, getAverageBytesBefore(), getAverageBytesAfter()));
+        }
+    }
+
+    private List<ProfileRow> loadBatch(Connection conn, String after) throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT username, updated_at");
+        StringBuilder where = new StringBuilder();
+        for (PlayerData.Column column : COLUMNS) {
+            sql.append(", ").append(column.getColumnName());
+            where.append(where.length() == 0 ? "" : " OR ").append(column.getColumnName()).append(" IS NOT NULL");
+        }
+        sql.append(" FROM players WHERE username > ? AND (").append(where).append(")")
+                .append(" ORDER BY username LIMIT ").append(batchSize);
+
+        List<ProfileRow> rows = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            stmt.setString(1, after);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ProfileRow row = new ProfileRow(rs.getString("username"), rs.getLong("updated_at"));
+                    for (int i = 0; i < COLUMNS.length; i++) {
+                        row.text[i] = rs.getString(COLUMNS[i].getColumnName());
+                    }
+                    rows.add(row);
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Сжатие строк пачки. Строка, которую не удалось сжать, пропускается, а не прерывает пачку
+     */
+    private List<ProfileRow> compress(List<ProfileRow> rows) {
+        List<ProfileRow> compressed = new ArrayList<>(rows.size());
+        for (ProfileRow row : rows) {
+            try {
+                for (int i = 0; i < COLUMNS.length; i++) {
+                    String text = row.text[i];
+                    if (text != null) {
+                        row.blob[i] = ProfileCodec.encode(text, COLUMNS[i].getBlobType());
+                        row.bytesBefore += text.length();
+                        row.bytesAfter += row.blob[i].length;
+                    }
+                }
+                compressed.add(row);
+            } catch (RuntimeException e) {
+                logger.log(Level.FINE, "Профиль " + row.username + " не удалось сжать", e);
+            }
+        }
+        return compressed;
+    }
+
+    private int writeBatch(Connection conn, List<ProfileRow> rows) throws SQLException {
+        // COALESCE: колонку, уже сохранённую в новом формате, не трогаем
+        StringBuilder sql = new StringBuilder("UPDATE players SET ");
+        for (int i = 0; i < COLUMNS.length; i++) {
+            String blobColumn = COLUMNS[i].getBlobColumnName();
+            sql.append(i == 0 ? "" : ", ")
+                    .append(blobColumn).append(" = COALESCE(?, ").append(blobColumn).append("), ")
+                    .append(COLUMNS[i].getColumnName()).append(" = NULL");
+        }
+        sql.append(" WHERE username = ? AND updated_at = ?");
+
+        try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            for (ProfileRow row : rows) {
+                int index = 1;
+                for (byte[] blob : row.blob) {
+                    stmt.setBytes(index++, blob);
+                }
+                stmt.setString(index++, row.username);
+                stmt.setLong(index, row.updatedAt);
+                stmt.addBatch();
+            }
+
+            int[] results = stmt.executeBatch();
+            int converted = 0;
+            for (int i = 0; i < results.length; i++) {
+                // SUCCESS_NO_INFO (-2) возвращают драйверы с переписыванием пакетов
+                if (results[i] > 0 || results[i] == Statement.SUCCESS_NO_INFO) {
+                    converted++;
+                    convertedProfiles.incrementAndGet();
+                    bytesBefore.addAndGet(rows.get(i).bytesBefore);
+                    bytesAfter.addAndGet(rows.get(i).bytesAfter);
+                }
+            }
+            return converted;
+        }
+    }
+
+    private static PlayerData.Column[] compressedColumns() {
+        List<PlayerData.Column> columns = new ArrayList<>();
+        for (PlayerData.Column column : PlayerData.Column.values()) {
+            if (column.isCompressed()) {
+                columns.add(column);
+            }
+        }
+        return columns.toArray(new PlayerData.Column[0]);
+    }
+
+    // Метрики
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public long getConvertedProfiles() {
+        return convertedProfiles.get();
+    }
+
+    /** Средний размер больших данных профиля до конвертации (текст) */
+    public long getAverageBytesBefore() {
+        long count = convertedProfiles.get();
+        return count == 0 ? 0 : bytesBefore.get() / count;
+    }
+
+    /** Средний размер больших данных профиля после конвертации (BLOB) */
+    public long getAverageBytesAfter() {
+        long count = convertedProfiles.get();
+        return count == 0 ? 0 : bytesAfter.get() / count;
+    }
+
+    private static final class ProfileRow {
+        private final String username;
+        private final long updatedAt;
+        private final String[] text = new String[COLUMNS.length];
+        private final byte[][] blob = new byte[COLUMNS.length][];
+        private long bytesBefore;
+        private long bytesAfter;
+
+        private ProfileRow(String username, long updatedAt) {
+            this.username = username;
+            this.updatedAt = updatedAt;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package org.alex_melan.secureAuth.database;
+
+import com.zaxxer.hikari.HikariConfig;
+import org.alex_melan.secureAuth.config.ConfigManager;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Встроенная SQLite (database.db в папке плагина)
+ */
+public class SQLiteBackend implements StorageBackend {
+
+    @Override
+    public String getName() {
+        return "SQLite";
+    }
+
+    /** Файл базы данных в папке плагина */
+    public static File databaseFile(File dataFolder) {
+        return new File(dataFolder, "database.db");
+    }
+
+    @Override
+    public void configure(HikariConfig config, ConfigManager configManager, File dataFolder) {
+        String dbPath = databaseFile(dataFolder).getAbsolutePath();
+
+        config.setJdbcUrl("jdbc:sqlite:" + dbPath);
+        config.setDriverClassName("org.sqlite.JDBC");
+
+        // SQLite допускает только одного писателя, поэтому пул из одного соединения
+        config.setMaximumPoolSize(1);
+        config.setMinimumIdle(1);
+
+        config.addDataSourceProperty("foreign_keys", "true");
+        config.addDataSourceProperty("journal_mode", "WAL");
+        config.addDataSourceProperty("synchronous", "NORMAL");
+        config.addDataSourceProperty("cache_size", "10000");
+        config.addDataSourceProperty("temp_store", "memory");
+        // ИСПРАВЛЕНО: новая база сразу создаётся в режиме INCREMENTAL, для существующей
+        // без VACUUM настройка ничего не меняет (см. SQLiteMaintenance)
+        config.addDataSourceProperty("auto_vacuum", "INCREMENTAL");
+
+        // НОВОЕ: контрольные точки WAL выполняет SQLiteMaintenance в фоне,
+        // автоматическая остаётся только как страховка от разрастания WAL
+        config.setConnectionInitSql("PRAGMA wal_autocheckpoint = " + configManager.getSqliteWalAutocheckpointPages());
+    }
+
+    @Override
+    public boolean configureReader(HikariConfig config, ConfigManager configManager, File dataFolder) {
+        // В режиме WAL читатели не блокируются писателем
+        config.setJdbcUrl("jdbc:sqlite:" + databaseFile(dataFolder).getAbsolutePath());
+        config.setDriverClassName("org.sqlite.JDBC");
+
+        config.setMaximumPoolSize(configManager.getSqliteReaderPoolSize());
+        config.setMinimumIdle(1);
+
+        // SQLITE_OPEN_READONLY: журнал не переключаем, режим WAL хранится в самом файле
+        config.addDataSourceProperty("open_mode", "1");
+        config.addDataSourceProperty("cache_size", "10000");
+        config.addDataSourceProperty("temp_store", "memory");
+        return true;
+    }
+
+    @Override
+    public String autoIncrementPrimaryKey() {
+        return "INTEGER PRIMARY KEY AUTOINCREMENT";
+    }
+
+    @Override
+    public String usernameType() {
+        // COLLATE NOCASE оставлен для совместимости с уже созданными базами
+        return "TEXT COLLATE NOCASE";
+    }
+
+    @Override
+    public String varcharType(int length) {
+        return "TEXT";
+    }
+
+    @Override
+    public String largeTextType() {
+        return "TEXT";
+    }
+
+    @Override
+    public String doubleType() {
+        return "REAL";
+    }
+
+    @Override
+    public String blobType() {
+        return "BLOB";
+    }
+
+    @Override
+    public void prepareConnection(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA foreign_keys = ON");
+        }
+    }
+}
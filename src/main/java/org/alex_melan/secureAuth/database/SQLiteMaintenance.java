@@ -0,0 +1,231 @@
+package org.alex_melan.secureAuth.database;
+
+import org.alex_melan.secureAuth.utils.NamedThreadFactory;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Обслуживание файла SQLite в фоне, на собственном соединении:
+ * пассивные контрольные точки WAL, пошаговый incremental_vacuum и PRAGMA optimize.
+ *
+ * Автоматическая контрольная точка в пуле записи отодвинута далеко (wal-autocheckpoint-pages
+ * в SQLiteBackend) и срабатывает только если обслуживание не успевает, поэтому
+ * сохранение игрока больше не платит за перенос WAL в основной файл.
+ */
+public class SQLiteMaintenance {
+
+    private final Logger logger;
+    private final File databaseFile;
+    private final File walFile;
+    private final long checkpointIntervalMillis;
+    private final int vacuumPages;
+    private final long optimizeIntervalMillis;
+    private final boolean convertToIncremental;
+
+    private ScheduledExecutorService scheduler;
+    private Connection connection;
+    private long lastOptimize;
+    private volatile boolean incrementalVacuum;
+
+    // Метрики
+    private volatile long checkpoints;
+    private volatile int lastCheckpointLogPages;
+    private volatile int lastCheckpointedPages;
+    private volatile boolean lastCheckpointBusy;
+    private volatile double lastCheckpointMillis;
+    private volatile double maxCheckpointMillis;
+    private volatile long vacuumedPages;
+    private volatile long freelistPages;
+    private volatile long pageSize;
+    private volatile long optimizeRuns;
+
+    public SQLiteMaintenance(Logger logger, File databaseFile, long checkpointIntervalMillis,
+                             int vacuumPages, long optimizeIntervalMillis, boolean convertToIncremental) {
+        this.logger = logger;
+        this.databaseFile = databaseFile;
+        this.walFile = new File(databaseFile.getPath() + "-wal");
+        this.checkpointIntervalMillis = checkpointIntervalMillis;
+        this.vacuumPages = vacuumPages;
+        this.optimizeIntervalMillis = optimizeIntervalMillis;
+        this.convertToIncremental = convertToIncremental;
+    }
+
+    /**
+     * Открытие соединения обслуживания. Для уже существующей базы режим auto_vacuum=INCREMENTAL
+     * вступает в силу только после полного VACUUM (переписывает весь файл и блокирует запись),
+     * поэтому перевод выполняется только по convert-to-incremental в конфиге.
+     * Без этого режима incremental_vacuum ничего не делает и не выполняется
+     */
+    public void start() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:sqlite:" + databaseFile.getAbsolutePath());
+
+        try (Statement stmt = connection.createStatement()) {
+            // Короткие шаги обслуживания могут подождать поток записи
+            stmt.execute("PRAGMA busy_timeout = 5000");
+
+            incrementalVacuum = queryLong(stmt, "PRAGMA auto_vacuum") == 2;
+            if (!incrementalVacuum && convertToIncremental) {
+                // ИСПРАВЛЕНО: полный VACUUM только по явной настройке
+                long start = System.nanoTime();
+                stmt.execute("PRAGMA auto_vacuum = INCREMENTAL");
+                stmt.execute("VACUUM");
+                incrementalVacuum = true;
+                logger.info(String.format("SQLite переведена в режим auto_vacuum=INCREMENTAL (VACUUM за %.0f мс)",
+                        (System.nanoTime() - start) / 1_000_000.0));
+            } else if (!incrementalVacuum && vacuumPages > 0) {
+                logger.info("SQLite не в режиме auto_vacuum=INCREMENTAL, свободные страницы не возвращаются. "
+                        + "Перевод (однократный полный VACUUM): sqlite-maintenance.convert-to-incremental в config.yml");
+            }
+
+            pageSize = queryLong(stmt, "PRAGMA page_size");
+        }
+
+        lastOptimize = System.currentTimeMillis();
+
+        scheduler = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("SecureAuth-SQLite-Maintenance"));
+        scheduler.scheduleWithFixedDelay(this::runMaintenance,
+                checkpointIntervalMillis, checkpointIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void runMaintenance() {
+        try (Statement stmt = connection.createStatement()) {
+            checkpoint(stmt);
+
+            freelistPages = queryLong(stmt, "PRAGMA freelist_count");
+            if (incrementalVacuum && vacuumPages > 0 && freelistPages > 0) {
+                // Ограниченный шаг: блокировка записи держится недолго
+                int pages = (int) Math.min(freelistPages, vacuumPages);
+                stmt.execute("PRAGMA incremental_vacuum(" + pages + ")");
+                vacuumedPages += pages;
+                freelistPages = queryLong(stmt, "PRAGMA freelist_count");
+            }
+
+            long now = System.currentTimeMillis();
+            if (optimizeIntervalMillis > 0 && now - lastOptimize >= optimizeIntervalMillis) {
+                stmt.execute("PRAGMA optimize");
+                lastOptimize = now;
+                optimizeRuns++;
+            }
+
+        } catch (SQLException e) {
+            logger.log(Level.WARNING, "Ошибка обслуживания SQLite", e);
+        } catch (RuntimeException e) {
+            // Исключение остановило бы периодическую задачу
+            logger.log(Level.SEVERE, "Непредвиденная ошибка обслуживания SQLite", e);
+        }
+    }
+
+    private void checkpoint(Statement stmt) throws SQLException {
+        long start = System.nanoTime();
+
+        // PASSIVE не ждёт читателей и писателя, переносит то, что можно перенести сейчас
+        try (ResultSet rs = stmt.executeQuery("PRAGMA wal_checkpoint(PASSIVE)")) {
+            if (rs.next()) {
+                lastCheckpointBusy = rs.getInt(1) != 0;
+                lastCheckpointLogPages = rs.getInt(2);
+                lastCheckpointedPages = rs.getInt(3);
+            }
+        }
+
+        double millis = (System.nanoTime() - start) / 1_000_000.0;
+        lastCheckpointMillis = millis;
+        maxCheckpointMillis = Math.max(maxCheckpointMillis, millis);
+        checkpoints++;
+    }
+
+    private static long queryLong(Statement stmt, String sql) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * Остановка с финальной контрольной точкой, чтобы WAL не оставался большим
+     */
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (connection == null) {
+            return;
+        }
+
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("PRAGMA wal_checkpoint(TRUNCATE)");
+        } catch (SQLException e) {
+            logger.log(Level.FINE, "Финальная контрольная точка SQLite не выполнена", e);
+        }
+
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            logger.log(Level.FINE, "Ошибка закрытия соединения обслуживания SQLite", e);
+        }
+    }
+
+    // Метрики
+
+    public long getDatabaseFileSize() {
+        return databaseFile.length();
+    }
+
+    public long getWalFileSize() {
+        return walFile.length();
+    }
+
+    public long getCheckpointCount() {
+        return checkpoints;
+    }
+
+    public int getLastCheckpointLogPages() {
+        return lastCheckpointLogPages;
+    }
+
+    public int getLastCheckpointedPages() {
+        return lastCheckpointedPages;
+    }
+
+    public boolean isLastCheckpointBusy() {
+        return lastCheckpointBusy;
+    }
+
+    public double getLastCheckpointMillis() {
+        return lastCheckpointMillis;
+    }
+
+    public double getMaxCheckpointMillis() {
+        return maxCheckpointMillis;
+    }
+
+    public long getFreelistBytes() {
+        return freelistPages * pageSize;
+    }
+
+    public long getVacuumedBytes() {
+        return vacuumedPages * pageSize;
+    }
+
+    public long getOptimizeRuns() {
+        return optimizeRuns;
+    }
+
+    public boolean isIncrementalVacuum() {
+        return incrementalVacuum;
+    }
+}
@@ -0,0 +1,309 @@
+package org.alex_melan.secureAuth.database;
+
+import org.alex_melan.secureAuth.database.DatabaseExecutor.Priority;
+import org.alex_melan.secureAuth.utils.NamedThreadFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Буферизованная запись security_logs.
+ *
+ * События складываются в ограниченный кольцевой буфер, а единственный поток-писатель
+ * сбрасывает их многострочными INSERT в одной транзакции: по таймеру или при
+ * накоплении пачки. Поведение при переполнении буфера задаётся политикой.
+ */
+public class SecurityLogWriter {
+
+    public enum OverflowPolicy {
+        /** Вытеснять самое старое событие */
+        DROP_OLDEST,
+        /** Сохранять только каждое N-е событие, пока буфер переполнен */
+        SAMPLE,
+        /** Ждать освобождения места не дольше block-timeout, затем отбросить */
+        BLOCK
+    }
+
+    // 6 параметров на строку, держимся далеко от лимита переменных SQLite (999)
+    private static final int ROWS_PER_STATEMENT = 100;
+    // Сколько ждать записи пачки потоком записи БД
+    private static final long WRITE_TIMEOUT_MILLIS = 30 * 1000;
+
+    private final Logger logger;
+    private final DatabaseManager databaseManager;
+    private final int capacity;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final OverflowPolicy overflowPolicy;
+    private final int sampleRate;
+    private final long blockTimeoutMillis;
+
+    private final ArrayDeque<LogEntry> buffer;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition batchReady = lock.newCondition();
+    private final Condition spaceAvailable = lock.newCondition();
+    private final Thread writerThread;
+    private volatile boolean running = true;
+
+    private long overflowCounter;
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+
+    public SecurityLogWriter(Logger logger, DatabaseManager databaseManager, int capacity, int batchSize,
+                             long flushIntervalMillis, OverflowPolicy overflowPolicy,
+                             int sampleRate, long blockTimeoutMillis) {
+        this.logger = logger;
+        this.databaseManager = databaseManager;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.overflowPolicy = overflowPolicy;
+        this.sampleRate = Math.max(1, sampleRate);
+        this.blockTimeoutMillis = blockTimeoutMillis;
+        this.buffer = new ArrayDeque<>(capacity);
+
+        this.writerThread = new NamedThreadFactory("SecureAuth-SecurityLog").newThread(this::writerLoop);
+        this.writerThread.start();
+    }
+
+    /**
+     * Добавление события в буфер. Не обращается к базе данных
+     * (кроме политики BLOCK, где может ждать до block-timeout)
+     */
+    public void append(String username, String ipAddress, String actionType, boolean success, String details) {
+        LogEntry entry = new LogEntry(username, ipAddress, actionType, success, details, System.currentTimeMillis());
+
+        lock.lock();
+        try {
+            if (!running) {
+                dropped.incrementAndGet();
+                return;
+            }
+
+            if (buffer.size() >= capacity && !makeRoom()) {
+                dropped.incrementAndGet();
+                return;
+            }
+
+            buffer.addLast(entry);
+
+            if (buffer.size() >= batchSize) {
+                batchReady.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Освобождение места в полном буфере согласно политике. Вызывается под блокировкой
+     * @return true если новое событие можно добавить
+     */
+    private boolean makeRoom() {
+        switch (overflowPolicy) {
+            case SAMPLE:
+                // Из переполнения сохраняем только каждое N-е событие, вытесняя самое старое
+                if (++overflowCounter % sampleRate != 0) {
+                    return false;
+                }
+                buffer.pollFirst();
+                dropped.incrementAndGet();
+                return true;
+
+            case BLOCK:
+                long remaining = TimeUnit.MILLISECONDS.toNanos(blockTimeoutMillis);
+                batchReady.signal();
+                try {
+                    while (buffer.size() >= capacity && running) {
+                        if (remaining <= 0) {
+                            return false;
+                        }
+                        remaining = spaceAvailable.awaitNanos(remaining);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+                return running;
+
+            case DROP_OLDEST:
+            default:
+                buffer.pollFirst();
+                dropped.incrementAndGet();
+                return true;
+        }
+    }
+
+    private void writerLoop() {
+        List<LogEntry> batch = new ArrayList<>(batchSize);
+
+        while (true) {
+            lock.lock();
+            try {
+                long remaining = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+                while (running && buffer.size() < batchSize && remaining > 0) {
+                    remaining = batchReady.awaitNanos(remaining);
+                }
+
+                if (!running && buffer.isEmpty()) {
+                    return;
+                }
+
+                drainTo(batch);
+            } catch (InterruptedException e) {
+                // Прерывание означает остановку: дописываем то, что осталось, и выходим
+                running = false;
+                drainTo(batch);
+            } finally {
+                lock.unlock();
+            }
+
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void drainTo(List<LogEntry> batch) {
+        LogEntry entry;
+        while (batch.size() < batchSize && (entry = buffer.pollFirst()) != null) {
+            batch.add(entry);
+        }
+        spaceAvailable.signalAll();
+    }
+
+    private void flush(List<LogEntry> batch) {
+        try {
+            // ИСПРАВЛЕНО: пачка - одна команда потока записи БД, а не второе соединение записи
+            databaseManager.writeSync(Priority.BACKGROUND, conn -> {
+                for (int from = 0; from < batch.size(); from += ROWS_PER_STATEMENT) {
+                    int to = Math.min(from + ROWS_PER_STATEMENT, batch.size());
+                    insertRows(conn, batch.subList(from, to));
+                }
+                return null;
+            }, WRITE_TIMEOUT_MILLIS);
+
+            written.addAndGet(batch.size());
+            flushes.incrementAndGet();
+
+        } catch (SQLException e) {
+            failed.addAndGet(batch.size());
+            logger.log(Level.WARNING, "Ошибка записи пачки логов безопасности (" + batch.size() + " событий)", e);
+        }
+    }
+
+    private void insertRows(Connection conn, List<LogEntry> rows) throws SQLException {
+        StringBuilder sql = new StringBuilder(
+                "INSERT INTO security_logs (username, ip_address, action_type, success, details, timestamp) VALUES ");
+        for (int i = 0; i < rows.size(); i++) {
+            sql.append(i == 0 ? "(?, ?, ?, ?, ?, ?)" : ", (?, ?, ?, ?, ?, ?)");
+        }
+
+        try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            int index = 1;
+            for (LogEntry row : rows) {
+                stmt.setString(index++, row.username);
+                stmt.setString(index++, row.ipAddress);
+                stmt.setString(index++, row.actionType);
+                stmt.setBoolean(index++, row.success);
+                stmt.setString(index++, row.details);
+                stmt.setLong(index++, row.timestamp);
+            }
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Остановка писателя с записью всего накопленного буфера
+     * @param timeoutMillis максимальное время ожидания
+     */
+    public void close(long timeoutMillis) {
+        lock.lock();
+        try {
+            running = false;
+            batchReady.signalAll();
+            spaceAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            writerThread.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (writerThread.isAlive()) {
+            writerThread.interrupt();
+            logger.warning("Запись логов безопасности не завершилась за " + timeoutMillis + " мс, в буфере осталось: " + getBufferedCount());
+        }
+    }
+
+    // Метрики
+
+    public int getBufferedCount() {
+        lock.lock();
+        try {
+            return buffer.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    public long getFlushCount() {
+        return flushes.get();
+    }
+
+    private static final class LogEntry {
+        private final String username;
+        private final String ipAddress;
+        private final String actionType;
+        private final boolean success;
+        private final String details;
+        private final long timestamp;
+
+        private LogEntry(String username, String ipAddress, String actionType,
+                         boolean success, String details, long timestamp) {
+            this.username = username;
+            this.ipAddress = ipAddress;
+            this.actionType = actionType;
+            this.success = success;
+            this.details = details;
+            this.timestamp = timestamp;
+        }
+    }
+}
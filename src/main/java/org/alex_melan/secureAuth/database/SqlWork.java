@@ -0,0 +1,12 @@
+package org.alex_melan.secureAuth.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Работа с БД на выданном соединении (чтение или команда записи)
+ */
+@FunctionalInterface
+public interface SqlWork<T> {
+    T execute(Connection connection) throws SQLException;
+}
@@ -0,0 +1,102 @@
+package org.alex_melan.secureAuth.database;
+
+import com.zaxxer.hikari.HikariConfig;
+import org.alex_melan.secureAuth.config.ConfigManager;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+
+/**
+ * Диалект хранилища: настройка пула соединений и различия в SQL
+ * между SQLite, MySQL/MariaDB и PostgreSQL.
+ *
+ * Имена пользователей всегда хранятся и ищутся в нижнем регистре,
+ * поэтому запросам не нужен регистронезависимый COLLATE.
+ */
+public interface StorageBackend {
+
+    /**
+     * Выбор диалекта по значению database.type
+     * @param type sqlite, mysql, mariadb, postgresql
+     * @return реализация диалекта (SQLite для неизвестных значений)
+     */
+    static StorageBackend forType(String type) {
+        if (type == null) {
+            return new SQLiteBackend();
+        }
+
+        switch (type.toLowerCase()) {
+            case "mysql":
+            case "mariadb":
+                return new MySQLBackend();
+            case "postgresql":
+            case "postgres":
+                return new PostgreSQLBackend();
+            default:
+                return new SQLiteBackend();
+        }
+    }
+
+    /** Название для логов */
+    String getName();
+
+    /** Настройка JDBC URL, драйвера, размера пула и свойств соединения */
+    void configure(HikariConfig config, ConfigManager configManager, File dataFolder);
+
+    /** Первичный ключ с автоинкрементом */
+    String autoIncrementPrimaryKey();
+
+    /** Тип колонки имени пользователя (должен допускать UNIQUE и внешние ключи) */
+    String usernameType();
+
+    /** Тип короткой строки: UUID, IP, названия */
+    String varcharType(int length);
+
+    /** Тип для больших сериализованных данных (инвентари, статистика) */
+    String largeTextType();
+
+    /** Тип для координат и прочих дробных значений двойной точности */
+    String doubleType();
+
+    /** Тип для сжатых двоичных данных профиля (см. ProfileCodec) */
+    String blobType();
+
+    /** Суффикс CREATE TABLE (движок, кодировка) */
+    default String tableOptions() {
+        return "";
+    }
+
+    /**
+     * Создание индекса, если его ещё нет
+     */
+    default void createIndex(Connection conn, String name, String table, String columns) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("CREATE INDEX IF NOT EXISTS " + name + " ON " + table + "(" + columns + ")");
+        }
+    }
+
+    /**
+     * Настройка отдельного пула соединений только для чтения.
+     * @return true если диалекту нужен раздельный пул читателей и единственный поток записи
+     */
+    default boolean configureReader(HikariConfig config, ConfigManager configManager, File dataFolder) {
+        return false;
+    }
+
+    /** Выполняется для каждого нового соединения перед созданием схемы */
+    default void prepareConnection(Connection conn) throws SQLException {
+    }
+
+    /** Дополнительные параметры соединения из database.connection_properties */
+    static void applyConnectionProperties(HikariConfig config, Map<String, Object> properties) {
+        if (properties == null) {
+            return;
+        }
+        for (Map.Entry<String, Object> entry : properties.entrySet()) {
+            config.addDataSourceProperty(entry.getKey(), String.valueOf(entry.getValue()));
+        }
+    }
+}
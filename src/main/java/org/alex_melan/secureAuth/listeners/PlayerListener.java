@@ -1,6 +1,9 @@
 package org.alex_melan.secureAuth.listeners;
 
 import org.alex_melan.secureAuth.SecureAuthPlugin;
+import org.alex_melan.secureAuth.managers.AuthSession;
+import org.alex_melan.secureAuth.models.PlayerData;
+import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
@@ -16,6 +19,13 @@ import org.bukkit.event.player.PlayerTeleportEvent;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
 
 public class PlayerListener implements Listener {
 
@@ -32,10 +42,72 @@ public class PlayerListener implements Listener {
             "/logout", "/exit", "/quit"
     );
 
+    // НОВОЕ: Результаты проверки сессии, подготовленные до входа в мир (имя -> результат)
+    private final Map<String, PreLoginResult> preLoginResults = new ConcurrentHashMap<>();
+
+    // Сколько ждать проверку сессии и загрузку данных в потоке предварительного входа
+    private static final long PRE_LOGIN_TIMEOUT_MILLIS = 3000;
+    // Результат, не забранный при входе (вход отклонён другим плагином), удаляется
+    private static final long PRE_LOGIN_RESULT_TTL_MILLIS = 30 * 1000;
+
     public PlayerListener(SecureAuthPlugin plugin) {
         this.plugin = plugin;
     }
 
+    /**
+     * НОВОЕ: Проверка сессии и загрузка данных до входа в мир.
+     * Событие вызывается вне основного потока и рассчитано на ожидание,
+     * поэтому к PlayerJoinEvent результат обычно уже готов
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onAsyncPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED || !plugin.isFullyInitialized()) {
+            return;
+        }
+
+        String username = event.getName();
+        String ipAddress = event.getAddress().getHostAddress();
+        long now = System.currentTimeMillis();
+
+        preLoginResults.values().removeIf(result -> now - result.createdAt > PRE_LOGIN_RESULT_TTL_MILLIS);
+
+        // ИСПРАВЛЕНО: игрок с этим именем ещё на сервере (переподключение после вылета клиента,
+        // повторный вход) - его сохранение при выходе ещё не запущено, профиль из БД устарел.
+        // PlayerJoinEvent загрузит данные обычным путём, после этого сохранения
+        if (Bukkit.getPlayerExact(username) != null) {
+            preLoginResults.remove(username.toLowerCase());
+            return;
+        }
+
+        CompletableFuture<PreLoginResult> future = plugin.getSessionManager().peekSession(username, ipAddress)
+                .thenCompose(valid -> valid
+                        ? plugin.getAuthManager().loadPlayerData(username)
+                                .thenApply(data -> new PreLoginResult(ipAddress, true, data, now))
+                        : CompletableFuture.completedFuture(new PreLoginResult(ipAddress, false, null, now)));
+
+        try {
+            preLoginResults.put(username.toLowerCase(), future.get(PRE_LOGIN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        } catch (TimeoutException e) {
+            // БД не успела - PlayerJoinEvent проверит сессию обычным путём
+            plugin.getLogger().warning("Проверка сессии " + username + " не завершилась до входа в мир");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            plugin.getLogger().log(Level.WARNING, "Ошибка предварительной проверки сессии " + username, e.getCause());
+        }
+    }
+
+    /**
+     * ИСПРАВЛЕНО: Вход отклонён (бан, белый список, заполненный сервер) - результат
+     * предварительного входа больше не нужен
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerLogin(PlayerLoginEvent event) {
+        if (event.getResult() != PlayerLoginEvent.Result.ALLOWED) {
+            preLoginResults.remove(event.getPlayer().getName().toLowerCase());
+        }
+    }
+
     @EventHandler(priority = EventPriority.HIGHEST)
     public void onPlayerJoin(PlayerJoinEvent event) {
         Player player = event.getPlayer();
@@ -57,112 +129,92 @@ public class PlayerListener implements Listener {
             return;
         }
 
-        // Асинхронная проверка сессии
-        plugin.getSessionManager().validateSession(username, ipAddress)
-                .thenAccept(validSession -> {
-                    plugin.getServer().getScheduler().runTask(plugin, () -> {
-                        if (!player.isOnline()) {
-                            return;
-                        }
-
-                        if (validSession) {
-                            handleValidSession(player);
-                        } else {
-                            handleInvalidSession(player);
-                        }
-                    });
-                })
-                .exceptionally(ex -> {
-                    plugin.getLogger().severe("Ошибка проверки сессии для игрока " + username + ": " + ex.getMessage());
-                    plugin.getServer().getScheduler().runTask(plugin, () -> {
-                        if (player.isOnline()) {
-                            plugin.getLobbyManager().sendToAuthLobby(player);
-                        }
-                    });
-                    return null;
-                });
+        // НОВОЕ: Состояние авторизации игрока на время подключения
+        AuthSession authSession = plugin.getSessionManager().openAuthSession(username);
+        authSession.transition(AuthSession.State.CONNECTING, AuthSession.State.RESOLVING);
+
+        // НОВОЕ: Результат предварительного входа применяется в этом же тике, без ожидания БД
+        PreLoginResult preLogin = preLoginResults.remove(username.toLowerCase());
+        // Незавершённое сохранение игрока - подготовленные данные могли устареть
+        if (preLogin != null && preLogin.ipAddress.equals(ipAddress)
+                && !plugin.getAuthManager().hasPendingSave(username)) {
+            // Сессию могли деактивировать между предварительным входом и входом в мир.
+            // Подтверждение отмечает активность сессии (предварительная проверка её не трогала)
+            boolean confirmed = plugin.getSessionManager().confirmSession(username, ipAddress);
+            if (confirmed && preLogin.validSession && preLogin.data != null) {
+                restoreSession(player, authSession, preLogin.data);
+            } else {
+                handleInvalidSession(player, authSession);
+            }
+            return;
+        }
+
+        // ИСПРАВЛЕНО: проверка сессии и загрузка данных - одна цепочка и одна передача в основной поток
+        CompletableFuture<PlayerData> resolve = plugin.getSessionManager().validateSession(username, ipAddress)
+                .thenCompose(validSession -> validSession
+                        ? plugin.getAuthManager().loadPlayerData(username)
+                        : CompletableFuture.completedFuture(null));
+
+        authSession.handoff(resolve, (data, ex) -> {
+            if (ex != null) {
+                plugin.getLogger().severe("Ошибка проверки сессии для игрока " + username + ": " + ex.getMessage());
+                handleInvalidSession(player, authSession);
+            } else if (data != null) {
+                restoreSession(player, authSession, data);
+            } else {
+                handleInvalidSession(player, authSession);
+            }
+        });
     }
 
-    private void handleValidSession(Player player) {
+    private void restoreSession(Player player, AuthSession authSession, PlayerData data) {
         String username = player.getName();
 
-        // ИСПРАВЛЕНО: Сначала помечаем игрока как авторизованного
-        plugin.getSessionManager().markAsAuthenticated(username);
-
-        // Загружаем данные игрока и возвращаем в мир
-        plugin.getAuthManager().loadPlayerData(username)
-                .thenAccept(data -> {
-                    plugin.getServer().getScheduler().runTask(plugin, () -> {
-                        if (!player.isOnline()) {
-                            return;
-                        }
-
-                        if (data != null) {
-                            // ДОБАВЛЕНО: Детальное логирование ДО применения данных
-                            plugin.getLogger().info("Восстановление сессии для " + username +
-                                    ": сохраненный режим=" + data.getGameMode() +
-                                    ", мир=" + data.getWorldName() +
-                                    ", позиция=(" + Math.round(data.getX()) + "," + Math.round(data.getY()) + "," + Math.round(data.getZ()) + ")");
-
-                            // Возвращаем игрока из лобби авторизации
-                            plugin.getLobbyManager().returnFromAuthLobby(player);
-
-                            // ДОБАВЛЕНО: Логирование ПОСЛЕ применения данных
-                            plugin.getLogger().info("Сессия восстановлена для " + username +
-                                    ": текущий режим=" + player.getGameMode().name() +
-                                    ", текущий мир=" + player.getWorld().getName());
-
-                            player.sendMessage(plugin.getConfigManager().getMessage("login-session-restored"));
-                            plugin.getLogger().info("Сессия игрока " + username + " восстановлена успешно");
-                        } else {
-                            plugin.getLogger().warning("Не удалось загрузить данные игрока " + username + " при восстановлении сессии");
-                            plugin.getLobbyManager().sendToAuthLobby(player);
-                        }
-                    });
-                })
-                .exceptionally(ex -> {
-                    plugin.getLogger().severe("Ошибка загрузки данных при восстановлении сессии для игрока " + username + ": " + ex.getMessage());
-                    plugin.getServer().getScheduler().runTask(plugin, () -> {
-                        if (player.isOnline()) {
-                            plugin.getLobbyManager().sendToAuthLobby(player);
-                        }
-                    });
-                    return null;
-                });
+        if (!authSession.transition(AuthSession.State.RESOLVING, AuthSession.State.RESTORING)) {
+            return;
+        }
+
+        // ДОБАВЛЕНО: Детальное логирование ДО применения данных
+        plugin.getLogger().info("Восстановление сессии для " + username +
+                ": сохраненный режим=" + data.getGameMode() +
+                ", мир=" + data.getWorldName() +
+                ", позиция=(" + Math.round(data.getX()) + "," + Math.round(data.getY()) + "," + Math.round(data.getZ()) + ")");
+
+        // ИСПРАВЛЕНО: данные уже загружены - возврат из лобби в этом же тике
+        plugin.getLobbyManager().returnFromAuthLobby(player, data);
+        authSession.transition(AuthSession.State.RESTORING, AuthSession.State.AUTHENTICATED);
+
+        // ДОБАВЛЕНО: Логирование ПОСЛЕ применения данных
+        plugin.getLogger().info("Сессия восстановлена для " + username +
+                ": текущий режим=" + player.getGameMode().name() +
+                ", текущий мир=" + player.getWorld().getName());
+
+        player.sendMessage(plugin.getConfigManager().getMessage("login-session-restored"));
+        plugin.getLogger().info("Сессия игрока " + username + " восстановлена успешно");
     }
 
-    private void handleInvalidSession(Player player) {
+    private void handleInvalidSession(Player player, AuthSession authSession) {
         String username = player.getName();
 
-        // Проверяем смену IP
-        plugin.getAuthManager().loadPlayerData(username)
-                .thenAccept(data -> {
-                    plugin.getServer().getScheduler().runTask(plugin, () -> {
-                        if (!player.isOnline()) {
-                            return;
-                        }
-
-                        if (data != null && data.getLastIp() != null) {
-                            String currentIp = player.getAddress().getAddress().getHostAddress();
-                            if (!data.getLastIp().equals(currentIp)) {
-                                player.sendMessage(plugin.getConfigManager().getMessage("login-ip-changed"));
-                                plugin.getLogger().info("Смена IP для игрока " + username + ": " + data.getLastIp() + " -> " + currentIp);
-                            }
-                        }
-
-                        // Отправляем в лобби авторизации
-                        plugin.getLobbyManager().sendToAuthLobby(player);
-                    });
-                })
-                .exceptionally(ex -> {
-                    plugin.getLogger().warning("Ошибка проверки данных игрока при входе: " + ex.getMessage());
-                    plugin.getServer().getScheduler().runTask(plugin, () -> {
-                        if (player.isOnline()) {
-                            plugin.getLobbyManager().sendToAuthLobby(player);
-                        }
-                    });
-                    return null;
-                });
+        if (!authSession.transition(AuthSession.State.RESOLVING, AuthSession.State.UNAUTHENTICATED)) {
+            return;
+        }
+
+        // ИСПРАВЛЕНО: в лобби авторизации сразу, смена IP проверяется параллельно только для сообщения
+        plugin.getLobbyManager().sendToAuthLobby(player);
+
+        String currentIp = player.getAddress().getAddress().getHostAddress();
+        authSession.handoff(plugin.getDatabaseManager().getPlayerSummary(username), (data, ex) -> {
+            if (ex != null) {
+                plugin.getLogger().warning("Ошибка проверки данных игрока при входе: " + ex.getMessage());
+                return;
+            }
+
+            if (data != null && data.getLastIp() != null && !data.getLastIp().equals(currentIp)) {
+                player.sendMessage(plugin.getConfigManager().getMessage("login-ip-changed"));
+                plugin.getLogger().info("Смена IP для игрока " + username + ": " + data.getLastIp() + " -> " + currentIp);
+            }
+        });
     }
 
     @EventHandler(priority = EventPriority.LOWEST)  // ИСПРАВЛЕНО: Изменен приоритет на LOWEST чтобы сработать раньше всех
@@ -172,12 +224,15 @@ public class PlayerListener implements Listener {
 
         plugin.getLogger().info("Игрок " + username + " отключается, сохраняем данные...");
 
-        // ИСПРАВЛЕНО: Принудительно сохраняем актуальные данные игрока
-        if (plugin.getSessionManager().isAuthenticated(username)) {
-            // Обновляем кеш с текущими данными прямо перед сохранением
-            plugin.getAuthManager().forceCacheUpdate(player);
+        // Состояние авторизации читается до закрытия AuthSession
+        boolean authenticated = plugin.getSessionManager().isAuthenticated(username);
 
-            // Сохраняем обновленные данные
+        // НОВОЕ: Незавершённые проверки и входы больше не трогают игрока
+        plugin.getSessionManager().closeAuthSession(username);
+
+        // ИСПРАВЛЕНО: Принудительно сохраняем актуальные данные игрока
+        if (authenticated) {
+            // Снимок текущих данных игрока делается сразу, запись - в пуле БД
             plugin.getAuthManager().savePlayerData(player);
 
             plugin.getLogger().info("Данные игрока " + username + " сохранены при выходе");
@@ -453,4 +508,18 @@ public class PlayerListener implements Listener {
             }
         }
     }
-}
\ No newline at end of file
+
+    private static final class PreLoginResult {
+        private final String ipAddress;
+        private final boolean validSession;
+        private final PlayerData data;
+        private final long createdAt;
+
+        private PreLoginResult(String ipAddress, boolean validSession, PlayerData data, long createdAt) {
+            this.ipAddress = ipAddress;
+            this.validSession = validSession;
+            this.data = data;
+            this.createdAt = createdAt;
+        }
+    }
+}
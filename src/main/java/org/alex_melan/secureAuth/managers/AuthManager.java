@@ -1,16 +1,24 @@
 package org.alex_melan.secureAuth.managers;
 
 import org.alex_melan.secureAuth.SecureAuthPlugin;
+import org.alex_melan.secureAuth.database.DatabaseExecutor.Priority;
 import org.alex_melan.secureAuth.database.DatabaseManager;
+import org.alex_melan.secureAuth.models.LoginResult;
 import org.alex_melan.secureAuth.models.PlayerData;
+import org.alex_melan.secureAuth.models.PlayerSnapshot;
+import org.alex_melan.secureAuth.utils.PasswordHashingPool;
 import org.alex_melan.secureAuth.utils.PasswordUtils;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 
 public class AuthManager {
@@ -18,58 +26,116 @@ public class AuthManager {
     private final SecureAuthPlugin plugin;
     private final DatabaseManager databaseManager;
     private final Map<String, PlayerData> playerDataCache = new ConcurrentHashMap<>();
+    // ИСПРАВЛЕНО: Незавершённые сохранения игроков. Загрузка профиля и вход ждут их,
+    // иначе при быстром перезаходе восстановится состояние до выхода (откат и дюп предметов)
+    private final Map<String, CompletableFuture<?>> pendingSaves = new ConcurrentHashMap<>();
+
+    // Метрики сохранения
+    private volatile long lastSaveCycleBytes;
+    private volatile int lastSaveCycleWrites;
+    private final AtomicLong totalSavedBytes = new AtomicLong();
 
     public AuthManager(SecureAuthPlugin plugin, DatabaseManager databaseManager) {
         this.plugin = plugin;
         this.databaseManager = databaseManager;
     }
 
-    public CompletableFuture<Boolean> registerPlayer(String username, String password, UUID crackedUuid) {
-        return CompletableFuture.supplyAsync(() -> {
-            // Валидация пароля
-            if (!PasswordUtils.isPasswordValid(password)) {
-                plugin.getLogger().warning("Попытка регистрации с невалидным паролем для игрока " + username);
-                return false;
-            }
+    public CompletableFuture<Boolean> registerPlayer(String username, String password, UUID crackedUuid, String ipAddress) {
+        // ИСПРАВЛЕНО: Проверки пароля дешёвые и выполняются в вызывающем потоке, а не в общем ForkJoinPool.
+        // thenApply на завершённом future сохраняет обработку исключений в exceptionally ниже
+        return CompletableFuture.completedFuture(username)
+                .thenApply(name -> isRegistrationValid(name, password))
+                .thenCompose(valid -> {
+                    if (!valid) {
+                        return CompletableFuture.completedFuture(false);
+                    }
 
-            // Дополнительная проверка длины никнейма
-            if (username.length() < 3 || username.length() > 16) {
-                plugin.getLogger().warning("Некорректная длина никнейма при регистрации: " + username);
-                return false;
-            }
+                    // Проверка, не зарегистрирован ли уже
+                    return databaseManager.isPlayerRegistered(username)
+                            .thenCompose(registered -> {
+                                if (registered) {
+                                    plugin.getLogger().info("Попытка повторной регистрации игрока " + username);
+                                    return CompletableFuture.completedFuture(false);
+                                }
 
-            return true;
-        }).thenCompose(valid -> {
-            if (!valid) {
-                return CompletableFuture.completedFuture(false);
-            }
+                                return databaseManager.registerPlayer(username, password, crackedUuid, ipAddress);
+                            });
+                })
+                .exceptionally(ex -> {
+                    if (ex.getCause() instanceof PasswordHashingPool.RejectedException) {
+                        // Перегрузка пула хеширования - не ошибка, игрок повторит попытку
+                        throw (CompletionException) ex;
+                    }
+                    plugin.getLogger().log(Level.SEVERE, "Ошибка в процессе регистрации игрока " + username, ex);
+                    return false;
+                });
+    }
 
-            // Проверка, не зарегистрирован ли уже
-            return databaseManager.isPlayerRegistered(username)
-                    .thenCompose(registered -> {
-                        if (registered) {
-                            plugin.getLogger().info("Попытка повторной регистрации игрока " + username);
-                            return CompletableFuture.completedFuture(false);
-                        }
+    private boolean isRegistrationValid(String username, String password) {
+        // Валидация пароля
+        // ИСПРАВЛЕНО: Та же политика, что и в /register (учитывает настройки сложности)
+        if (!plugin.getConfigManager().getPasswordPolicy().isValid(password, username)) {
+            plugin.getLogger().warning("Попытка регистрации с невалидным паролем для игрока " + username);
+            return false;
+        }
 
-                        return databaseManager.registerPlayer(username, password, crackedUuid);
-                    });
-        }).exceptionally(ex -> {
-            plugin.getLogger().log(Level.SEVERE, "Ошибка в процессе регистрации игрока " + username, ex);
+        if (PasswordUtils.isCommonPassword(password, plugin.getBreachedPasswordFilter())) {
+            plugin.getLogger().warning("Попытка регистрации с распространённым паролем для игрока " + username);
             return false;
-        });
+        }
+
+        // Дополнительная проверка длины никнейма
+        if (username.length() < 3 || username.length() > 16) {
+            plugin.getLogger().warning("Некорректная длина никнейма при регистрации: " + username);
+            return false;
+        }
+
+        return true;
     }
 
-    public CompletableFuture<Boolean> authenticatePlayer(String username, String password, String ipAddress) {
-        return databaseManager.authenticatePlayer(username, password, ipAddress)
+    /**
+     * НОВОЕ: Вход одной операцией - проверка пароля, загрузка профиля и создание сессии.
+     * Загруженный профиль сразу попадает в кеш, повторно из БД он не читается
+     */
+    public CompletableFuture<LoginResult> login(String username, String password, String ipAddress) {
+        // ИСПРАВЛЕНО: профиль читается из БД только после записи последнего сохранения игрока
+        return awaitPendingSave(username)
+                .thenCompose(ignored -> databaseManager.login(username, password, ipAddress))
+                .thenApply(result -> {
+                    if (result.isSuccess()) {
+                        PlayerData data = result.getPlayerData();
+                        if (!validatePlayerData(data)) {
+                            plugin.getLogger().warning("Некорректные данные игрока " + username + ", создаются значения по умолчанию");
+                            data = createDefaultPlayerData(username);
+                        }
+                        playerDataCache.put(username.toLowerCase(), data);
+                        plugin.getSessionManager().registerSession(result.getSession());
+                    }
+                    return result;
+                })
                 .exceptionally(ex -> {
-                    plugin.getLogger().log(Level.SEVERE, "Ошибка аутентификации игрока " + username, ex);
-                    return false;
+                    plugin.getLogger().log(Level.SEVERE, "Ошибка входа игрока " + username, ex);
+                    return LoginResult.failure(LoginResult.Status.ERROR);
                 });
     }
 
+    /**
+     * Данные из кеша, если они уже загружены (например, при входе), иначе из БД
+     */
+    public CompletableFuture<PlayerData> getOrLoadPlayerData(String username) {
+        // ИСПРАВЛЕНО: в кешированный профиль снимок при выходе попадает в пуле БД - ждём его
+        return awaitPendingSave(username).thenCompose(ignored -> {
+            PlayerData cached = playerDataCache.get(username.toLowerCase());
+            if (cached != null) {
+                return CompletableFuture.completedFuture(cached);
+            }
+            return loadPlayerData(username);
+        });
+    }
+
     public CompletableFuture<PlayerData> loadPlayerData(String username) {
-        return databaseManager.getPlayerData(username)
+        return awaitPendingSave(username)
+                .thenCompose(ignored -> databaseManager.getPlayerData(username))
                 .thenApply(data -> {
                     if (data != null) {
                         // Валидируем загруженные данные
@@ -163,46 +229,153 @@ public class AuthManager {
         return Bukkit.getWorlds().isEmpty() ? "world" : Bukkit.getWorlds().get(0).getName();
     }
 
-    public void savePlayerData(Player player) {
+    /**
+     * Сохранение данных игрока. В БД записываются только изменившиеся колонки
+     * @return объём записанных данных в байтах (0 если изменений не было)
+     */
+    public CompletableFuture<Long> savePlayerData(Player player) {
+        return savePlayerData(player, true);
+    }
+
+    /**
+     * ИСПРАВЛЕНО: Сохранение в два этапа. В основном потоке снимается копия состояния игрока,
+     * сериализация инвентарей и прогресса и запись в БД выполняются в пуле БД
+     * @param withProgress снимать ли достижения, статистику и рецепты (перебор всех достижений сервера)
+     * @return объём записанных данных в байтах (0 если изменений не было)
+     */
+    public CompletableFuture<Long> savePlayerData(Player player, boolean withProgress) {
         String username = player.getName().toLowerCase();
-        PlayerData data = playerDataCache.get(username);
+        PlayerData data = playerDataCache.computeIfAbsent(username, name -> {
+            plugin.getLogger().warning("Создан новый кеш для игрока " + name + " при сохранении");
+            return new PlayerData(name);
+        });
 
-        if (data != null) {
-            try {
-                data.saveFromPlayer(player);
-
-                // Асинхронное сохранение в БД
-                databaseManager.savePlayerData(data)
-                        .thenRun(() -> {
-                            plugin.getLogger().fine("Данные игрока " + username + " сохранены в БД");
-                        })
-                        .exceptionally(ex -> {
-                            plugin.getLogger().log(Level.SEVERE, "Ошибка сохранения данных игрока " + username, ex);
-                            return null;
-                        });
-
-            } catch (Exception e) {
-                plugin.getLogger().log(Level.SEVERE, "Ошибка сохранения данных игрока " + username, e);
+        try {
+            PlayerSnapshot snapshot = PlayerSnapshot.capture(player, withProgress);
+
+            // При выгрузке плагина пул БД не примет запись после сериализации - сериализуем сразу
+            CompletableFuture<Boolean> applied = plugin.isFullyInitialized()
+                    ? databaseManager.getExecutor().supply(Priority.BACKGROUND, () -> data.applySnapshot(snapshot))
+                    : CompletableFuture.completedFuture(data.applySnapshot(snapshot));
+
+            // ИСПРАВЛЕНО: Снимок при выходе, /logout и остановке больше не снять - если пул БД
+            // отклонил или отменил задачу, сериализуем в текущем потоке, а не теряем его
+            if (withProgress) {
+                applied = applied.exceptionally(ex -> {
+                    plugin.getLogger().warning("Пул БД не принял сериализацию данных игрока " + username
+                            + ", выполняется в текущем потоке");
+                    return data.applySnapshot(snapshot);
+                });
             }
-        } else {
-            plugin.getLogger().warning("Попытка сохранить данные для игрока " + username + ", но данные не найдены в кеше");
+
+            // Асинхронное сохранение в БД
+            CompletableFuture<Long> save = applied
+                    .thenCompose(ignored -> databaseManager.savePlayerData(data))
+                    .thenApply(bytes -> {
+                        plugin.getLogger().fine("Данные игрока " + username + " сохранены в БД (" + bytes + " байт)");
+                        return bytes;
+                    })
+                    .exceptionally(ex -> {
+                        plugin.getLogger().log(Level.SEVERE, "Ошибка сохранения данных игрока " + username, ex);
+                        return 0L;
+                    });
+            trackSave(username, save);
+            return save;
+
+        } catch (Exception e) {
+            plugin.getLogger().log(Level.SEVERE, "Ошибка сохранения данных игрока " + username, e);
+        }
+
+        return CompletableFuture.completedFuture(0L);
+    }
+
+    private void trackSave(String username, CompletableFuture<Long> save) {
+        // Более раннее сохранение могло ещё не завершиться - ждём оба
+        CompletableFuture<?> tracked = pendingSaves.merge(username, save,
+                (previous, next) -> CompletableFuture.allOf(previous, next));
+        tracked.whenComplete((result, ex) -> pendingSaves.remove(username, tracked));
+    }
+
+    /**
+     * Есть ли у игрока незавершённое сохранение
+     */
+    public boolean hasPendingSave(String username) {
+        return pendingSaves.containsKey(username.toLowerCase());
+    }
+
+    /**
+     * Завершение последнего сохранения игрока (сразу, если сохранений нет)
+     */
+    private CompletableFuture<Void> awaitPendingSave(String username) {
+        CompletableFuture<?> pending = pendingSaves.get(username.toLowerCase());
+        if (pending == null) {
+            return CompletableFuture.completedFuture(null);
         }
+        return pending.handle((result, ex) -> null);
     }
 
-    public void saveAllPlayerData() {
+    /**
+     * Сохранение всех авторизованных игроков (в основном потоке)
+     * @param withProgress снимать ли достижения, статистику и рецепты
+     */
+    public void saveAllPlayerData(boolean withProgress) {
         plugin.getLogger().info("Сохранение данных всех онлайн игроков...");
 
         int savedCount = 0;
+        List<CompletableFuture<Long>> saves = new ArrayList<>();
         for (Player player : Bukkit.getOnlinePlayers()) {
             if (plugin.getSessionManager().isAuthenticated(player.getName())) {
-                savePlayerData(player);
+                saves.add(savePlayerData(player, withProgress));
                 savedCount++;
             }
         }
 
+        // НОВОЕ: Метрика объёма записи за цикл сохранения
+        int playersCount = savedCount;
+        CompletableFuture.allOf(saves.toArray(new CompletableFuture[0])).thenRun(() -> {
+            long bytes = 0;
+            int written = 0;
+            for (CompletableFuture<Long> save : saves) {
+                long saved = save.join();
+                bytes += saved;
+                if (saved > 0) {
+                    written++;
+                }
+            }
+
+            lastSaveCycleBytes = bytes;
+            lastSaveCycleWrites = written;
+            totalSavedBytes.addAndGet(bytes);
+
+            plugin.getLogger().info("Цикл сохранения: " + written + " из " + playersCount
+                    + " игроков записано, " + formatBytes(bytes));
+        });
+
         plugin.getLogger().info("Данные " + savedCount + " игроков сохранены");
     }
 
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " Б";
+        }
+        if (bytes < 1024 * 1024) {
+            return String.format("%.1f КБ", bytes / 1024.0);
+        }
+        return String.format("%.1f МБ", bytes / 1024.0 / 1024.0);
+    }
+
+    public long getLastSaveCycleBytes() {
+        return lastSaveCycleBytes;
+    }
+
+    public int getLastSaveCycleWrites() {
+        return lastSaveCycleWrites;
+    }
+
+    public long getTotalSavedBytes() {
+        return totalSavedBytes.get();
+    }
+
     public PlayerData getCachedPlayerData(String username) {
         return playerDataCache.get(username.toLowerCase());
     }
@@ -305,37 +478,6 @@ public class AuthManager {
                 });
     }
 
-    /**
-     * Принудительное обновление кеша с текущими данными игрока
-     * Используется перед сохранением при выходе или разлогинивании
-     */
-    public void forceCacheUpdate(Player player) {
-        String username = player.getName().toLowerCase();
-        PlayerData data = playerDataCache.get(username);
-
-        if (data == null) {
-            // Если данных нет в кеше, создаем новые
-            data = new PlayerData(username);
-            playerDataCache.put(username, data);
-            plugin.getLogger().warning("Создан новый кеш для игрока " + username + " при принудительном обновлении");
-        }
-
-        // Сохраняем все текущие данные игрока в кеш
-        try {
-            // ДОБАВЛЕНО: Логируем ДО сохранения
-            plugin.getLogger().info("Принудительное обновление кеша для " + username +
-                    " - текущий режим: " + player.getGameMode().name());
-
-            data.saveFromPlayer(player);
-
-            // ДОБАВЛЕНО: Логируем ПОСЛЕ сохранения
-            plugin.getLogger().info("Кеш игрока " + username + " обновлен - сохранен режим: " + data.getGameMode());
-
-        } catch (Exception e) {
-            plugin.getLogger().log(Level.WARNING, "Ошибка принудительного обновления кеша для " + username, e);
-        }
-    }
-
     /**
      * Обновление позиции игрока в кеше
      * Вызывается при движении для постоянной актуальности данных
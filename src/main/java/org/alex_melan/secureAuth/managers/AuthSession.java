@@ -0,0 +1,112 @@
+package org.alex_melan.secureAuth.managers;
+
+import org.alex_melan.secureAuth.SecureAuthPlugin;
+import org.bukkit.Bukkit;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+
+/**
+ * Состояние авторизации подключённого игрока.
+ *
+ * CONNECTING -> RESOLVING -> UNAUTHENTICATED -> VERIFYING -> RESTORING -> AUTHENTICATED
+ *
+ * Переходы выполняются через compareAndSet, поэтому два параллельных /login
+ * или проверка сессии во время входа не выполняют одну работу дважды.
+ * После выхода игрока сессия закрывается, и результаты незавершённых
+ * операций в основной поток не передаются.
+ */
+public class AuthSession {
+
+    public enum State {
+        // Подключение, проверка сессии ещё не начата
+        CONNECTING,
+        // Проверка сохранённой сессии и загрузка профиля
+        RESOLVING,
+        // Ожидание /login или /register
+        UNAUTHENTICATED,
+        // Проверка пароля или регистрация
+        VERIFYING,
+        // Возврат из лобби авторизации с данными профиля
+        RESTORING,
+        AUTHENTICATED
+    }
+
+    private final SecureAuthPlugin plugin;
+    private final String username;
+    private final AtomicReference<State> state = new AtomicReference<>(State.CONNECTING);
+    private volatile boolean closed;
+
+    AuthSession(SecureAuthPlugin plugin, String username) {
+        this.plugin = plugin;
+        this.username = username;
+    }
+
+    /**
+     * Переход из ожидаемого состояния
+     * @return false если состояние уже изменил другой поток
+     */
+    public boolean transition(State from, State to) {
+        return !closed && state.compareAndSet(from, to);
+    }
+
+    /**
+     * Безусловная установка состояния (выход из аккаунта, принудительный выход)
+     */
+    public void set(State to) {
+        if (!closed) {
+            state.set(to);
+        }
+    }
+
+    /**
+     * Единственная передача результата асинхронной операции в основной поток.
+     * Если игрок вышел, вызывается onClosed (в том потоке, где завершилась операция)
+     */
+    public <T> void handoff(CompletableFuture<T> work, BiConsumer<T, Throwable> onMain, BiConsumer<T, Throwable> onClosed) {
+        work.whenComplete((result, ex) -> {
+            if (closed) {
+                onClosed.accept(result, ex);
+                return;
+            }
+
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                if (closed) {
+                    onClosed.accept(result, ex);
+                } else {
+                    onMain.accept(result, ex);
+                }
+            });
+        });
+    }
+
+    public <T> void handoff(CompletableFuture<T> work, BiConsumer<T, Throwable> onMain) {
+        handoff(work, onMain, (result, ex) -> { });
+    }
+
+    void close() {
+        closed = true;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    /**
+     * Пароль или сессия проверены. RESTORING тоже считается: возврат из лобби
+     * (телепортация, инвентарь) уже выполняется от имени авторизованного игрока
+     */
+    public boolean isAuthenticated() {
+        State current = state.get();
+        return !closed && (current == State.RESTORING || current == State.AUTHENTICATED);
+    }
+
+    public String getUsername() {
+        return username;
+    }
+}
@@ -1,6 +1,7 @@
 package org.alex_melan.secureAuth.managers;
 
 import org.alex_melan.secureAuth.SecureAuthPlugin;
+import org.alex_melan.secureAuth.models.PlayerData;
 import org.bukkit.*;
 import org.bukkit.block.Block;
 import org.bukkit.block.Sign;
@@ -365,36 +366,12 @@ public class LobbyManager {
     }
 
     public void returnFromAuthLobby(Player player) {
-        plugin.getAuthManager().loadPlayerData(player.getName())
+        // ИСПРАВЛЕНО: профиль обычно уже в кеше (загружен при входе), повторно из БД не читается
+        plugin.getAuthManager().getOrLoadPlayerData(player.getName())
                 .thenAccept(data -> {
                     plugin.getServer().getScheduler().runTask(plugin, () -> {
-                        try {
-                            if (!player.isOnline()) {
-                                return;
-                            }
-
-                            if (data != null) {
-                                // Восстанавливаем все данные игрока
-                                World defaultWorld = getDefaultWorld();
-                                data.applyToPlayer(player, defaultWorld);
-
-                                // Если это кастомный лобби, оставляем игрока там
-                                if (customLobby) {
-                                    plugin.getLogger().info("Игрок " + player.getName() + " остается в кастомном лобби");
-                                    setupPlayerForCustomLobby(player);
-                                } else {
-                                    plugin.getLogger().info("Игрок " + player.getName() + " возвращен в игровой мир");
-                                }
-
-                            } else {
-                                // Первый вход - отправляем на спавн
-                                handleFirstTimePlayer(player);
-                            }
-                        } catch (Exception e) {
-                            plugin.getLogger().severe("Ошибка возврата игрока из лобби авторизации: " + e.getMessage());
-                            // В случае ошибки отправляем на спавн основного мира
-                            player.teleport(getDefaultSpawnLocation());
-                            setupNewPlayer(player);
+                        if (player.isOnline()) {
+                            returnFromAuthLobby(player, data);
                         }
                     });
                 })
@@ -410,6 +387,37 @@ public class LobbyManager {
                 });
     }
 
+    /**
+     * НОВОЕ: Возврат с уже загруженными данными, в основном потоке в том же тике
+     * (данные подготовлены при AsyncPlayerPreLoginEvent)
+     */
+    public void returnFromAuthLobby(Player player, PlayerData data) {
+        try {
+            if (data != null) {
+                // Восстанавливаем все данные игрока
+                World defaultWorld = getDefaultWorld();
+                data.applyToPlayer(player, defaultWorld);
+
+                // Если это кастомный лобби, оставляем игрока там
+                if (customLobby) {
+                    plugin.getLogger().info("Игрок " + player.getName() + " остается в кастомном лобби");
+                    setupPlayerForCustomLobby(player);
+                } else {
+                    plugin.getLogger().info("Игрок " + player.getName() + " возвращен в игровой мир");
+                }
+
+            } else {
+                // Первый вход - отправляем на спавн
+                handleFirstTimePlayer(player);
+            }
+        } catch (Exception e) {
+            plugin.getLogger().severe("Ошибка возврата игрока из лобби авторизации: " + e.getMessage());
+            // В случае ошибки отправляем на спавн основного мира
+            player.teleport(getDefaultSpawnLocation());
+            setupNewPlayer(player);
+        }
+    }
+
     private void setupPlayerForCustomLobby(Player player) {
         // ИСПРАВЛЕНО: Если лобби кастомный, просто снимаем ограничения лобби
         // НЕ меняем режим игры - он был восстановлен из данных игрока
@@ -485,15 +493,10 @@ public class LobbyManager {
                                 player.sendMessage("§7Создайте аккаунт: §a/register <пароль> <повтор>");
 
                                 // Показываем требования к паролю с правильным форматированием
-                                if (plugin.getConfigManager().isPasswordComplexityEnforced()) {
-                                    int minLength = plugin.getConfigManager().getConfig().getInt("security.min-password-length", 8);
-                                    int maxLength = plugin.getConfigManager().getConfig().getInt("security.max-password-length", 32);
-
-                                    player.sendMessage("");
-                                    player.sendMessage("§7§lТребования к паролю:");
-                                    player.sendMessage("§7• От §e" + minLength + "§7 до §e" + maxLength + "§7 символов");
-                                    player.sendMessage("§7• Заглавные и строчные буквы");
-                                    player.sendMessage("§7• Минимум одна цифра");
+                                player.sendMessage("");
+                                player.sendMessage("§7§lТребования к паролю:");
+                                for (String requirement : plugin.getConfigManager().getPasswordPolicy().getRequirements()) {
+                                    player.sendMessage("§7• " + requirement);
                                 }
                             }
 
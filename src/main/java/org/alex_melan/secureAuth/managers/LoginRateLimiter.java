@@ -0,0 +1,113 @@
+package org.alex_melan.secureAuth.managers;
+
+import org.alex_melan.secureAuth.config.ConfigManager;
+import org.alex_melan.secureAuth.utils.TokenBucketLimiter;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Допуск попыток /login и /register до проверки пароля.
+ *
+ * Каждая попытка берёт токен из трёх корзин: IP, аккаунта и общей на сервер.
+ * Если одна из корзин пуста, токены, взятые из предыдущих, возвращаются.
+ * Общая корзина ограничивает нагрузку на хеширование, даже если бот
+ * перебирает имена и адреса. Блокировка после неудачных попыток
+ * (security.max-login-attempts) работает отдельно от этого лимита.
+ */
+public class LoginRateLimiter {
+
+    public enum Limit {
+        IP,
+        ACCOUNT,
+        GLOBAL
+    }
+
+    /**
+     * Результат проверки: limit == null - попытка разрешена
+     */
+    public static final class Decision {
+        private static final Decision ALLOWED = new Decision(null, 0);
+
+        private final Limit limit;
+        private final long retryAfterMillis;
+
+        private Decision(Limit limit, long retryAfterMillis) {
+            this.limit = limit;
+            this.retryAfterMillis = retryAfterMillis;
+        }
+
+        public boolean isAllowed() { return limit == null; }
+        public Limit getLimit() { return limit; }
+        public long getRetryAfterMillis() { return retryAfterMillis; }
+        public int getRetryAfterSeconds() { return (int) ((retryAfterMillis + 999) / 1000); }
+    }
+
+    private final boolean enabled;
+    private final TokenBucketLimiter perIp;
+    private final TokenBucketLimiter perAccount;
+    private final TokenBucketLimiter global;
+    private final AtomicLong[] rejected = new AtomicLong[Limit.values().length];
+
+    public LoginRateLimiter(ConfigManager config) {
+        this.enabled = config.isLoginRateLimitEnabled();
+        this.perIp = new TokenBucketLimiter(config.getLoginRateLimitIpPerMinute(), config.getLoginRateLimitIpBurst());
+        this.perAccount = new TokenBucketLimiter(config.getLoginRateLimitAccountPerMinute(), config.getLoginRateLimitAccountBurst());
+        this.global = new TokenBucketLimiter(config.getLoginRateLimitGlobalPerMinute(), config.getLoginRateLimitGlobalBurst());
+
+        for (Limit limit : Limit.values()) {
+            rejected[limit.ordinal()] = new AtomicLong();
+        }
+    }
+
+    public Decision tryAcquire(String ipAddress, String username) {
+        if (!enabled) {
+            return Decision.ALLOWED;
+        }
+
+        // Сначала личные лимиты: один источник не расходует общую корзину
+        long wait = perIp.tryAcquire(ipAddress);
+        if (wait > 0) {
+            return reject(Limit.IP, wait);
+        }
+
+        // ИСПРАВЛЕНО: отклонённая попытка не расходует токены уже пройденных корзин
+        String account = username.toLowerCase();
+        wait = perAccount.tryAcquire(account);
+        if (wait > 0) {
+            perIp.release(ipAddress);
+            return reject(Limit.ACCOUNT, wait);
+        }
+
+        wait = global.tryAcquire(null);
+        if (wait > 0) {
+            perIp.release(ipAddress);
+            perAccount.release(account);
+            return reject(Limit.GLOBAL, wait);
+        }
+
+        return Decision.ALLOWED;
+    }
+
+    private Decision reject(Limit limit, long retryAfterMillis) {
+        rejected[limit.ordinal()].incrementAndGet();
+        return new Decision(limit, retryAfterMillis);
+    }
+
+    public void cleanup() {
+        perIp.cleanup();
+        perAccount.cleanup();
+    }
+
+    // Метрики
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getRejectedCount(Limit limit) {
+        return rejected[limit.ordinal()].get();
+    }
+
+    public int getTrackedKeys() {
+        return perIp.size() + perAccount.size();
+    }
+}
@@ -0,0 +1,153 @@
+package org.alex_melan.secureAuth.managers;
+
+import org.alex_melan.secureAuth.SecureAuthPlugin;
+import org.alex_melan.secureAuth.database.DatabaseManager;
+import org.alex_melan.secureAuth.models.SessionEvent;
+import org.alex_melan.secureAuth.utils.NamedThreadFactory;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Синхронизация сессий между серверами сети через общую БД.
+ *
+ * Каждое изменение сессии записывается в session_events в той же транзакции,
+ * что и само изменение. Сервер опрашивает события после последнего увиденного
+ * номера и применяет события других серверов к локальному кешу сессий.
+ */
+public class NetworkSessionSync {
+
+    // Сколько событий читать за один опрос
+    private static final int POLL_LIMIT = 500;
+    // Окно повторного чтения: события транзакций, зафиксированных позже соседних.
+    // created_at пишет часами сервер, создавший событие, поэтому окно рассчитано на
+    // синхронизированные часы (NTP): при расхождении больше окна такое позднее событие
+    // может быть пропущено. События с номером после последнего увиденного читаются всегда
+    private static final long REPLAY_WINDOW_MILLIS = 5 * 1000;
+    // Сколько хранить события в БД
+    private static final long EVENT_RETENTION_MILLIS = 60 * 60 * 1000;
+    private static final long CLEANUP_INTERVAL_MILLIS = 10 * 60 * 1000;
+    private static final int SEEN_CAPACITY = 4096;
+
+    private final SecureAuthPlugin plugin;
+    private final DatabaseManager databaseManager;
+    private final SessionManager sessionManager;
+    private final long pollInterval;
+
+    private ScheduledExecutorService scheduler;
+    private volatile boolean running;
+
+    // Состояние опроса меняется только в цепочке опросов, по одному опросу за раз
+    private volatile long lastEventId;
+    private long lastCleanup;
+    private final Set<Long> seenEvents = new LinkedHashSet<>();
+
+    // Метрики
+    private volatile long appliedEvents;
+
+    public NetworkSessionSync(SecureAuthPlugin plugin, DatabaseManager databaseManager, SessionManager sessionManager) {
+        this.plugin = plugin;
+        this.databaseManager = databaseManager;
+        this.sessionManager = sessionManager;
+        this.pollInterval = plugin.getConfigManager().getNetworkPollInterval();
+    }
+
+    public void start() {
+        scheduler = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("SecureAuth-Network-Sync"));
+        running = true;
+        lastCleanup = System.currentTimeMillis();
+
+        // Уже существующие события отражены в сессиях, загруженных при запуске
+        databaseManager.getLatestSessionEventId().whenComplete((id, ex) -> {
+            if (ex != null) {
+                plugin.getLogger().log(Level.WARNING, "Ошибка чтения событий сессий сети", ex);
+            } else {
+                lastEventId = id;
+            }
+            scheduleNextPoll();
+        });
+
+        plugin.getLogger().info("Синхронизация сессий сети запущена (сервер " + databaseManager.getServerId() + ")");
+    }
+
+    private void scheduleNextPoll() {
+        if (!running) {
+            return;
+        }
+
+        try {
+            scheduler.schedule(this::poll, pollInterval, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Остановка во время опроса
+        }
+    }
+
+    private void poll() {
+        long now = System.currentTimeMillis();
+
+        databaseManager.readSessionEvents(lastEventId, now - REPLAY_WINDOW_MILLIS, POLL_LIMIT)
+                .whenComplete((events, ex) -> {
+                    if (ex != null) {
+                        plugin.getLogger().log(Level.WARNING, "Ошибка опроса событий сессий сети", ex);
+                    } else {
+                        apply(events);
+                    }
+
+                    if (now - lastCleanup >= CLEANUP_INTERVAL_MILLIS) {
+                        lastCleanup = now;
+                        databaseManager.cleanupSessionEvents(now - EVENT_RETENTION_MILLIS);
+                    }
+
+                    scheduleNextPoll();
+                });
+    }
+
+    private void apply(List<SessionEvent> events) {
+        for (SessionEvent event : events) {
+            lastEventId = Math.max(lastEventId, event.getId());
+
+            // Окно повторного чтения возвращает уже обработанные события
+            if (!seenEvents.add(event.getId())) {
+                continue;
+            }
+            if (seenEvents.size() > SEEN_CAPACITY) {
+                seenEvents.remove(seenEvents.iterator().next());
+            }
+
+            if (databaseManager.getServerId().equals(event.getServerId())) {
+                continue;
+            }
+
+            switch (event.getType()) {
+                case CREATE:
+                    sessionManager.applyRemoteSession(event.getUsername());
+                    break;
+                case INVALIDATE:
+                    sessionManager.applyRemoteInvalidation(event.getUsername(), event.getSessionHash());
+                    break;
+            }
+            appliedEvents++;
+        }
+    }
+
+    public void stop() {
+        running = false;
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    public long getLastEventId() {
+        return lastEventId;
+    }
+
+    public long getAppliedEvents() {
+        return appliedEvents;
+    }
+}
@@ -2,95 +2,378 @@ package org.alex_melan.secureAuth.managers;
 
 import org.alex_melan.secureAuth.SecureAuthPlugin;
 import org.alex_melan.secureAuth.database.DatabaseManager;
+import org.alex_melan.secureAuth.models.SessionData;
+import org.alex_melan.secureAuth.utils.ExpiryQueue;
+import org.alex_melan.secureAuth.utils.SessionTokenService;
 import org.bukkit.Bukkit;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.TimeUnit;
 
 public class SessionManager {
 
     private final SecureAuthPlugin plugin;
     private final DatabaseManager databaseManager;
-    private final Map<String, String> activeSessions = new ConcurrentHashMap<>();
+
+    // Интервал повторной проверки истёкшей сессии онлайн игрока
+    private static final long ONLINE_RECHECK_MILLIS = 60 * 1000;
+
+    // ИСПРАВЛЕНО: Полные данные сессий в памяти - основная таблица сессий,
+    // изменения записываются в БД асинхронно
+    private final Map<String, SessionData> activeSessions = new ConcurrentHashMap<>();
     private final Map<String, Long> loginAttempts = new ConcurrentHashMap<>();
     private final Map<String, Integer> attemptCounts = new ConcurrentHashMap<>();
 
+    // НОВОЕ: Сроки истечения сессий (по имени игрока) и блокировок входа (по IP).
+    // Обрабатываются только наступившие сроки, без обхода всех записей
+    private final ExpiryQueue<String> sessionExpiry = new ExpiryQueue<>();
+    private final ExpiryQueue<String> lockoutExpiry = new ExpiryQueue<>();
+
+    // НОВОЕ: Состояние авторизации подключённых игроков
+    private final Map<String, AuthSession> authSessions = new ConcurrentHashMap<>();
+
+    // НОВОЕ: Сессии с активностью, ещё не записанной в БД
+    private final Set<SessionData> dirtyActivity = ConcurrentHashMap.newKeySet();
+
+    // НОВОЕ: Лимит частоты попыток входа до проверки пароля
+    private static final long RATE_LIMIT_CLEANUP_MILLIS = 60 * 1000;
+    private final LoginRateLimiter loginRateLimiter;
+    private long lastRateLimitCleanup = System.currentTimeMillis();
+
     public SessionManager(SecureAuthPlugin plugin, DatabaseManager databaseManager) {
         this.plugin = plugin;
         this.databaseManager = databaseManager;
+        this.loginRateLimiter = new LoginRateLimiter(plugin.getConfigManager());
+    }
+
+    /**
+     * Загрузка действующих сессий из БД при запуске
+     * (сохраняются между перезапусками, если session.invalidate-on-shutdown выключен)
+     */
+    public CompletableFuture<Void> loadActiveSessions() {
+        return databaseManager.loadActiveSessions().thenAccept(sessions -> {
+            int legacy = 0;
+            for (SessionData session : sessions) {
+                // Сессии отсортированы по времени создания - остаётся самая новая
+                track(session);
+                if (SessionTokenService.isLegacyHash(session.getSessionHash())) {
+                    legacy++;
+                }
+            }
+
+            if (!sessions.isEmpty()) {
+                plugin.getLogger().info("Загружено " + activeSessions.size() + " активных сессий");
+            }
+            if (legacy > 0) {
+                // Старые хеши BCrypt сравниваются как обычные идентификаторы и истекут сами
+                plugin.getLogger().info("Сессий со старым хешем BCrypt: " + legacy);
+            }
+        }).thenCompose(ignored -> databaseManager.cleanExpiredSessions());
+    }
+
+    private void track(SessionData session) {
+        String key = session.getUsername().toLowerCase();
+        activeSessions.put(key, session);
+        sessionExpiry.schedule(key, session.getExpiresAt());
     }
 
     public CompletableFuture<Boolean> createSession(String username, String ipAddress) {
-        if (isRapidIpChange(username, ipAddress)) {
-            plugin.getLogger().warning("Быстрая смена IP для пользователя " + username + ": " + ipAddress);
-            return CompletableFuture.completedFuture(false);
-        }
+        // ИСПРАВЛЕНО: проверка смены IP встроена в цепочку, без блокирующего get()
+        return isRapidIpChange(username, ipAddress).thenCompose(rapid -> {
+            if (rapid) {
+                plugin.getLogger().warning("Быстрая смена IP для пользователя " + username + ": " + ipAddress);
+                return CompletableFuture.completedFuture(false);
+            }
 
-        return databaseManager.createSession(username, ipAddress)
-                .thenApply(sessionHash -> {
-                    if (sessionHash != null) {
-                        activeSessions.put(username.toLowerCase(), sessionHash);
-                        plugin.getLogger().info("Создана сессия для пользователя " + username + " с IP " + ipAddress);
-                        return true;
-                    }
-                    plugin.getLogger().warning("Не удалось создать сессию для пользователя " + username);
-                    return false;
-                });
+            return databaseManager.createSession(username, ipAddress)
+                    .thenApply(session -> {
+                        if (session != null) {
+                            track(session);
+                            plugin.getLogger().info("Создана сессия для пользователя " + username + " с IP " + ipAddress);
+                            return true;
+                        }
+                        plugin.getLogger().warning("Не удалось создать сессию для пользователя " + username);
+                        return false;
+                    });
+        });
     }
 
+    /**
+     * Учёт сессии, уже записанной в БД при входе (см. DatabaseManager.login)
+     */
+    public void registerSession(SessionData session) {
+        track(session);
+        plugin.getLogger().info("Создана сессия для пользователя " + session.getUsername() + " с IP " + session.getIpAddress());
+    }
+
+    /**
+     * Проверка сессии при входе на сервер. Выполняется в памяти, без обращения к БД
+     */
     public CompletableFuture<Boolean> validateSession(String username, String ipAddress) {
-        String sessionHash = activeSessions.get(username.toLowerCase());
-        if (sessionHash == null) {
-            return CompletableFuture.completedFuture(false);
+        return validateSession(username, ipAddress, true);
+    }
+
+    /**
+     * ИСПРАВЛЕНО: Проверка сессии без изменений (предварительный вход): активность не отмечается
+     * и недействительная сессия не удаляется - вход могут отклонить позже. При входе в мир
+     * сессия подтверждается через confirmSession
+     */
+    public CompletableFuture<Boolean> peekSession(String username, String ipAddress) {
+        return validateSession(username, ipAddress, false);
+    }
+
+    /**
+     * Подтверждение сессии при входе в мир после peekSession (в памяти, без обращения к БД)
+     */
+    public boolean confirmSession(String username, String ipAddress) {
+        return checkSession(username, activeSessions.get(username.toLowerCase()), ipAddress, true);
+    }
+
+    private CompletableFuture<Boolean> validateSession(String username, String ipAddress, boolean touch) {
+        SessionData session = activeSessions.get(username.toLowerCase());
+        if (session == null) {
+            if (!databaseManager.isNetworkMode()) {
+                return CompletableFuture.completedFuture(false);
+            }
+
+            // НОВОЕ: В режиме сети сессию мог создать другой сервер - читаем общую БД
+            return databaseManager.findActiveSession(username).thenApply(shared -> {
+                if (shared == null) {
+                    return false;
+                }
+                activeSessions.putIfAbsent(username.toLowerCase(), shared);
+                sessionExpiry.schedule(username.toLowerCase(), shared.getExpiresAt());
+                return checkSession(username, activeSessions.get(username.toLowerCase()), ipAddress, touch);
+            });
         }
 
-        return databaseManager.validateSession(sessionHash, username, ipAddress)
-                .thenApply(valid -> {
-                    if (!valid) {
-                        activeSessions.remove(username.toLowerCase());
-                        plugin.getLogger().info("Недействительная сессия удалена для пользователя " + username);
-                    }
-                    return valid;
-                });
+        return CompletableFuture.completedFuture(checkSession(username, session, ipAddress, touch));
+    }
+
+    private boolean checkSession(String username, SessionData session, String ipAddress, boolean touch) {
+        if (session == null) {
+            return false;
+        }
+
+        if (session.isExpired() || !session.isValidForIp(ipAddress)) {
+            if (!touch) {
+                return false;
+            }
+            // remove(key, value): сессию, созданную параллельно, не трогаем
+            if (activeSessions.remove(username.toLowerCase(), session)) {
+                databaseManager.invalidateSession(session.getSessionHash());
+                plugin.getLogger().info("Недействительная сессия удалена для пользователя " + username);
+            }
+            return false;
+        }
+        if (!touch) {
+            return true;
+        }
+
+        // ИСПРАВЛЕНО: активность только отмечается в памяти, запись - пакетом в flushActivity
+        session.touch(System.currentTimeMillis());
+        if (plugin.getConfigManager().isSessionActivityPersisted()) {
+            dirtyActivity.add(session);
+        }
+        return true;
+    }
+
+    /**
+     * НОВОЕ: Другой сервер сети создал сессию игроку - подменяем локальную копию
+     */
+    public void applyRemoteSession(String username) {
+        databaseManager.findActiveSession(username).thenAccept(session -> {
+            if (session != null) {
+                track(session);
+            } else {
+                activeSessions.remove(username.toLowerCase());
+            }
+        });
+    }
+
+    /**
+     * НОВОЕ: Другой сервер сети деактивировал сессию (выход, принудительный выход).
+     * БД уже обновлена, меняется только локальная копия
+     * @param sessionHash хеш сессии или null для всех сессий игрока
+     */
+    public void applyRemoteInvalidation(String username, String sessionHash) {
+        String key = username.toLowerCase();
+        SessionData session = activeSessions.get(key);
+        if (session == null || (sessionHash != null && !sessionHash.equals(session.getSessionHash()))) {
+            return;
+        }
+
+        if (!activeSessions.remove(key, session)) {
+            return;
+        }
+        markUnauthenticated(username);
+
+        // Игрок может быть на этом сервере (принудительный выход с другого сервера)
+        Bukkit.getScheduler().runTask(plugin, () -> {
+            org.bukkit.entity.Player player = Bukkit.getPlayerExact(username);
+            if (player != null) {
+                plugin.getLobbyManager().sendToAuthLobby(player);
+                player.sendMessage(plugin.getConfigManager().getMessage("force-logout"));
+            }
+        });
+    }
+
+    /**
+     * Запись накопленной активности сессий одним пакетом (таймер и выключение сервера)
+     */
+    public CompletableFuture<Void> flushActivity() {
+        if (dirtyActivity.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        Map<String, Long> activity = new HashMap<>();
+        Iterator<SessionData> iterator = dirtyActivity.iterator();
+        while (iterator.hasNext()) {
+            SessionData session = iterator.next();
+            // Удаляем до чтения: отметка, сделанная после, попадёт в следующий пакет
+            iterator.remove();
+            activity.put(session.getSessionHash(), session.getLastActivity());
+        }
+
+        return databaseManager.updateSessionActivity(activity);
     }
 
     public void invalidateSession(String username) {
-        String sessionHash = activeSessions.remove(username.toLowerCase());
-        if (sessionHash != null) {
-            databaseManager.invalidateSession(sessionHash);
+        markUnauthenticated(username);
+        SessionData session = activeSessions.remove(username.toLowerCase());
+        if (session != null) {
+            if (dirtyActivity.remove(session)) {
+                databaseManager.updateSessionActivity(Map.of(session.getSessionHash(), session.getLastActivity()));
+            }
+            databaseManager.invalidateSession(session.getSessionHash());
             plugin.getLogger().info("Сессия деактивирована для пользователя " + username);
         }
     }
 
     public void invalidateAllSessions() {
         plugin.getLogger().info("Деактивация всех активных сессий...");
-        for (String sessionHash : activeSessions.values()) {
-            databaseManager.invalidateSession(sessionHash);
+        for (SessionData session : activeSessions.values()) {
+            databaseManager.invalidateSession(session.getSessionHash());
         }
         activeSessions.clear();
+        sessionExpiry.clear();
         plugin.getLogger().info("Все сессии деактивированы");
     }
 
+    /**
+     * НОВОЕ: Новое состояние авторизации при входе игрока в мир
+     */
+    public AuthSession openAuthSession(String username) {
+        AuthSession session = new AuthSession(plugin, username);
+        AuthSession previous = authSessions.put(username.toLowerCase(), session);
+        if (previous != null) {
+            previous.close();
+        }
+        return session;
+    }
+
+    /**
+     * Состояние авторизации игрока (создаётся, если игрок подключился до загрузки плагина)
+     */
+    public AuthSession getAuthSession(String username) {
+        return authSessions.computeIfAbsent(username.toLowerCase(), key -> {
+            AuthSession session = new AuthSession(plugin, username);
+            session.set(AuthSession.State.UNAUTHENTICATED);
+            return session;
+        });
+    }
+
+    /**
+     * Выход игрока: незавершённые операции больше не передают результат в основной поток
+     */
+    public void closeAuthSession(String username) {
+        AuthSession session = authSessions.remove(username.toLowerCase());
+        if (session != null) {
+            session.close();
+        }
+    }
+
+    private void markUnauthenticated(String username) {
+        AuthSession session = authSessions.get(username.toLowerCase());
+        if (session != null) {
+            session.set(AuthSession.State.UNAUTHENTICATED);
+        }
+    }
+
+    /**
+     * ИСПРАВЛЕНО: Авторизация подключённого игрока определяется его состоянием (AuthSession),
+     * а не наличием сессии: сессия есть и у игрока, вход которого ещё проверяется
+     */
     public boolean isAuthenticated(String username) {
-        return activeSessions.containsKey(username.toLowerCase());
+        AuthSession session = authSessions.get(username.toLowerCase());
+        return session != null && session.isAuthenticated();
     }
 
+
     /**
-     * Помечает игрока как авторизованного (для восстановления сессий)
+     * НОВОЕ: Обработка наступивших сроков сессий и блокировок входа (таймер раз в секунду).
+     * Стоимость пропорциональна числу истёкших записей, а не размеру кеша
      */
-    public void markAsAuthenticated(String username) {
-        // Создаем временную сессию в памяти при восстановлении
-        if (!activeSessions.containsKey(username.toLowerCase())) {
-            activeSessions.put(username.toLowerCase(), "restored");
-            plugin.getLogger().fine("Игрок " + username + " помечен как авторизованный при восстановлении сессии");
+    public void expireDue() {
+        long now = System.currentTimeMillis();
+
+        List<String> expiredHashes = new ArrayList<>();
+        for (String username : sessionExpiry.pollExpired(now)) {
+            SessionData session = activeSessions.get(username);
+            if (session == null) {
+                // Сессия уже деактивирована
+                continue;
+            }
+
+            if (!session.isExpired()) {
+                // Сессия заменена новой - ждём её срока
+                sessionExpiry.schedule(username, session.getExpiresAt());
+                continue;
+            }
+
+            // КРИТИЧНО: НЕ трогаем сессии онлайн игроков, проверяем снова позже
+            if (Bukkit.getPlayerExact(username) != null) {
+                sessionExpiry.schedule(username, now + ONLINE_RECHECK_MILLIS);
+                continue;
+            }
+
+            if (activeSessions.remove(username, session)) {
+                expiredHashes.add(session.getSessionHash());
+            }
+        }
+
+        if (!expiredHashes.isEmpty()) {
+            databaseManager.invalidateSessions(expiredHashes);
+            plugin.getLogger().fine("Истекло сессий: " + expiredHashes.size());
+        }
+
+        long blockDuration = plugin.getConfigManager().getLoginBlockDuration();
+        for (String ipAddress : lockoutExpiry.pollExpired(now)) {
+            // Попытка после извлечения срока назначила новый - запись не трогаем
+            Long lastAttempt = loginAttempts.get(ipAddress);
+            if (lastAttempt != null && now - lastAttempt >= blockDuration
+                    && loginAttempts.remove(ipAddress, lastAttempt)) {
+                attemptCounts.remove(ipAddress);
+            }
+        }
+
+        // Полные корзины лимита попыток больше не нужны
+        if (now - lastRateLimitCleanup >= RATE_LIMIT_CLEANUP_MILLIS) {
+            lastRateLimitCleanup = now;
+            loginRateLimiter.cleanup();
         }
     }
 
+    /**
+     * Полная очистка просроченных сессий (команда /secureauth cleanup)
+     */
     public void cleanExpiredSessions() {
         plugin.getLogger().info("Запуск очистки просроченных сессий...");
 
@@ -100,96 +383,78 @@ public class SessionManager {
             onlinePlayers.add(player.getName().toLowerCase());
         }
 
-        // Очищаем только просроченные сессии в БД
-        databaseManager.cleanExpiredSessions().thenRun(() -> {
-            plugin.getLogger().info("Очистка просроченных сессий в БД завершена");
+        // ИСПРАВЛЕНО: просроченные сессии определяются по данным в памяти, без запросов к БД
+        int removedFromCache = 0;
+        Iterator<Map.Entry<String, SessionData>> iterator = activeSessions.entrySet().iterator();
 
-            // ИСПРАВЛЕНО: Очищаем из кеша только сессии ОФЛАЙН игроков, которые не в БД
-            int removedFromCache = 0;
-            Iterator<Map.Entry<String, String>> iterator = activeSessions.entrySet().iterator();
-
-            while (iterator.hasNext()) {
-                Map.Entry<String, String> entry = iterator.next();
-                String username = entry.getKey();
-
-                // КРИТИЧНО: НЕ трогаем сессии онлайн игроков!
-                if (onlinePlayers.contains(username)) {
-                    plugin.getLogger().fine("Пропускаем активную сессию онлайн игрока: " + username);
-                    continue;
-                }
+        while (iterator.hasNext()) {
+            Map.Entry<String, SessionData> entry = iterator.next();
 
-                // Проверяем только офлайн игроков
-                org.bukkit.entity.Player player = Bukkit.getPlayerExact(username);
-                if (player == null || !player.isOnline()) {
-                    // Игрок офлайн - можем проверить его сессию в БД
-                    String sessionHash = entry.getValue();
-
-                    // Получаем IP из базы для проверки (асинхронно)
-                    CompletableFuture<Boolean> validationFuture = plugin.getDatabaseManager()
-                            .getPlayerData(username)
-                            .thenCompose(data -> {
-                                if (data != null && data.getLastIp() != null) {
-                                    return plugin.getDatabaseManager()
-                                            .validateSession(sessionHash, username, data.getLastIp());
-                                }
-                                return CompletableFuture.completedFuture(false);
-                            });
-
-                    try {
-                        // Ждем результат (это уже в async задаче)
-                        boolean isValid = validationFuture.get(5, TimeUnit.SECONDS);
-
-                        if (!isValid) {
-                            iterator.remove();
-                            removedFromCache++;
-                            plugin.getLogger().fine("Удалена недействительная сессия из кеша: " + username);
-                        }
-                    } catch (Exception e) {
-                        // В случае ошибки НЕ удаляем сессию - безопаснее
-                        plugin.getLogger().warning("Ошибка проверки сессии при очистке для офлайн игрока " +
-                                username + ": " + e.getMessage());
-                    }
-                }
+            // КРИТИЧНО: НЕ трогаем сессии онлайн игроков!
+            if (onlinePlayers.contains(entry.getKey())) {
+                continue;
             }
 
-            if (removedFromCache > 0) {
-                plugin.getLogger().info("Удалено " + removedFromCache + " недействительных сессий из кеша");
+            if (entry.getValue().isExpired()) {
+                iterator.remove();
+                removedFromCache++;
+                plugin.getLogger().fine("Удалена просроченная сессия из кеша: " + entry.getKey());
             }
-        }).exceptionally(ex -> {
-            plugin.getLogger().severe("Ошибка при очистке просроченных сессий: " + ex.getMessage());
-            return null;
-        });
-    }
+        }
 
-    private boolean isRapidIpChange(String username, String ipAddress) {
-        if (!plugin.getConfigManager().isIpCheckEnabled()) {
-            return false;
+        if (removedFromCache > 0) {
+            plugin.getLogger().info("Удалено " + removedFromCache + " просроченных сессий из кеша");
         }
 
-        try {
-            return plugin.getAuthManager().loadPlayerData(username)
-                    .thenApply(data -> {
-                        if (data != null && data.getLastIp() != null) {
-                            if (!data.getLastIp().equals(ipAddress)) {
-                                long timeSinceLastLogin = System.currentTimeMillis() - data.getLastLogin();
-                                boolean isRapid = timeSinceLastLogin < plugin.getConfigManager().getIpChangeGracePeriod();
+        // Сессии в БД деактивируются одним запросом
+        databaseManager.cleanExpiredSessions()
+                .thenRun(() -> plugin.getLogger().info("Очистка просроченных сессий в БД завершена"))
+                .exceptionally(ex -> {
+                    plugin.getLogger().severe("Ошибка при очистке просроченных сессий: " + ex.getMessage());
+                    return null;
+                });
+    }
 
-                                if (isRapid) {
-                                    plugin.getLogger().warning(String.format(
-                                            "Быстрая смена IP для %s: %s -> %s (прошло %d мс)",
-                                            username, data.getLastIp(), ipAddress, timeSinceLastLogin
-                                    ));
-                                }
+    private CompletableFuture<Boolean> isRapidIpChange(String username, String ipAddress) {
+        if (!plugin.getConfigManager().isIpCheckEnabled()) {
+            return CompletableFuture.completedFuture(false);
+        }
 
-                                return isRapid;
+        // ИСПРАВЛЕНО: нужны только last_ip и last_login, полный профиль не загружается
+        return databaseManager.getPlayerSummary(username)
+                .thenApply(data -> {
+                    if (data != null && data.getLastIp() != null) {
+                        if (!data.getLastIp().equals(ipAddress)) {
+                            long timeSinceLastLogin = System.currentTimeMillis() - data.getLastLogin();
+                            boolean isRapid = timeSinceLastLogin < plugin.getConfigManager().getIpChangeGracePeriod();
+
+                            if (isRapid) {
+                                plugin.getLogger().warning(String.format(
+                                        "Быстрая смена IP для %s: %s -> %s (прошло %d мс)",
+                                        username, data.getLastIp(), ipAddress, timeSinceLastLogin
+                                ));
                             }
+
+                            return isRapid;
                         }
-                        return false;
-                    }).get(); // Синхронный результат
-        } catch (Exception e) {
-            plugin.getLogger().warning("Ошибка проверки смены IP для " + username + ": " + e.getMessage());
-            return false; // В случае ошибки разрешаем вход
-        }
+                    }
+                    return false;
+                })
+                .exceptionally(ex -> {
+                    plugin.getLogger().warning("Ошибка проверки смены IP для " + username + ": " + ex.getMessage());
+                    return false; // В случае ошибки разрешаем вход
+                });
+    }
+
+    /**
+     * НОВОЕ: Допуск попытки входа или регистрации до проверки пароля
+     */
+    public LoginRateLimiter.Decision checkLoginRate(String ipAddress, String username) {
+        return loginRateLimiter.tryAcquire(ipAddress, username);
+    }
+
+    public LoginRateLimiter getLoginRateLimiter() {
+        return loginRateLimiter;
     }
 
     public boolean isLoginBlocked(String ipAddress) {
@@ -222,8 +487,14 @@ public class SessionManager {
         return blocked;
     }
 
-    public void recordFailedLogin(String ipAddress) {
-        loginAttempts.put(ipAddress, System.currentTimeMillis());
+    /**
+     * Учёт неудачной попытки входа с IP
+     * @return номер попытки для этого IP
+     */
+    public int recordFailedLogin(String ipAddress) {
+        long now = System.currentTimeMillis();
+        loginAttempts.put(ipAddress, now);
+        lockoutExpiry.schedule(ipAddress, now + plugin.getConfigManager().getLoginBlockDuration());
         int newCount = attemptCounts.merge(ipAddress, 1, Integer::sum);
 
         plugin.getLogger().warning(String.format(
@@ -231,11 +502,9 @@ public class SessionManager {
                 ipAddress, newCount, plugin.getConfigManager().getMaxLoginAttempts()
         ));
 
-        // Логируем в базу данных
-        if (plugin.getConfigManager().isLogFailedLogins()) {
-            databaseManager.logSecurityAction(null, ipAddress, "FAILED_LOGIN", false,
-                    "Failed login attempt " + newCount + "/" + plugin.getConfigManager().getMaxLoginAttempts());
-        }
+        // ИСПРАВЛЕНО: запись FAILED_LOGIN в базу делает вызывающий код (AuthCommand),
+        // здесь она дублировала то же событие без имени игрока
+        return newCount;
     }
 
     public void clearFailedLogins(String ipAddress) {
@@ -270,7 +539,15 @@ public class SessionManager {
 
     // Принудительная разлогинизация пользователя
     public void forceLogout(String username) {
-        invalidateSession(username);
+        if (databaseManager.isNetworkMode()) {
+            // Сессии игрока могут отсутствовать в локальном кеше - деактивируем все в общей БД,
+            // остальные серверы получат событие
+            markUnauthenticated(username);
+            activeSessions.remove(username.toLowerCase());
+            databaseManager.invalidateUserSessions(username);
+        } else {
+            invalidateSession(username);
+        }
 
         // Отправляем игрока в лобби если он онлайн
         org.bukkit.entity.Player player = Bukkit.getPlayerExact(username);
@@ -299,12 +576,16 @@ public class SessionManager {
 
     // Получение информации о сессии пользователя
     public String getSessionInfo(String username) {
-        String sessionHash = activeSessions.get(username.toLowerCase());
-        if (sessionHash == null) {
+        SessionData session = activeSessions.get(username.toLowerCase());
+        if (session == null) {
             return null;
         }
 
-        return "Сессия: " + sessionHash.substring(0, 8) + "...";
+        return "Сессия: " + session.getSessionHash().substring(0, 8) + "...";
+    }
+
+    public SessionData getSession(String username) {
+        return activeSessions.get(username.toLowerCase());
     }
 
     /**
@@ -320,20 +601,15 @@ public class SessionManager {
             return;
         }
 
-        // Деактивируем все сессии синхронно
-        for (Map.Entry<String, String> entry : activeSessions.entrySet()) {
-            String username = entry.getKey();
-            String sessionHash = entry.getValue();
-
-            try {
-                // Вызываем синхронный метод деактивации
-                databaseManager.invalidateSessionSync(sessionHash);
-            } catch (Exception e) {
-                plugin.getLogger().warning("Ошибка деактивации сессии для " + username + ": " + e.getMessage());
-            }
+        // ИСПРАВЛЕНО: все сессии одной транзакцией через поток записи, с ожиданием
+        List<String> sessionHashes = new ArrayList<>(count);
+        for (SessionData session : activeSessions.values()) {
+            sessionHashes.add(session.getSessionHash());
         }
+        databaseManager.invalidateSessionsSync(sessionHashes);
 
         activeSessions.clear();
+        sessionExpiry.clear();
         plugin.getLogger().info("Деактивировано " + count + " сессий");
     }
 }
\ No newline at end of file
@@ -0,0 +1,48 @@
+package org.alex_melan.secureAuth.models;
+
+import org.alex_melan.secureAuth.utils.PasswordHasher;
+
+import java.util.Collections;
+import java.util.Map;
+
+// Результат калибровки стоимости хеширования паролей на этом сервере
+public class HashCalibration {
+
+    private final PasswordHasher hasher;
+    private final String parameters;
+    private final double hashMillis;
+    private final long budgetMillis;
+    private final Map<String, Double> measurements;
+    private final boolean applied;
+    private final long calibratedAt;
+
+    public HashCalibration(PasswordHasher hasher, String parameters, double hashMillis, long budgetMillis,
+                           Map<String, Double> measurements, boolean applied, long calibratedAt) {
+        this.hasher = hasher;
+        this.parameters = parameters;
+        this.hashMillis = hashMillis;
+        this.budgetMillis = budgetMillis;
+        this.measurements = Collections.unmodifiableMap(measurements);
+        this.applied = applied;
+        this.calibratedAt = calibratedAt;
+    }
+
+    public HashCalibration withApplied(boolean applied) {
+        return new HashCalibration(hasher, parameters, hashMillis, budgetMillis, measurements, applied, calibratedAt);
+    }
+
+    // Геттеры
+    public String getAlgorithm() { return hasher.getName(); }
+    /** Хешер с выбранными параметрами */
+    public PasswordHasher getHasher() { return hasher; }
+    /** Выбранные параметры в виде ключей конфига, например "bcrypt-rounds: 12" */
+    public String getParameters() { return parameters; }
+    /** Время одного хеша с выбранными параметрами */
+    public double getHashMillis() { return hashMillis; }
+    /** Допустимое время одного хеша с учётом ожидаемого числа входов */
+    public long getBudgetMillis() { return budgetMillis; }
+    /** Измеренное время для каждого проверенного значения параметра */
+    public Map<String, Double> getMeasurements() { return measurements; }
+    public boolean isApplied() { return applied; }
+    public long getCalibratedAt() { return calibratedAt; }
+}
@@ -0,0 +1,46 @@
+package org.alex_melan.secureAuth.models;
+
+// Результат входа: проверка пароля, профиль игрока и созданная сессия за одну операцию
+public class LoginResult {
+
+    public enum Status {
+        SUCCESS,
+        NOT_REGISTERED,
+        WRONG_PASSWORD,
+        RAPID_IP_CHANGE,
+        // Пул хеширования паролей перегружен, попытка не выполнялась
+        BUSY,
+        ERROR
+    }
+
+    private final Status status;
+    private final PlayerData playerData;
+    private final SessionData session;
+    // НОВОЕ: Хеш пароля, пересчитанный с текущими параметрами (null - обновление не требуется)
+    private final String upgradedPasswordHash;
+
+    private LoginResult(Status status, PlayerData playerData, SessionData session, String upgradedPasswordHash) {
+        this.status = status;
+        this.playerData = playerData;
+        this.session = session;
+        this.upgradedPasswordHash = upgradedPasswordHash;
+    }
+
+    public static LoginResult success(PlayerData playerData, SessionData session, String upgradedPasswordHash) {
+        return new LoginResult(Status.SUCCESS, playerData, session, upgradedPasswordHash);
+    }
+
+    public static LoginResult failure(Status status) {
+        return new LoginResult(status, null, null, null);
+    }
+
+    public boolean isSuccess() {
+        return status == Status.SUCCESS;
+    }
+
+    // Геттеры
+    public Status getStatus() { return status; }
+    public PlayerData getPlayerData() { return playerData; }
+    public SessionData getSession() { return session; }
+    public String getUpgradedPasswordHash() { return upgradedPasswordHash; }
+}
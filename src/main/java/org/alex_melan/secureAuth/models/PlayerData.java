@@ -1,22 +1,22 @@
 package org.alex_melan.secureAuth.models;
 
+import org.alex_melan.secureAuth.utils.InventoryCodec;
+import org.alex_melan.secureAuth.utils.ProfileCodec;
 import org.bukkit.Bukkit;
 import org.bukkit.GameMode;
 import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
-import org.bukkit.util.io.BukkitObjectInputStream;
-import org.bukkit.util.io.BukkitObjectOutputStream;
 import org.yaml.snakeyaml.external.biz.base64Coder.Base64Coder;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -59,6 +59,57 @@ public class PlayerData {
     private long createdAt;
     private long updatedAt;
 
+    // НОВОЕ: Колонки, изменённые с момента последней записи в БД (битовая маска Column)
+    private final AtomicInteger dirtyColumns = new AtomicInteger();
+    // НОВОЕ: Момент последнего применённого снимка (System.nanoTime)
+    private long lastSnapshotAt = Long.MIN_VALUE;
+
+    /**
+     * Сохраняемые колонки таблицы players, для которых отслеживаются изменения
+     */
+    public enum Column {
+        WORLD_NAME("world_name"),
+        X("x"),
+        Y("y"),
+        Z("z"),
+        YAW("yaw"),
+        PITCH("pitch"),
+        INVENTORY("inventory_data", "inventory_blob", ProfileCodec.TYPE_BASE64),
+        ENDERCHEST("enderchest_data", "enderchest_blob", ProfileCodec.TYPE_BASE64),
+        EXPERIENCE("experience"),
+        LEVEL("level"),
+        HEALTH("health"),
+        FOOD("food"),
+        SATURATION("saturation"),
+        GAME_MODE("game_mode"),
+        ADVANCEMENTS("advancements_data", "advancements_blob", ProfileCodec.TYPE_TEXT),
+        STATISTICS("statistics_data", "statistics_blob", ProfileCodec.TYPE_TEXT),
+        RECIPES("recipes_data", "recipes_blob", ProfileCodec.TYPE_TEXT),
+        POTION_EFFECTS("potion_effects_data", "potion_effects_blob", ProfileCodec.TYPE_TEXT);
+
+        private final String columnName;
+        // НОВОЕ: Сжатая колонка (см. ProfileCodec), текстовая колонка остаётся для старых записей
+        private final String blobColumnName;
+        private final byte blobType;
+
+        Column(String columnName) {
+            this(columnName, null, ProfileCodec.TYPE_TEXT);
+        }
+
+        Column(String columnName, String blobColumnName, byte blobType) {
+            this.columnName = columnName;
+            this.blobColumnName = blobColumnName;
+            this.blobType = blobType;
+        }
+
+        public String getColumnName() { return columnName; }
+        public String getBlobColumnName() { return blobColumnName; }
+        public byte getBlobType() { return blobType; }
+        public boolean isCompressed() { return blobColumnName != null; }
+        public int mask() { return 1 << ordinal(); }
+        public boolean isIn(int mask) { return (mask & mask()) != 0; }
+    }
+
     public PlayerData(String username) {
         this.username = username.toLowerCase();
         this.gameMode = "SURVIVAL";
@@ -105,8 +156,8 @@ public class PlayerData {
         data.yaw = rs.getFloat("yaw");
         data.pitch = rs.getFloat("pitch");
 
-        data.inventoryData = rs.getString("inventory_data");
-        data.enderchestData = rs.getString("enderchest_data");
+        data.inventoryData = readCompressed(rs, Column.INVENTORY, data.username);
+        data.enderchestData = readCompressed(rs, Column.ENDERCHEST, data.username);
         data.experience = rs.getInt("experience");
         data.level = rs.getInt("level");
         data.health = rs.getDouble("health");
@@ -119,21 +170,10 @@ public class PlayerData {
         }
 
         // НОВОЕ: Загрузка расширенных данных
-        try {
-            data.advancementsData = rs.getString("advancements_data");
-        } catch (SQLException ignored) {}
-
-        try {
-            data.statisticsData = rs.getString("statistics_data");
-        } catch (SQLException ignored) {}
-
-        try {
-            data.recipesData = rs.getString("recipes_data");
-        } catch (SQLException ignored) {}
-
-        try {
-            data.potionEffectsData = rs.getString("potion_effects_data");
-        } catch (SQLException ignored) {}
+        data.advancementsData = readCompressed(rs, Column.ADVANCEMENTS, data.username);
+        data.statisticsData = readCompressed(rs, Column.STATISTICS, data.username);
+        data.recipesData = readCompressed(rs, Column.RECIPES, data.username);
+        data.potionEffectsData = readCompressed(rs, Column.POTION_EFFECTS, data.username);
 
         data.createdAt = rs.getLong("created_at");
         data.updatedAt = rs.getLong("updated_at");
@@ -141,34 +181,68 @@ public class PlayerData {
         return data;
     }
 
-    public void saveFromPlayer(Player player) {
+    /**
+     * Чтение большой колонки: сжатое значение, если оно есть, иначе текст старого формата
+     */
+    private static String readCompressed(ResultSet rs, Column column, String username) {
         try {
-            Location loc = player.getLocation();
-            this.worldName = loc.getWorld().getName();
-            this.x = loc.getX();
-            this.y = loc.getY();
-            this.z = loc.getZ();
-            this.yaw = loc.getYaw();
-            this.pitch = loc.getPitch();
-
-            this.inventoryData = serializeInventory(player.getInventory().getContents());
-            this.enderchestData = serializeInventory(player.getEnderChest().getContents());
-            this.experience = player.getTotalExperience();
-            this.level = player.getLevel();
-            this.health = player.getHealth();
-            this.food = player.getFoodLevel();
-            this.saturation = player.getSaturation();
-            this.gameMode = player.getGameMode().name();
-
-            // НОВОЕ: Сохранение расширенных данных
-            this.advancementsData = serializeAdvancements(player);
-            this.statisticsData = serializeStatistics(player);
-            this.recipesData = serializeRecipes(player);
-            this.potionEffectsData = serializePotionEffects(player);
+            byte[] blob = rs.getBytes(column.getBlobColumnName());
+            if (blob != null) {
+                return ProfileCodec.decode(blob);
+            }
+        } catch (SQLException ignored) {
+            // Колонки ещё нет (до миграции)
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Повреждённые данные " + column.getBlobColumnName() + " у игрока " + username, e);
+        }
+
+        try {
+            return rs.getString(column.getColumnName());
+        } catch (SQLException ignored) {
+            return null;
+        }
+    }
+
+    /**
+     * ИСПРАВЛЕНО: Перенос снимка игрока в данные профиля. Снимок делается в основном потоке
+     * (PlayerSnapshot.capture), а сериализация инвентарей и прогресса выполняется здесь,
+     * в любом потоке. Значения проходят через сеттеры, чтобы помечались только реально изменённые колонки
+     * @return false если уже применён более новый снимок
+     */
+    public synchronized boolean applySnapshot(PlayerSnapshot snapshot) {
+        if (snapshot.getCapturedAt() < lastSnapshotAt) {
+            return false;
+        }
+        lastSnapshotAt = snapshot.getCapturedAt();
+
+        try {
+            setWorldName(snapshot.getWorldName());
+            setX(snapshot.getX());
+            setY(snapshot.getY());
+            setZ(snapshot.getZ());
+            setYaw(snapshot.getYaw());
+            setPitch(snapshot.getPitch());
+
+            setInventoryData(serializeInventory(snapshot.getInventory()));
+            setEnderchestData(serializeInventory(snapshot.getEnderchest()));
+            setExperience(snapshot.getExperience());
+            setLevel(snapshot.getLevel());
+            setHealth(snapshot.getHealth());
+            setFood(snapshot.getFood());
+            setSaturation(snapshot.getSaturation());
+            setGameMode(snapshot.getGameMode());
+            setPotionEffectsData(serializePotionEffects(snapshot.getPotionEffects()));
+
+            // НОВОЕ: Сохранение расширенных данных (если снимок их содержит)
+            if (snapshot.hasProgress()) {
+                setAdvancementsData(serializeProgress(snapshot.getAdvancements(), "достижений"));
+                setStatisticsData(serializeProgress(snapshot.getStatistics(), "статистики"));
+                setRecipesData(serializeProgress(snapshot.getRecipes(), "рецептов"));
+            }
 
             this.updatedAt = System.currentTimeMillis();
 
-            LOGGER.info("Данные игрока " + username + " сохранены полностью: " +
+            LOGGER.info("Данные игрока " + username + " сохранены " + (snapshot.hasProgress() ? "полностью" : "без прогресса") + ": " +
                     "мир=" + worldName +
                     ", координаты=(" + Math.round(x) + "," + Math.round(y) + "," + Math.round(z) + ")" +
                     ", режим=" + gameMode +
@@ -176,6 +250,7 @@ public class PlayerData {
                     ", голод=" + food +
                     ", достижений=" + (advancementsData != null ? "да" : "нет") +
                     ", рецептов=" + (recipesData != null ? "да" : "нет"));
+            return true;
 
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Ошибка сохранения данных игрока " + username, e);
@@ -220,6 +295,7 @@ public class PlayerData {
                 ItemStack[] inventory = deserializeInventory(inventoryData);
                 if (inventory != null) {
                     player.getInventory().setContents(inventory);
+                    setInventoryData(migrateInventory(inventoryData, inventory));
                 } else {
                     LOGGER.warning("Не удалось восстановить инвентарь для игрока " + username);
                 }
@@ -229,6 +305,7 @@ public class PlayerData {
                 ItemStack[] enderchest = deserializeInventory(enderchestData);
                 if (enderchest != null) {
                     player.getEnderChest().setContents(enderchest);
+                    setEnderchestData(migrateInventory(enderchestData, enderchest));
                 } else {
                     LOGGER.warning("Не удалось восстановить эндер-сундук для игрока " + username);
                 }
@@ -294,16 +371,8 @@ public class PlayerData {
                 return null;
             }
 
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            BukkitObjectOutputStream dataOutput = new BukkitObjectOutputStream(outputStream);
-
-            dataOutput.writeInt(items.length);
-            for (ItemStack item : items) {
-                dataOutput.writeObject(item);
-            }
-
-            dataOutput.close();
-            return Base64Coder.encodeLines(outputStream.toByteArray());
+            // ИСПРАВЛЕНО: двоичный NBT Paper вместо Java-сериализации (см. InventoryCodec)
+            return Base64Coder.encodeLines(InventoryCodec.encode(items));
 
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Ошибка сериализации инвентаря для игрока " + username, e);
@@ -317,18 +386,7 @@ public class PlayerData {
                 return null;
             }
 
-            ByteArrayInputStream inputStream = new ByteArrayInputStream(Base64Coder.decodeLines(data));
-            BukkitObjectInputStream dataInput = new BukkitObjectInputStream(inputStream);
-
-            int length = dataInput.readInt();
-            ItemStack[] items = new ItemStack[length];
-
-            for (int i = 0; i < length; i++) {
-                items[i] = (ItemStack) dataInput.readObject();
-            }
-
-            dataInput.close();
-            return items;
+            return InventoryCodec.decode(Base64Coder.decodeLines(data));
 
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Ошибка десериализации инвентаря для игрока " + username, e);
@@ -336,28 +394,31 @@ public class PlayerData {
         }
     }
 
-    // === НОВОЕ: Методы сериализации достижений ===
-
-    private String serializeAdvancements(Player player) {
+    /**
+     * НОВОЕ: Инвентарь старого формата переписывается в новый при первом чтении,
+     * колонка помечается изменённой и сохраняется вместе с профилем
+     */
+    private String migrateInventory(String data, ItemStack[] items) {
         try {
-            Map<String, Set<String>> advancementData = new HashMap<>();
+            if (!InventoryCodec.isLegacy(Base64Coder.decodeLines(data))) {
+                return data;
+            }
+        } catch (IllegalArgumentException e) {
+            return data;
+        }
 
-            Iterator<org.bukkit.advancement.Advancement> it = Bukkit.getServer().advancementIterator();
-            while (it.hasNext()) {
-                org.bukkit.advancement.Advancement adv = it.next();
-                org.bukkit.advancement.AdvancementProgress progress = player.getAdvancementProgress(adv);
+        String migrated = serializeInventory(items);
+        return migrated != null ? migrated : data;
+    }
 
-                if (progress != null && progress.getAwardedCriteria().size() > 0) {
-                    advancementData.put(
-                            adv.getKey().toString(),
-                            new HashSet<>(progress.getAwardedCriteria())
-                    );
-                }
-            }
+    // === НОВОЕ: Методы сериализации достижений ===
 
-            return GSON.toJson(advancementData);
+    // Достижения, статистика и рецепты уже собраны в снимке - остаётся только JSON
+    private String serializeProgress(Object progress, String what) {
+        try {
+            return GSON.toJson(progress);
         } catch (Exception e) {
-            LOGGER.log(Level.WARNING, "Ошибка сериализации достижений для " + username, e);
+            LOGGER.log(Level.WARNING, "Ошибка сериализации " + what + " для " + username, e);
             return null;
         }
     }
@@ -394,28 +455,6 @@ public class PlayerData {
 
     // === НОВОЕ: Методы сериализации статистики ===
 
-    private String serializeStatistics(Player player) {
-        try {
-            Map<String, Integer> stats = new HashMap<>();
-
-            for (org.bukkit.Statistic stat : org.bukkit.Statistic.values()) {
-                try {
-                    if (stat.getType() == org.bukkit.Statistic.Type.UNTYPED) {
-                        int value = player.getStatistic(stat);
-                        if (value > 0) {
-                            stats.put(stat.name(), value);
-                        }
-                    }
-                } catch (Exception ignored) {}
-            }
-
-            return GSON.toJson(stats);
-        } catch (Exception e) {
-            LOGGER.log(Level.WARNING, "Ошибка сериализации статистики для " + username, e);
-            return null;
-        }
-    }
-
     private void deserializeStatistics(Player player, String data) {
         try {
             Map<String, Integer> stats = GSON.fromJson(
@@ -442,21 +481,6 @@ public class PlayerData {
 
     // === НОВОЕ: Методы сериализации рецептов ===
 
-    private String serializeRecipes(Player player) {
-        try {
-            Set<String> recipes = new HashSet<>();
-
-            for (org.bukkit.NamespacedKey key : player.getDiscoveredRecipes()) {
-                recipes.add(key.toString());
-            }
-
-            return GSON.toJson(recipes);
-        } catch (Exception e) {
-            LOGGER.log(Level.WARNING, "Ошибка сериализации рецептов для " + username, e);
-            return null;
-        }
-    }
-
     private void deserializeRecipes(Player player, String data) {
         try {
             Set<String> recipes = GSON.fromJson(
@@ -481,11 +505,11 @@ public class PlayerData {
 
     // === НОВОЕ: Методы сериализации эффектов ===
 
-    private String serializePotionEffects(Player player) {
+    private String serializePotionEffects(List<org.bukkit.potion.PotionEffect> activeEffects) {
         try {
             List<Map<String, Object>> effects = new ArrayList<>();
 
-            for (org.bukkit.potion.PotionEffect effect : player.getActivePotionEffects()) {
+            for (org.bukkit.potion.PotionEffect effect : activeEffects) {
                 Map<String, Object> effectData = new HashMap<>();
                 effectData.put("type", effect.getType().getName());
                 effectData.put("duration", effect.getDuration());
@@ -600,59 +624,149 @@ public class PlayerData {
     public void setRegistrationDate(long registrationDate) { this.registrationDate = registrationDate; }
 
     public String getWorldName() { return worldName; }
-    public void setWorldName(String worldName) { this.worldName = worldName; }
+    public void setWorldName(String worldName) {
+        if (!Objects.equals(this.worldName, worldName)) {
+            this.worldName = worldName;
+            markDirty(Column.WORLD_NAME);
+        }
+    }
 
     public double getX() { return x; }
-    public void setX(double x) { this.x = x; }
+    public void setX(double x) {
+        if (Double.compare(this.x, x) != 0) {
+            this.x = x;
+            markDirty(Column.X);
+        }
+    }
 
     public double getY() { return y; }
-    public void setY(double y) { this.y = y; }
+    public void setY(double y) {
+        if (Double.compare(this.y, y) != 0) {
+            this.y = y;
+            markDirty(Column.Y);
+        }
+    }
 
     public double getZ() { return z; }
-    public void setZ(double z) { this.z = z; }
+    public void setZ(double z) {
+        if (Double.compare(this.z, z) != 0) {
+            this.z = z;
+            markDirty(Column.Z);
+        }
+    }
 
     public float getYaw() { return yaw; }
-    public void setYaw(float yaw) { this.yaw = yaw; }
+    public void setYaw(float yaw) {
+        if (Float.compare(this.yaw, yaw) != 0) {
+            this.yaw = yaw;
+            markDirty(Column.YAW);
+        }
+    }
 
     public float getPitch() { return pitch; }
-    public void setPitch(float pitch) { this.pitch = pitch; }
+    public void setPitch(float pitch) {
+        if (Float.compare(this.pitch, pitch) != 0) {
+            this.pitch = pitch;
+            markDirty(Column.PITCH);
+        }
+    }
 
     public String getInventoryData() { return inventoryData; }
-    public void setInventoryData(String inventoryData) { this.inventoryData = inventoryData; }
+    public void setInventoryData(String inventoryData) {
+        if (!Objects.equals(this.inventoryData, inventoryData)) {
+            this.inventoryData = inventoryData;
+            markDirty(Column.INVENTORY);
+        }
+    }
 
     public String getEnderchestData() { return enderchestData; }
-    public void setEnderchestData(String enderchestData) { this.enderchestData = enderchestData; }
+    public void setEnderchestData(String enderchestData) {
+        if (!Objects.equals(this.enderchestData, enderchestData)) {
+            this.enderchestData = enderchestData;
+            markDirty(Column.ENDERCHEST);
+        }
+    }
 
     public int getExperience() { return experience; }
-    public void setExperience(int experience) { this.experience = experience; }
+    public void setExperience(int experience) {
+        if (this.experience != experience) {
+            this.experience = experience;
+            markDirty(Column.EXPERIENCE);
+        }
+    }
 
     public int getLevel() { return level; }
-    public void setLevel(int level) { this.level = level; }
+    public void setLevel(int level) {
+        if (this.level != level) {
+            this.level = level;
+            markDirty(Column.LEVEL);
+        }
+    }
 
     public double getHealth() { return health; }
-    public void setHealth(double health) { this.health = health; }
+    public void setHealth(double health) {
+        if (Double.compare(this.health, health) != 0) {
+            this.health = health;
+            markDirty(Column.HEALTH);
+        }
+    }
 
     public int getFood() { return food; }
-    public void setFood(int food) { this.food = food; }
+    public void setFood(int food) {
+        if (this.food != food) {
+            this.food = food;
+            markDirty(Column.FOOD);
+        }
+    }
 
     public float getSaturation() { return saturation; }
-    public void setSaturation(float saturation) { this.saturation = saturation; }
+    public void setSaturation(float saturation) {
+        if (Float.compare(this.saturation, saturation) != 0) {
+            this.saturation = saturation;
+            markDirty(Column.SATURATION);
+        }
+    }
 
     public String getGameMode() { return gameMode; }
-    public void setGameMode(String gameMode) { this.gameMode = gameMode; }
+    public void setGameMode(String gameMode) {
+        if (!Objects.equals(this.gameMode, gameMode)) {
+            this.gameMode = gameMode;
+            markDirty(Column.GAME_MODE);
+        }
+    }
 
     // НОВОЕ: Геттеры и сеттеры для расширенных данных
     public String getAdvancementsData() { return advancementsData; }
-    public void setAdvancementsData(String advancementsData) { this.advancementsData = advancementsData; }
+    public void setAdvancementsData(String advancementsData) {
+        if (!Objects.equals(this.advancementsData, advancementsData)) {
+            this.advancementsData = advancementsData;
+            markDirty(Column.ADVANCEMENTS);
+        }
+    }
 
     public String getStatisticsData() { return statisticsData; }
-    public void setStatisticsData(String statisticsData) { this.statisticsData = statisticsData; }
+    public void setStatisticsData(String statisticsData) {
+        if (!Objects.equals(this.statisticsData, statisticsData)) {
+            this.statisticsData = statisticsData;
+            markDirty(Column.STATISTICS);
+        }
+    }
 
     public String getRecipesData() { return recipesData; }
-    public void setRecipesData(String recipesData) { this.recipesData = recipesData; }
+    public void setRecipesData(String recipesData) {
+        if (!Objects.equals(this.recipesData, recipesData)) {
+            this.recipesData = recipesData;
+            markDirty(Column.RECIPES);
+        }
+    }
 
     public String getPotionEffectsData() { return potionEffectsData; }
-    public void setPotionEffectsData(String potionEffectsData) { this.potionEffectsData = potionEffectsData; }
+    public void setPotionEffectsData(String potionEffectsData) {
+        if (!Objects.equals(this.potionEffectsData, potionEffectsData)) {
+            this.potionEffectsData = potionEffectsData;
+            markDirty(Column.POTION_EFFECTS);
+        }
+    }
 
     public long getCreatedAt() { return createdAt; }
     public void setCreatedAt(long createdAt) { this.createdAt = createdAt; }
@@ -660,6 +774,37 @@ public class PlayerData {
     public long getUpdatedAt() { return updatedAt; }
     public void setUpdatedAt(long updatedAt) { this.updatedAt = updatedAt; }
 
+    // НОВОЕ: Отслеживание изменённых колонок
+
+    private void markDirty(Column column) {
+        dirtyColumns.getAndUpdate(mask -> mask | column.mask());
+    }
+
+    public boolean isDirty() {
+        return dirtyColumns.get() != 0;
+    }
+
+    public int getDirtyColumns() {
+        return dirtyColumns.get();
+    }
+
+    /**
+     * Забрать набор изменённых колонок для записи в БД, сбросив его.
+     * Изменения, сделанные после вызова, попадут в следующее сохранение
+     */
+    public int takeDirtyColumns() {
+        return dirtyColumns.getAndSet(0);
+    }
+
+    /**
+     * Вернуть колонки в набор изменённых, если запись в БД не удалась
+     */
+    public void restoreDirtyColumns(int mask) {
+        if (mask != 0) {
+            dirtyColumns.getAndUpdate(current -> current | mask);
+        }
+    }
+
     @Override
     public String toString() {
         return String.format("PlayerData{username='%s', worldName='%s', gameMode='%s', lastLogin=%d}",
@@ -0,0 +1,161 @@
+package org.alex_melan.secureAuth.models;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.NamespacedKey;
+import org.bukkit.Statistic;
+import org.bukkit.advancement.Advancement;
+import org.bukkit.advancement.AdvancementProgress;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.potion.PotionEffect;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Неизменяемый снимок состояния игрока для сохранения.
+ *
+ * Снимается в основном потоке и содержит только копии: клоны предметов
+ * (getContents возвращает живые предметы инвентаря) и простые значения.
+ * Сериализация в формат PlayerData выполняется потом в любом потоке
+ * без обращения к Bukkit API.
+ */
+public final class PlayerSnapshot {
+
+    private final long capturedAt;
+
+    private final String worldName;
+    private final double x, y, z;
+    private final float yaw, pitch;
+
+    private final ItemStack[] inventory;
+    private final ItemStack[] enderchest;
+    private final int experience;
+    private final int level;
+    private final double health;
+    private final int food;
+    private final float saturation;
+    private final String gameMode;
+    private final List<PotionEffect> potionEffects;
+
+    // Прогресс (null, если не снимался)
+    private final Map<String, Set<String>> advancements;
+    private final Map<String, Integer> statistics;
+    private final Set<String> recipes;
+
+    private PlayerSnapshot(Player player, boolean withProgress) {
+        this.capturedAt = System.nanoTime();
+
+        Location loc = player.getLocation();
+        this.worldName = loc.getWorld().getName();
+        this.x = loc.getX();
+        this.y = loc.getY();
+        this.z = loc.getZ();
+        this.yaw = loc.getYaw();
+        this.pitch = loc.getPitch();
+
+        this.inventory = copy(player.getInventory().getContents());
+        this.enderchest = copy(player.getEnderChest().getContents());
+        this.experience = player.getTotalExperience();
+        this.level = player.getLevel();
+        this.health = player.getHealth();
+        this.food = player.getFoodLevel();
+        this.saturation = player.getSaturation();
+        this.gameMode = player.getGameMode().name();
+        // PotionEffect неизменяем, достаточно копии списка
+        this.potionEffects = new ArrayList<>(player.getActivePotionEffects());
+
+        this.advancements = withProgress ? captureAdvancements(player) : null;
+        this.statistics = withProgress ? captureStatistics(player) : null;
+        this.recipes = withProgress ? captureRecipes(player) : null;
+    }
+
+    /**
+     * Снимок в основном потоке
+     * @param withProgress снимать ли достижения, статистику и рецепты - это перебор
+     *                     всех достижений сервера, поэтому он нужен только при выходе игрока
+     */
+    public static PlayerSnapshot capture(Player player, boolean withProgress) {
+        return new PlayerSnapshot(player, withProgress);
+    }
+
+    private static ItemStack[] copy(ItemStack[] items) {
+        ItemStack[] copy = new ItemStack[items.length];
+        for (int i = 0; i < items.length; i++) {
+            copy[i] = items[i] != null ? items[i].clone() : null;
+        }
+        return copy;
+    }
+
+    private static Map<String, Set<String>> captureAdvancements(Player player) {
+        Map<String, Set<String>> result = new HashMap<>();
+
+        Iterator<Advancement> it = Bukkit.getServer().advancementIterator();
+        while (it.hasNext()) {
+            Advancement adv = it.next();
+            AdvancementProgress progress = player.getAdvancementProgress(adv);
+
+            if (progress != null) {
+                Collection<String> awarded = progress.getAwardedCriteria();
+                if (!awarded.isEmpty()) {
+                    result.put(adv.getKey().toString(), new HashSet<>(awarded));
+                }
+            }
+        }
+        return result;
+    }
+
+    private static Map<String, Integer> captureStatistics(Player player) {
+        Map<String, Integer> result = new HashMap<>();
+
+        for (Statistic stat : Statistic.values()) {
+            try {
+                if (stat.getType() == Statistic.Type.UNTYPED) {
+                    int value = player.getStatistic(stat);
+                    if (value > 0) {
+                        result.put(stat.name(), value);
+                    }
+                }
+            } catch (Exception ignored) {}
+        }
+        return result;
+    }
+
+    private static Set<String> captureRecipes(Player player) {
+        Set<String> result = new HashSet<>();
+        for (NamespacedKey key : player.getDiscoveredRecipes()) {
+            result.add(key.toString());
+        }
+        return result;
+    }
+
+    // Геттеры
+    /** Момент снимка (System.nanoTime) - более старый снимок не перезаписывает новый */
+    public long getCapturedAt() { return capturedAt; }
+    public String getWorldName() { return worldName; }
+    public double getX() { return x; }
+    public double getY() { return y; }
+    public double getZ() { return z; }
+    public float getYaw() { return yaw; }
+    public float getPitch() { return pitch; }
+    public ItemStack[] getInventory() { return inventory; }
+    public ItemStack[] getEnderchest() { return enderchest; }
+    public int getExperience() { return experience; }
+    public int getLevel() { return level; }
+    public double getHealth() { return health; }
+    public int getFood() { return food; }
+    public float getSaturation() { return saturation; }
+    public String getGameMode() { return gameMode; }
+    public List<PotionEffect> getPotionEffects() { return potionEffects; }
+    public boolean hasProgress() { return advancements != null; }
+    public Map<String, Set<String>> getAdvancements() { return advancements; }
+    public Map<String, Integer> getStatistics() { return statistics; }
+    public Set<String> getRecipes() { return recipes; }
+}
@@ -0,0 +1,76 @@
+package org.alex_melan.secureAuth.models;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.UUID;
+
+// Краткие сведения об игроке без инвентарей и прочих сериализованных данных
+public class PlayerSummary {
+
+    /** Колонки, которые читает fromResultSet */
+    public static final String COLUMNS =
+            "username, premium_uuid, cracked_uuid, last_ip, last_login, registration_date, world_name, x, y, z";
+
+    private final String username;
+    private final UUID premiumUuid;
+    private final UUID crackedUuid;
+    private final String lastIp;
+    private final long lastLogin;
+    private final long registrationDate;
+    private final String worldName;
+    private final double x, y, z;
+
+    public PlayerSummary(String username, UUID premiumUuid, UUID crackedUuid, String lastIp, long lastLogin,
+                         long registrationDate, String worldName, double x, double y, double z) {
+        this.username = username;
+        this.premiumUuid = premiumUuid;
+        this.crackedUuid = crackedUuid;
+        this.lastIp = lastIp;
+        this.lastLogin = lastLogin;
+        this.registrationDate = registrationDate;
+        this.worldName = worldName;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+    }
+
+    public static PlayerSummary fromResultSet(ResultSet rs) throws SQLException {
+        String worldName = rs.getString("world_name");
+
+        return new PlayerSummary(
+                rs.getString("username"),
+                parseUuid(rs.getString("premium_uuid")),
+                parseUuid(rs.getString("cracked_uuid")),
+                rs.getString("last_ip"),
+                rs.getLong("last_login"),
+                rs.getLong("registration_date"),
+                worldName != null ? worldName : "world",
+                rs.getDouble("x"),
+                rs.getDouble("y"),
+                rs.getDouble("z")
+        );
+    }
+
+    private static UUID parseUuid(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            return UUID.fromString(value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // Геттеры
+    public String getUsername() { return username; }
+    public UUID getPremiumUuid() { return premiumUuid; }
+    public UUID getCrackedUuid() { return crackedUuid; }
+    public String getLastIp() { return lastIp; }
+    public long getLastLogin() { return lastLogin; }
+    public long getRegistrationDate() { return registrationDate; }
+    public String getWorldName() { return worldName; }
+    public double getX() { return x; }
+    public double getY() { return y; }
+    public double getZ() { return z; }
+}
@@ -7,13 +7,21 @@ public class SessionData {
     private String ipAddress;
     private long createdAt;
     private long expiresAt;
+    // НОВОЕ: Последняя активность, обновляется в памяти
+    private volatile long lastActivity;
 
     public SessionData(String sessionHash, String username, String ipAddress, long createdAt, long expiresAt) {
+        this(sessionHash, username, ipAddress, createdAt, expiresAt, createdAt);
+    }
+
+    public SessionData(String sessionHash, String username, String ipAddress, long createdAt, long expiresAt,
+                       long lastActivity) {
         this.sessionHash = sessionHash;
         this.username = username;
         this.ipAddress = ipAddress;
         this.createdAt = createdAt;
         this.expiresAt = expiresAt;
+        this.lastActivity = lastActivity;
     }
 
     public boolean isExpired() {
@@ -24,10 +32,15 @@ public class SessionData {
         return this.ipAddress.equals(ipAddress);
     }
 
+    public void touch(long timestamp) {
+        this.lastActivity = timestamp;
+    }
+
     // Геттеры
     public String getSessionHash() { return sessionHash; }
     public String getUsername() { return username; }
     public String getIpAddress() { return ipAddress; }
     public long getCreatedAt() { return createdAt; }
     public long getExpiresAt() { return expiresAt; }
+    public long getLastActivity() { return lastActivity; }
 }
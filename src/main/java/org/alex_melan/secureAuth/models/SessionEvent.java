@@ -0,0 +1,34 @@
+package org.alex_melan.secureAuth.models;
+
+// Событие сессии в общей БД сети серверов (таблица session_events)
+public class SessionEvent {
+
+    public enum Type {
+        // Создана новая сессия, прежние сессии игрока деактивированы
+        CREATE,
+        // Сессия деактивирована (выход, принудительный выход, истечение)
+        INVALIDATE
+    }
+
+    private final long id;
+    private final Type type;
+    private final String username;
+    private final String sessionHash;
+    private final String serverId;
+
+    public SessionEvent(long id, Type type, String username, String sessionHash, String serverId) {
+        this.id = id;
+        this.type = type;
+        this.username = username;
+        this.sessionHash = sessionHash;
+        this.serverId = serverId;
+    }
+
+    // Геттеры
+    public long getId() { return id; }
+    public Type getType() { return type; }
+    public String getUsername() { return username; }
+    /** null для деактивации всех сессий игрока */
+    public String getSessionHash() { return sessionHash; }
+    public String getServerId() { return serverId; }
+}
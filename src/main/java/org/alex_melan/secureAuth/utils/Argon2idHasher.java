@@ -0,0 +1,139 @@
+package org.alex_melan.secureAuth.utils;
+
+import org.bouncycastle.crypto.generators.Argon2BytesGenerator;
+import org.bouncycastle.crypto.params.Argon2Parameters;
+
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Argon2id (BouncyCastle) в формате PHC: $argon2id$v=19$m=65536,t=3,p=1$<соль>$<хеш>
+ *
+ * Каждый вызов занимает memoryKb памяти, поэтому пиковое потребление -
+ * memoryKb, умноженное на число потоков пула хеширования.
+ */
+public class Argon2idHasher implements PasswordHasher {
+
+    private static final String PREFIX = "$argon2id$v=19$";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BYTES = 32;
+
+    private static final Base64.Encoder ENCODER = Base64.getEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getDecoder();
+
+    private final SecureRandom random = new SecureRandom();
+    private final int memoryKb;
+    private final int iterations;
+    private final int parallelism;
+
+    public Argon2idHasher(int memoryKb, int iterations, int parallelism) {
+        this.memoryKb = memoryKb;
+        this.iterations = iterations;
+        this.parallelism = parallelism;
+    }
+
+    @Override
+    public String getName() {
+        return "argon2id";
+    }
+
+    @Override
+    public boolean supports(String storedHash) {
+        return storedHash != null && storedHash.startsWith(PREFIX);
+    }
+
+    @Override
+    public String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+
+        return PREFIX + parameters() + "$" + ENCODER.encodeToString(salt) + "$"
+                + ENCODER.encodeToString(derive(password, salt, memoryKb, iterations, parallelism, HASH_BYTES));
+    }
+
+    @Override
+    public boolean verify(String password, String storedHash) {
+        if (password == null || !supports(storedHash)) {
+            return false;
+        }
+
+        try {
+            // $argon2id$v=19$m=M,t=T,p=P$соль$хеш -> ["", "argon2id", "v=19", "m=M,t=T,p=P", соль, хеш]
+            String[] parts = storedHash.split("\\$");
+            if (parts.length != 6) {
+                return false;
+            }
+
+            int m = 0, t = 0, p = 0;
+            for (String param : parts[3].split(",")) {
+                int value = Integer.parseInt(param.substring(2));
+                switch (param.substring(0, 2)) {
+                    case "m=": m = value; break;
+                    case "t=": t = value; break;
+                    case "p=": p = value; break;
+                    default: return false;
+                }
+            }
+            if (m <= 0 || t <= 0 || p <= 0) {
+                return false;
+            }
+
+            byte[] salt = DECODER.decode(parts[4]);
+            byte[] expected = DECODER.decode(parts[5]);
+
+            return MessageDigest.isEqual(expected, derive(password, salt, m, t, p, expected.length));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            // Повреждённый хеш
+            return false;
+        }
+    }
+
+    @Override
+    public boolean needsRehash(String storedHash) {
+        return !supports(storedHash) || !storedHash.startsWith(PREFIX + parameters() + "$");
+    }
+
+    @Override
+    public String extractSalt(String storedHash) {
+        return storedHash.split("\\$")[4];
+    }
+
+    @Override
+    public String describe() {
+        return "argon2id (память: " + memoryKb + " КБ, итераций: " + iterations + ", потоков: " + parallelism + ")";
+    }
+
+    private String parameters() {
+        return "m=" + memoryKb + ",t=" + iterations + ",p=" + parallelism;
+    }
+
+    private static byte[] derive(String password, byte[] salt, int memoryKb, int iterations, int parallelism, int length) {
+        Argon2Parameters params = new Argon2Parameters.Builder(Argon2Parameters.ARGON2_id)
+                .withVersion(Argon2Parameters.ARGON2_VERSION_13)
+                .withMemoryAsKB(memoryKb)
+                .withIterations(iterations)
+                .withParallelism(parallelism)
+                .withSalt(salt)
+                .build();
+
+        Argon2BytesGenerator generator = new Argon2BytesGenerator();
+        generator.init(params);
+
+        byte[] result = new byte[length];
+        generator.generateBytes(password.toCharArray(), result);
+        return result;
+    }
+
+    public int getMemoryKb() {
+        return memoryKb;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+}
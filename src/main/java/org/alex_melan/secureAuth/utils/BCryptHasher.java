@@ -0,0 +1,84 @@
+package org.alex_melan.secureAuth.utils;
+
+import org.mindrot.jbcrypt.BCrypt;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+
+/**
+ * BCrypt: $2a$12$<22 символа соли><31 символ хеша>
+ */
+public class BCryptHasher implements PasswordHasher {
+
+    // $2a$12$ и 22 символа соли
+    private static final int SALT_LENGTH = 29;
+
+    private final SecureRandom random = new SecureRandom();
+    private final int rounds;
+
+    public BCryptHasher(int rounds) {
+        this.rounds = rounds;
+    }
+
+    @Override
+    public String getName() {
+        return "bcrypt";
+    }
+
+    @Override
+    public boolean supports(String storedHash) {
+        return storedHash != null && storedHash.length() > SALT_LENGTH
+                && (storedHash.startsWith("$2a$") || storedHash.startsWith("$2b$") || storedHash.startsWith("$2y$"));
+    }
+
+    @Override
+    public String hash(String password) {
+        return BCrypt.hashpw(password, BCrypt.gensalt(rounds, random));
+    }
+
+    @Override
+    public boolean verify(String password, String storedHash) {
+        if (password == null || !supports(storedHash)) {
+            return false;
+        }
+
+        // jBCrypt знает только ревизию 2a, 2b и 2y отличаются лишь обработкой длинных паролей в других реализациях
+        String normalized = "$2a" + storedHash.substring(3);
+        try {
+            String computed = BCrypt.hashpw(password, normalized);
+            return MessageDigest.isEqual(
+                    computed.getBytes(StandardCharsets.US_ASCII),
+                    normalized.getBytes(StandardCharsets.US_ASCII));
+        } catch (IllegalArgumentException e) {
+            // Повреждённый хеш
+            return false;
+        }
+    }
+
+    @Override
+    public boolean needsRehash(String storedHash) {
+        if (!supports(storedHash)) {
+            return true;
+        }
+        try {
+            return Integer.parseInt(storedHash.substring(4, 6)) != rounds;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    @Override
+    public String extractSalt(String storedHash) {
+        return storedHash.substring(0, SALT_LENGTH);
+    }
+
+    @Override
+    public String describe() {
+        return "bcrypt (раундов: " + rounds + ")";
+    }
+
+    public int getRounds() {
+        return rounds;
+    }
+}
@@ -0,0 +1,262 @@
+package org.alex_melan.secureAuth.utils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Logger;
+
+/**
+ * Фильтр Блума утёкших и распространённых паролей в отдельном файле.
+ *
+ * Список паролей (по одному в строке) один раз превращается в битовый массив на диске,
+ * который затем отображается в память только для чтения: миллионы строк не лежат
+ * в куче, а проверка пароля - это k чтений бит из отображённого буфера.
+ * Фильтр может ошибаться только в одну сторону: редкий надёжный пароль будет
+ * отклонён с заданной вероятностью, но пароль из списка не пропускается никогда.
+ *
+ * Формат файла: заголовок HEADER_SIZE байт, затем биты фильтра.
+ */
+public final class BreachedPasswordFilter {
+
+    private static final int MAGIC = 0x53414246; // "SABF"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int MAX_HASHES = 16;
+    // Один MappedByteBuffer адресует не больше 2 ГБ
+    private static final long MAX_BYTES = Integer.MAX_VALUE - HEADER_SIZE;
+
+    private final MappedByteBuffer bits;
+    private final long bitCount;
+    private final int hashCount;
+    private final long entries;
+
+    private BreachedPasswordFilter(MappedByteBuffer buffer) throws IOException {
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Файл не является фильтром паролей SecureAuth или создан другой версией");
+        }
+
+        this.bits = buffer;
+        this.bitCount = buffer.getLong(8);
+        this.hashCount = buffer.getInt(16);
+        this.entries = buffer.getLong(20);
+
+        if (bitCount <= 0 || hashCount < 1 || hashCount > MAX_HASHES
+                || HEADER_SIZE + (bitCount + 7) / 8 > buffer.capacity()) {
+            throw new IOException("Повреждённый заголовок фильтра паролей");
+        }
+    }
+
+    /**
+     * Открытие готового фильтра или построение нового из списка паролей.
+     * Фильтр перестраивается, если список изменился или изменились параметры в конфиге
+     * @param source список паролей (может отсутствовать, если есть готовый фильтр)
+     * @param index файл фильтра
+     * @return фильтр или null, если нет ни списка, ни фильтра
+     */
+    public static BreachedPasswordFilter openOrBuild(File source, File index, double falsePositiveRate,
+                                                     long maxBytes, Logger logger) throws IOException {
+        if (index.exists()) {
+            // ИСПРАВЛЕНО: актуальность проверяется по заголовку, старый фильтр не отображается зря
+            if (!source.exists() || isBuiltFrom(index, source, falsePositiveRate, maxBytes)) {
+                return open(index);
+            }
+            logger.info("Список " + source.getName() + " или настройки фильтра изменились, фильтр будет перестроен");
+        }
+
+        if (!source.exists()) {
+            return null;
+        }
+
+        long started = System.currentTimeMillis();
+        build(source, index, falsePositiveRate, maxBytes);
+        BreachedPasswordFilter built = open(index);
+        logger.info("Фильтр паролей построен за " + (System.currentTimeMillis() - started) + " мс: "
+                + built.getEntries() + " паролей, " + (built.getSizeBytes() / 1024) + " КБ");
+        return built;
+    }
+
+    /**
+     * Отображение файла фильтра в память (только чтение)
+     */
+    public static BreachedPasswordFilter open(File index) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(index, "r");
+             FileChannel channel = file.getChannel()) {
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Некорректный размер файла фильтра паролей: " + channel.size());
+            }
+
+            // Отображение остаётся действительным после закрытия канала
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            // Подгружаем страницы заранее, чтобы первая проверка не читала диск в основном потоке
+            buffer.load();
+            return new BreachedPasswordFilter(buffer);
+        }
+    }
+
+    /**
+     * Построение фильтра: первый проход считает пароли для выбора размера,
+     * второй заполняет биты во временном файле, который затем заменяет старый фильтр.
+     * Временный файл уникален, но одновременные построения одного фильтра
+     * вызывающий код всё равно не запускает
+     */
+    public static void build(File source, File index, double falsePositiveRate, long maxBytes) throws IOException {
+        long count = 0;
+        try (BufferedReader reader = openList(source)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    count++;
+                }
+            }
+        }
+        if (count == 0) {
+            throw new IOException("Список паролей " + source.getName() + " пуст");
+        }
+
+        // Оптимальные размер и число хешей: m = -n ln p / (ln 2)^2, k = m / n ln 2
+        double ln2 = Math.log(2);
+        long bytes = (long) Math.ceil(-count * Math.log(falsePositiveRate) / (ln2 * ln2) / 8);
+        bytes = Math.max(8, Math.min(bytes, Math.min(maxBytes, MAX_BYTES)));
+        long bitCount = bytes * 8;
+        int hashCount = (int) Math.max(1, Math.min(MAX_HASHES, Math.round((double) bitCount / count * ln2)));
+
+        long sourceSize = source.length();
+        long sourceModified = source.lastModified();
+
+        // ИСПРАВЛЕНО: уникальный временный файл в том же каталоге - перемещение остаётся атомарным
+        Path temp = Files.createTempFile(index.getAbsoluteFile().getParentFile().toPath(), index.getName(), ".tmp");
+        try {
+            writeFilter(source, temp, bytes, bitCount, hashCount, sourceSize, sourceModified, falsePositiveRate, maxBytes);
+            Files.move(temp, index.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    private static void writeFilter(File source, Path temp, long bytes, long bitCount, int hashCount, long sourceSize,
+                                    long sourceModified, double falsePositiveRate, long maxBytes) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(temp.toFile(), "rw");
+             FileChannel channel = file.getChannel()) {
+            file.setLength(HEADER_SIZE + bytes);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + bytes);
+
+            long inserted = 0;
+            try (BufferedReader reader = openList(source)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isEmpty()) {
+                        continue;
+                    }
+
+                    long hash = hash(line);
+                    long h1 = mix(hash);
+                    long h2 = mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+                    for (int i = 0; i < hashCount; i++) {
+                        long bit = Long.remainderUnsigned(h1 + i * h2, bitCount);
+                        int offset = HEADER_SIZE + (int) (bit >>> 3);
+                        buffer.put(offset, (byte) (buffer.get(offset) | (1 << (bit & 7))));
+                    }
+                    inserted++;
+                }
+            }
+
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putLong(8, bitCount);
+            buffer.putInt(16, hashCount);
+            buffer.putLong(20, inserted);
+            buffer.putLong(28, sourceSize);
+            buffer.putLong(36, sourceModified);
+            buffer.putDouble(44, falsePositiveRate);
+            buffer.putLong(52, maxBytes);
+            buffer.force();
+        }
+    }
+
+    /**
+     * Проверка пароля без учёта регистра: k чтений из отображённого буфера, без выделения памяти
+     * @return true если пароль есть в списке (или совпал по ложному срабатыванию)
+     */
+    public boolean mightContain(CharSequence password) {
+        if (password.length() == 0) {
+            return false;
+        }
+
+        long hash = hash(password);
+        long h1 = mix(hash);
+        long h2 = mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Long.remainderUnsigned(h1 + i * h2, bitCount);
+            if ((bits.get(HEADER_SIZE + (int) (bit >>> 3)) & (1 << (bit & 7))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Построен ли фильтр из этого списка с этими настройками (читается только заголовок)
+     */
+    private static boolean isBuiltFrom(File index, File source, double falsePositiveRate, long maxBytes) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        try (FileChannel channel = FileChannel.open(index.toPath(), StandardOpenOption.READ)) {
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // читаем заголовок целиком
+            }
+        }
+
+        return !header.hasRemaining() && header.getInt(0) == MAGIC && header.getInt(4) == VERSION
+                && header.getLong(28) == source.length() && header.getLong(36) == source.lastModified()
+                && Double.compare(header.getDouble(44), falsePositiveRate) == 0 && header.getLong(52) == maxBytes;
+    }
+
+    private static BufferedReader openList(File source) throws IOException {
+        // В публичных списках встречаются строки не в UTF-8 - они заменяются, а не прерывают построение
+        return new BufferedReader(new InputStreamReader(Files.newInputStream(source.toPath()),
+                StandardCharsets.UTF_8.newDecoder()
+                        .onMalformedInput(CodingErrorAction.REPLACE)
+                        .onUnmappableCharacter(CodingErrorAction.REPLACE)), 1 << 16);
+    }
+
+    // FNV-1a по символам в нижнем регистре
+    private static long hash(CharSequence value) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= Character.toLowerCase(value.charAt(i));
+            hash *= 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    // Перемешивание бит (финализатор MurmurHash3): два независимых хеша из одного прохода
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    // Геттеры
+    public long getEntries() { return entries; }
+    public long getSizeBytes() { return HEADER_SIZE + (bitCount + 7) / 8; }
+    public int getHashCount() { return hashCount; }
+
+    /** Ожидаемая доля ложных срабатываний при фактическом размере фильтра */
+    public double getExpectedFalsePositiveRate() {
+        return Math.pow(1 - Math.exp(-(double) hashCount * entries / bitCount), hashCount);
+    }
+}
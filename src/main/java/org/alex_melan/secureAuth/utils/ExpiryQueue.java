@@ -0,0 +1,91 @@
+package org.alex_melan.secureAuth.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Очередь сроков истечения: ключи упорядочены по времени, pollExpired
+ * возвращает только истёкшие, не просматривая остальные.
+ *
+ * Перенос и отмена срока не ищут старую запись в куче: действующий срок
+ * хранится в карте, устаревшие записи пропускаются при извлечении.
+ */
+public final class ExpiryQueue<K> {
+
+    private final PriorityQueue<Entry<K>> queue = new PriorityQueue<>();
+    private final Map<K, Long> deadlines = new HashMap<>();
+
+    /**
+     * Назначение (или перенос) срока для ключа
+     */
+    public synchronized void schedule(K key, long deadline) {
+        deadlines.put(key, deadline);
+        queue.add(new Entry<>(key, deadline));
+
+        // Частые переносы копят устаревшие записи - пересобираем кучу
+        if (queue.size() > 64 && queue.size() > deadlines.size() * 2) {
+            queue.clear();
+            for (Map.Entry<K, Long> live : deadlines.entrySet()) {
+                queue.add(new Entry<>(live.getKey(), live.getValue()));
+            }
+        }
+    }
+
+    public synchronized void cancel(K key) {
+        deadlines.remove(key);
+    }
+
+    public synchronized void clear() {
+        deadlines.clear();
+        queue.clear();
+    }
+
+    /**
+     * Извлечение ключей, срок которых наступил к моменту now
+     */
+    public synchronized List<K> pollExpired(long now) {
+        List<K> expired = null;
+
+        Entry<K> head;
+        while ((head = queue.peek()) != null && head.deadline <= now) {
+            queue.poll();
+
+            Long current = deadlines.get(head.key);
+            if (current == null || current != head.deadline) {
+                // Срок отменён или перенесён
+                continue;
+            }
+
+            deadlines.remove(head.key);
+            if (expired == null) {
+                expired = new ArrayList<>();
+            }
+            expired.add(head.key);
+        }
+
+        return expired != null ? expired : Collections.emptyList();
+    }
+
+    public synchronized int size() {
+        return deadlines.size();
+    }
+
+    private static final class Entry<K> implements Comparable<Entry<K>> {
+        private final K key;
+        private final long deadline;
+
+        private Entry(K key, long deadline) {
+            this.key = key;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public int compareTo(Entry<K> other) {
+            return Long.compare(deadline, other.deadline);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package org.alex_melan.secureAuth.utils;
+
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.util.io.BukkitObjectInputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Двоичный формат инвентарей на основе ItemStack.serializeAsBytes (NBT Paper).
+ *
+ * Формат: [версия][размер инвентаря, 2 байта][число предметов, 2 байта],
+ * затем для каждого непустого слота [номер слота, 2 байта][длина, 4 байта][байты предмета].
+ * Пустые слоты не записываются. NBT предмета содержит версию данных Minecraft,
+ * поэтому предметы обновляются сервером при смене версии.
+ *
+ * Записи старых версий (Java-сериализация BukkitObjectOutputStream) начинаются
+ * с заголовка 0xACED и читаются прежним способом; PlayerData переписывает их
+ * в новый формат при следующем сохранении профиля.
+ */
+public final class InventoryCodec {
+
+    private static final byte VERSION = 1;
+    private static final int HEADER_SIZE = 5;
+    // Буферы крупнее не держим в потоке, чтобы редкий огромный инвентарь не занимал память
+    private static final int MAX_POOLED_BUFFER = 256 * 1024;
+
+    // Буфер записи на поток: сериализация не выделяет новый массив на каждый вызов
+    private static final ThreadLocal<ByteArrayOutputStream> BUFFERS =
+            ThreadLocal.withInitial(() -> new ByteArrayOutputStream(8192));
+
+    private InventoryCodec() {
+    }
+
+    /**
+     * Запись содержимого инвентаря
+     * @param items слоты инвентаря (null - пустой слот)
+     */
+    public static byte[] encode(ItemStack[] items) throws IOException {
+        if (items.length > 0xFFFF) {
+            throw new IOException("Слишком большой инвентарь: " + items.length);
+        }
+
+        int present = 0;
+        for (ItemStack item : items) {
+            if (!isEmpty(item)) {
+                present++;
+            }
+        }
+
+        ByteArrayOutputStream buffer = BUFFERS.get();
+        buffer.reset();
+        try {
+            DataOutputStream out = new DataOutputStream(buffer);
+            out.writeByte(VERSION);
+            out.writeShort(items.length);
+            out.writeShort(present);
+
+            for (int slot = 0; slot < items.length; slot++) {
+                if (isEmpty(items[slot])) {
+                    continue;
+                }
+
+                byte[] bytes = items[slot].serializeAsBytes();
+                out.writeShort(slot);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+
+            return buffer.toByteArray();
+        } finally {
+            if (buffer.size() > MAX_POOLED_BUFFER) {
+                BUFFERS.remove();
+            }
+        }
+    }
+
+    /**
+     * Чтение инвентаря в новом или старом формате
+     */
+    public static ItemStack[] decode(byte[] data) throws IOException {
+        if (isLegacy(data)) {
+            return decodeLegacy(data);
+        }
+        if (data.length < HEADER_SIZE) {
+            throw new IOException("Данные инвентаря обрезаны");
+        }
+        if (data[0] != VERSION) {
+            throw new IOException("Неподдерживаемая версия формата инвентаря: " + data[0]);
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, 1, data.length - 1));
+        ItemStack[] items = new ItemStack[in.readUnsignedShort()];
+        int present = in.readUnsignedShort();
+
+        for (int i = 0; i < present; i++) {
+            int slot = in.readUnsignedShort();
+            int length = in.readInt();
+            if (slot >= items.length || length < 0 || length > in.available()) {
+                throw new IOException("Повреждённые данные инвентаря (слот " + slot + ", " + length + " байт)");
+            }
+
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            items[slot] = ItemStack.deserializeBytes(bytes);
+        }
+
+        return items;
+    }
+
+    /**
+     * Запись старого формата (поток Java-сериализации)
+     */
+    public static boolean isLegacy(byte[] data) {
+        return data.length >= 2 && data[0] == (byte) 0xAC && data[1] == (byte) 0xED;
+    }
+
+    private static ItemStack[] decodeLegacy(byte[] data) throws IOException {
+        try (BukkitObjectInputStream in = new BukkitObjectInputStream(new ByteArrayInputStream(data))) {
+            ItemStack[] items = new ItemStack[in.readInt()];
+            for (int i = 0; i < items.length; i++) {
+                items[i] = (ItemStack) in.readObject();
+            }
+            return items;
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Повреждённые данные инвентаря старого формата", e);
+        }
+    }
+
+    private static boolean isEmpty(ItemStack item) {
+        return item == null || item.getType().isAir() || item.getAmount() <= 0;
+    }
+}
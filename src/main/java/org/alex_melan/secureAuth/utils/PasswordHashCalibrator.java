@@ -0,0 +1,139 @@
+package org.alex_melan.secureAuth.utils;
+
+import org.alex_melan.secureAuth.models.HashCalibration;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Подбор стоимости хеширования паролей под процессор сервера.
+ *
+ * Бюджет одного хеша - меньшее из целевого времени входа и времени, при котором
+ * пул хеширования успевает обработать ожидаемое число входов в секунду.
+ * Выбирается наибольшая стоимость, укладывающаяся в бюджет.
+ */
+public class PasswordHashCalibrator {
+
+    private static final int MEASURE_RUNS = 3;
+    private static final String SAMPLE_PASSWORD = "Calibration-Sample-Password-1";
+
+    // Границы совпадают с проверкой настроек в ConfigManager
+    private static final int MIN_BCRYPT_ROUNDS = 10;
+    private static final int MAX_BCRYPT_ROUNDS = 15;
+    private static final int MIN_PBKDF2_ITERATIONS = 10000;
+    private static final int MAX_PBKDF2_ITERATIONS = 10000000;
+    private static final int PBKDF2_SAMPLE_ITERATIONS = 100000;
+    // Шаг округления, чтобы разброс замеров не менял параметры при каждом запуске
+    private static final int PBKDF2_STEP = 50000;
+    private static final int MAX_ARGON2_ITERATIONS = 10;
+
+    private final long budgetMillis;
+
+    public PasswordHashCalibrator(long targetMillis, int hashingThreads, double loginsPerSecond) {
+        long throughputLimit = (long) (hashingThreads * 1000 / loginsPerSecond);
+        this.budgetMillis = Math.max(1, Math.min(targetMillis, throughputLimit));
+    }
+
+    /**
+     * Калибровка алгоритма текущего хешера (блокирующая, занимает до нескольких секунд)
+     */
+    public HashCalibration calibrate(PasswordHasher configured) {
+        if (configured instanceof Pbkdf2Hasher) {
+            return calibratePbkdf2();
+        }
+        if (configured instanceof Argon2idHasher) {
+            return calibrateArgon2((Argon2idHasher) configured);
+        }
+        return calibrateBcrypt();
+    }
+
+    private HashCalibration calibrateBcrypt() {
+        Map<String, Double> measurements = new LinkedHashMap<>();
+        int best = MIN_BCRYPT_ROUNDS;
+        double bestMillis = 0;
+
+        // Каждый раунд удваивает время - останавливаемся на первом превышении бюджета
+        for (int rounds = MIN_BCRYPT_ROUNDS; rounds <= MAX_BCRYPT_ROUNDS; rounds++) {
+            double millis = measure(new BCryptHasher(rounds));
+            measurements.put("bcrypt-rounds: " + rounds, millis);
+
+            if (millis > budgetMillis && rounds > MIN_BCRYPT_ROUNDS) {
+                break;
+            }
+            best = rounds;
+            bestMillis = millis;
+            if (millis > budgetMillis) {
+                // Даже минимальная стоимость не укладывается в бюджет - остаётся минимальная
+                break;
+            }
+        }
+
+        return result(new BCryptHasher(best), "bcrypt-rounds: " + best, bestMillis, measurements);
+    }
+
+    private HashCalibration calibratePbkdf2() {
+        Map<String, Double> measurements = new LinkedHashMap<>();
+
+        // Время PBKDF2 линейно зависит от числа итераций
+        double sampleMillis = measure(new Pbkdf2Hasher(PBKDF2_SAMPLE_ITERATIONS));
+        measurements.put("pbkdf2-iterations: " + PBKDF2_SAMPLE_ITERATIONS, sampleMillis);
+
+        long scaled = (long) (PBKDF2_SAMPLE_ITERATIONS * (budgetMillis / Math.max(sampleMillis, 0.001)));
+        int iterations = (int) Math.max(MIN_PBKDF2_ITERATIONS,
+                Math.min(MAX_PBKDF2_ITERATIONS, scaled / PBKDF2_STEP * PBKDF2_STEP));
+
+        double millis = measure(new Pbkdf2Hasher(iterations));
+        measurements.put("pbkdf2-iterations: " + iterations, millis);
+
+        return result(new Pbkdf2Hasher(iterations), "pbkdf2-iterations: " + iterations, millis, measurements);
+    }
+
+    private HashCalibration calibrateArgon2(Argon2idHasher configured) {
+        Map<String, Double> measurements = new LinkedHashMap<>();
+        int best = 1;
+        double bestMillis = 0;
+
+        // Объём памяти задаёт администратор, подбирается число проходов
+        for (int iterations = 1; iterations <= MAX_ARGON2_ITERATIONS; iterations++) {
+            double millis = measure(new Argon2idHasher(configured.getMemoryKb(), iterations, configured.getParallelism()));
+            measurements.put("argon2-iterations: " + iterations, millis);
+
+            if (millis > budgetMillis && iterations > 1) {
+                break;
+            }
+            best = iterations;
+            bestMillis = millis;
+            if (millis > budgetMillis) {
+                // Даже минимальная стоимость не укладывается в бюджет - остаётся минимальная
+                break;
+            }
+        }
+
+        return result(new Argon2idHasher(configured.getMemoryKb(), best, configured.getParallelism()),
+                "argon2-memory-kb: " + configured.getMemoryKb()
+                + ", argon2-iterations: " + best
+                + ", argon2-parallelism: " + configured.getParallelism(), bestMillis, measurements);
+    }
+
+    private HashCalibration result(PasswordHasher hasher, String parameters, double millis, Map<String, Double> measurements) {
+        return new HashCalibration(hasher, parameters, millis, budgetMillis, measurements, false, System.currentTimeMillis());
+    }
+
+    /**
+     * Медиана нескольких замеров после прогрева
+     */
+    private static double measure(PasswordHasher hasher) {
+        hasher.hash(SAMPLE_PASSWORD);
+
+        double[] runs = new double[MEASURE_RUNS];
+        for (int i = 0; i < MEASURE_RUNS; i++) {
+            long start = System.nanoTime();
+            hasher.hash(SAMPLE_PASSWORD);
+            runs[i] = (System.nanoTime() - start) / 1_000_000.0;
+        }
+
+        Arrays.sort(runs);
+        return runs[MEASURE_RUNS / 2];
+    }
+}
@@ -0,0 +1,46 @@
+package org.alex_melan.secureAuth.utils;
+
+/**
+ * Алгоритм хеширования паролей.
+ *
+ * Хеш описывает сам себя: префикс определяет алгоритм, а параметры стоимости
+ * и соль хранятся в той же строке. Поэтому пароль проверяется тем алгоритмом
+ * и с теми параметрами, с которыми был создан, независимо от текущих настроек.
+ */
+public interface PasswordHasher {
+
+    /**
+     * Имя алгоритма в конфиге (bcrypt, pbkdf2, argon2id)
+     */
+    String getName();
+
+    /**
+     * Создан ли хеш этим алгоритмом (по префиксу)
+     */
+    boolean supports(String storedHash);
+
+    /**
+     * Хеширование пароля с новой случайной солью и текущими параметрами
+     */
+    String hash(String password);
+
+    /**
+     * Проверка пароля за постоянное время
+     */
+    boolean verify(String password, String storedHash);
+
+    /**
+     * Параметры сохранённого хеша отличаются от текущих
+     */
+    boolean needsRehash(String storedHash);
+
+    /**
+     * Соль из сохранённого хеша (для колонки salt)
+     */
+    String extractSalt(String storedHash);
+
+    /**
+     * Текущие параметры для логов и команд администратора
+     */
+    String describe();
+}
@@ -0,0 +1,73 @@
+package org.alex_melan.secureAuth.utils;
+
+import java.util.List;
+
+/**
+ * Выбор алгоритма хеширования паролей.
+ *
+ * Новые пароли хешируются текущим алгоритмом из конфига. Сохранённый хеш
+ * проверяется алгоритмом, определённым по его префиксу, а после успешного входа
+ * переписывается текущим, если алгоритм или параметры стоимости изменились.
+ */
+public class PasswordHashers {
+
+    // Проверка хешей других алгоритмов: параметры берутся из самого хеша
+    private static final List<PasswordHasher> KNOWN = List.of(
+            new BCryptHasher(12),
+            new Pbkdf2Hasher(310_000),
+            new Argon2idHasher(65536, 3, 1)
+    );
+
+    private volatile PasswordHasher current;
+
+    public PasswordHashers(PasswordHasher current) {
+        this.current = current;
+    }
+
+    public String hash(String password) {
+        return current.hash(password);
+    }
+
+    public boolean verify(String password, String storedHash) {
+        PasswordHasher hasher = forHash(storedHash);
+        return hasher != null && hasher.verify(password, storedHash);
+    }
+
+    /**
+     * Нужно ли переписать хеш текущим алгоритмом после успешного входа
+     */
+    public boolean needsRehash(String storedHash) {
+        return current.needsRehash(storedHash);
+    }
+
+    public String extractSalt(String storedHash) {
+        PasswordHasher hasher = forHash(storedHash);
+        return hasher != null ? hasher.extractSalt(storedHash) : "";
+    }
+
+    private PasswordHasher forHash(String storedHash) {
+        PasswordHasher active = current;
+        if (active.supports(storedHash)) {
+            return active;
+        }
+
+        for (PasswordHasher hasher : KNOWN) {
+            if (hasher.supports(storedHash)) {
+                return hasher;
+            }
+        }
+        return null;
+    }
+
+    public PasswordHasher getCurrent() {
+        return current;
+    }
+
+    /**
+     * Смена текущего алгоритма или параметров без перезапуска.
+     * Уже сохранённые хеши обновятся при следующем входе игроков
+     */
+    public void setCurrent(PasswordHasher hasher) {
+        this.current = hasher;
+    }
+}
@@ -0,0 +1,258 @@
+package org.alex_melan.secureAuth.utils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Выделенный пул для хеширования и проверки паролей.
+ *
+ * BCrypt занимает сотни миллисекунд процессора на вызов, поэтому пул ограничен
+ * частью ядер и короткой очередью. Одновременно с одного IP и для одного аккаунта
+ * выполняется не больше заданного числа хешей: поток /login от ботов не занимает
+ * все потоки, а лишние запросы сразу отклоняются вместо ожидания в очереди.
+ */
+public class PasswordHashingPool {
+
+    public enum Rejection {
+        QUEUE_FULL,
+        IP_LIMIT,
+        ACCOUNT_LIMIT,
+        SHUTDOWN
+    }
+
+    /**
+     * Запрос отклонён без выполнения - игроку нужно повторить попытку позже
+     */
+    public static class RejectedException extends RejectedExecutionException {
+        private final Rejection reason;
+
+        public RejectedException(Rejection reason) {
+            super("Пул хеширования паролей отклонил задачу: " + reason);
+            this.reason = reason;
+        }
+
+        public Rejection getReason() {
+            return reason;
+        }
+    }
+
+    private final Logger logger;
+    private final ThreadPoolExecutor executor;
+    private final int queueCapacity;
+    private final int maxPerIp;
+    private final int maxPerAccount;
+
+    private final Map<String, Integer> inFlightByIp = new ConcurrentHashMap<>();
+    private final Map<String, Integer> inFlightByAccount = new ConcurrentHashMap<>();
+
+    // Метрики
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong[] rejected = new AtomicLong[Rejection.values().length];
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong totalHashNanos = new AtomicLong();
+    private final AtomicLong maxHashNanos = new AtomicLong();
+
+    public PasswordHashingPool(Logger logger, int threads, int queueCapacity, int maxPerIp, int maxPerAccount) {
+        this.logger = logger;
+        this.queueCapacity = queueCapacity;
+        this.maxPerIp = maxPerIp;
+        this.maxPerAccount = maxPerAccount;
+
+        for (Rejection reason : Rejection.values()) {
+            rejected[reason.ordinal()] = new AtomicLong();
+        }
+
+        this.executor = new ThreadPoolExecutor(
+                threads, threads,
+                60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new NamedThreadFactory("SecureAuth-Hash"),
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+
+    /**
+     * Выполнение хеширования с учётом лимитов
+     * @param ipAddress IP игрока (null - без лимита по IP)
+     * @param account имя аккаунта (null - без лимита по аккаунту)
+     * @return результат или RejectedException, если запрос не принят
+     */
+    public <T> CompletableFuture<T> submit(String ipAddress, String account, Supplier<T> work) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+
+        if (executor.isShutdown()) {
+            return reject(future, Rejection.SHUTDOWN);
+        }
+
+        String accountKey = account != null ? account.toLowerCase() : null;
+
+        if (!acquire(inFlightByIp, ipAddress, maxPerIp)) {
+            return reject(future, Rejection.IP_LIMIT);
+        }
+        if (!acquire(inFlightByAccount, accountKey, maxPerAccount)) {
+            release(inFlightByIp, ipAddress);
+            return reject(future, Rejection.ACCOUNT_LIMIT);
+        }
+
+        long enqueuedAt = System.nanoTime();
+        try {
+            executor.execute(new HashTask(() -> {
+                long startedAt = System.nanoTime();
+                totalWaitNanos.addAndGet(startedAt - enqueuedAt);
+
+                try {
+                    future.complete(work.get());
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                } finally {
+                    long hashNanos = System.nanoTime() - startedAt;
+                    totalHashNanos.addAndGet(hashNanos);
+                    maxHashNanos.accumulateAndGet(hashNanos, Math::max);
+                    completed.incrementAndGet();
+
+                    release(inFlightByIp, ipAddress);
+                    release(inFlightByAccount, accountKey);
+                }
+            }, () -> {
+                // Задача снята с очереди при остановке - освобождаем слоты и завершаем future
+                release(inFlightByIp, ipAddress);
+                release(inFlightByAccount, accountKey);
+                reject(future, Rejection.SHUTDOWN);
+            }));
+        } catch (RejectedExecutionException e) {
+            release(inFlightByIp, ipAddress);
+            release(inFlightByAccount, accountKey);
+            return reject(future, executor.isShutdown() ? Rejection.SHUTDOWN : Rejection.QUEUE_FULL);
+        }
+
+        return future;
+    }
+
+    private <T> CompletableFuture<T> reject(CompletableFuture<T> future, Rejection reason) {
+        rejected[reason.ordinal()].incrementAndGet();
+        future.completeExceptionally(new RejectedException(reason));
+        return future;
+    }
+
+    private static boolean acquire(Map<String, Integer> inFlight, String key, int limit) {
+        if (key == null) {
+            return true;
+        }
+
+        boolean[] acquired = new boolean[1];
+        inFlight.compute(key, (k, count) -> {
+            int current = count != null ? count : 0;
+            if (current >= limit) {
+                return count;
+            }
+            acquired[0] = true;
+            return current + 1;
+        });
+        return acquired[0];
+    }
+
+    private static void release(Map<String, Integer> inFlight, String key) {
+        if (key != null) {
+            inFlight.computeIfPresent(key, (k, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    /**
+     * Остановка пула с ожиданием уже принятых задач
+     * @param timeoutMillis максимальное время ожидания
+     */
+    public void shutdown(long timeoutMillis) {
+        executor.shutdown();
+
+        try {
+            if (!executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                int dropped = cancel(executor.shutdownNow());
+                logger.warning("Пул хеширования паролей не завершился за " + timeoutMillis + " мс, отменено задач: " + dropped);
+            }
+        } catch (InterruptedException e) {
+            cancel(executor.shutdownNow());
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Завершение future задач, которые так и не начали выполняться
+     */
+    private static int cancel(List<Runnable> dropped) {
+        for (Runnable task : dropped) {
+            ((HashTask) task).cancel();
+        }
+        return dropped.size();
+    }
+
+    /**
+     * Задача хеширования с обработчиком отмены при остановке пула
+     */
+    private static final class HashTask implements Runnable {
+        private final Runnable body;
+        private final Runnable onCancel;
+
+        private HashTask(Runnable body, Runnable onCancel) {
+            this.body = body;
+            this.onCancel = onCancel;
+        }
+
+        @Override
+        public void run() {
+            body.run();
+        }
+
+        private void cancel() {
+            onCancel.run();
+        }
+    }
+
+    // Метрики
+
+    public int getThreadCount() {
+        return executor.getCorePoolSize();
+    }
+
+    public int getActiveThreads() {
+        return executor.getActiveCount();
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    public long getRejectedCount(Rejection reason) {
+        return rejected[reason.ordinal()].get();
+    }
+
+    public double getAverageWaitMillis() {
+        long count = completed.get();
+        return count == 0 ? 0 : totalWaitNanos.get() / (double) count / 1_000_000.0;
+    }
+
+    public double getAverageHashMillis() {
+        long count = completed.get();
+        return count == 0 ? 0 : totalHashNanos.get() / (double) count / 1_000_000.0;
+    }
+
+    public double getMaxHashMillis() {
+        return maxHashNanos.get() / 1_000_000.0;
+    }
+}
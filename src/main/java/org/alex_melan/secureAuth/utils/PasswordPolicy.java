@@ -0,0 +1,309 @@
+package org.alex_melan.secureAuth.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Требования к паролю, собранные из конфига один раз.
+ *
+ * Классы символов хранятся в таблице по коду символа, поэтому проверка длины,
+ * классов, последовательностей и повторов выполняется за один проход по строке
+ * без регулярных выражений и без выделения памяти. Тот же объект формирует
+ * текст требований для лобби, /register и API.
+ */
+public final class PasswordPolicy {
+
+    public enum Violation {
+        TOO_SHORT,
+        TOO_LONG,
+        INVALID_CHARACTER,
+        NO_LOWERCASE,
+        NO_UPPERCASE,
+        NO_DIGIT,
+        NO_SPECIAL,
+        SEQUENCE,
+        REPEATING,
+        CONTAINS_USERNAME
+    }
+
+    private static final byte FORBIDDEN = 0;
+    private static final byte LOWER = 1;
+    private static final byte UPPER = 2;
+    private static final byte DIGIT = 3;
+    private static final byte SPECIAL = 4;
+
+    // Длина последовательности (abc, 321) и повтора (aaa), которые считаются нарушением
+    private static final int RUN_LENGTH = 3;
+    private static final int MIN_USERNAME_CHECK = 3;
+    // Биты найденных классов символов в результате прохода - выше битов нарушений
+    private static final int HAS_CLASS = 1 << 16;
+
+    private final byte[] classes = new byte[128];
+    private final int minLength;
+    private final int maxLength;
+    private final boolean requireLowercase;
+    private final boolean requireUppercase;
+    private final boolean requireDigit;
+    private final boolean requireSpecial;
+    private final boolean forbidSequences;
+    private final boolean forbidRepeating;
+    private final boolean forbidUsername;
+    private final String specialCharacters;
+    private final List<String> requirements;
+
+    public PasswordPolicy(int minLength, int maxLength,
+                          boolean requireLowercase, boolean requireUppercase, boolean requireDigit, boolean requireSpecial,
+                          String specialCharacters, boolean forbidSequences, boolean forbidRepeating, boolean forbidUsername) {
+        this.minLength = minLength;
+        this.maxLength = maxLength;
+        this.requireLowercase = requireLowercase;
+        this.requireUppercase = requireUppercase;
+        this.requireDigit = requireDigit;
+        this.requireSpecial = requireSpecial;
+        this.forbidSequences = forbidSequences;
+        this.forbidRepeating = forbidRepeating;
+        this.forbidUsername = forbidUsername;
+
+        for (char c = 'a'; c <= 'z'; c++) classes[c] = LOWER;
+        for (char c = 'A'; c <= 'Z'; c++) classes[c] = UPPER;
+        for (char c = '0'; c <= '9'; c++) classes[c] = DIGIT;
+
+        StringBuilder specials = new StringBuilder();
+        for (int i = 0; i < specialCharacters.length(); i++) {
+            char c = specialCharacters.charAt(i);
+            if (c < 128 && classes[c] == FORBIDDEN && c > ' ') {
+                classes[c] = SPECIAL;
+                specials.append(c);
+            }
+        }
+        this.specialCharacters = specials.toString();
+        this.requirements = Collections.unmodifiableList(buildRequirements());
+    }
+
+    /**
+     * Проверка пароля
+     * @param username имя игрока (null - без проверки вхождения имени)
+     * @return битовая маска нарушений (бит = Violation.ordinal()), 0 - пароль подходит
+     */
+    public int evaluate(CharSequence password, String username) {
+        return violations(scan(password), password, username);
+    }
+
+    /**
+     * Проверка с подробным результатом и оценкой надёжности (один проход по паролю)
+     */
+    public Result check(CharSequence password, String username) {
+        int scanned = scan(password);
+        return new Result(violations(scanned, password, username), strength(scanned, password.length()));
+    }
+
+    public boolean isValid(CharSequence password, String username) {
+        return evaluate(password, username) == 0;
+    }
+
+    /**
+     * Оценка надёжности от 0 до 100 (длина, разнообразие символов, отсутствие шаблонов)
+     */
+    public int strength(CharSequence password) {
+        return strength(scan(password), password.length());
+    }
+
+    /**
+     * Один проход по паролю: найденные классы символов, недопустимые символы,
+     * последовательности и повторы (независимо от того, запрещены ли они в конфиге)
+     */
+    private int scan(CharSequence password) {
+        int found = 0;
+        int sequenceRun = 1, sequenceStep = 0, repeatRun = 1;
+        char previous = 0;
+        byte previousType = FORBIDDEN;
+
+        for (int i = 0; i < password.length(); i++) {
+            char c = password.charAt(i);
+            byte type = c < 128 ? classes[c] : FORBIDDEN;
+            found |= type == FORBIDDEN ? bit(Violation.INVALID_CHARACTER) : HAS_CLASS << type;
+
+            if (i > 0) {
+                // Повтор одного символа: aaa
+                repeatRun = c == previous ? repeatRun + 1 : 1;
+                if (repeatRun >= RUN_LENGTH) {
+                    found |= bit(Violation.REPEATING);
+                }
+
+                // Последовательность без учёта регистра: abc, CBA, 123.
+                // Обе буквы или обе цифры: переход '9' -> ':' последовательностью не считается
+                int step = Character.toLowerCase(c) - Character.toLowerCase(previous);
+                boolean sameKind = type == DIGIT ? previousType == DIGIT
+                        : (type == LOWER || type == UPPER) && (previousType == LOWER || previousType == UPPER);
+                if (sameKind && (step == 1 || step == -1)) {
+                    sequenceRun = step == sequenceStep ? sequenceRun + 1 : 2;
+                    sequenceStep = step;
+                } else {
+                    sequenceRun = 1;
+                    sequenceStep = 0;
+                }
+                if (sequenceRun >= RUN_LENGTH) {
+                    found |= bit(Violation.SEQUENCE);
+                }
+            }
+            previous = c;
+            previousType = type;
+        }
+
+        return found;
+    }
+
+    private int violations(int scanned, CharSequence password, String username) {
+        int length = password.length();
+        int violations = scanned & bit(Violation.INVALID_CHARACTER);
+
+        if (length < minLength) violations |= bit(Violation.TOO_SHORT);
+        if (length > maxLength) violations |= bit(Violation.TOO_LONG);
+        if (requireLowercase && !hasClass(scanned, LOWER)) violations |= bit(Violation.NO_LOWERCASE);
+        if (requireUppercase && !hasClass(scanned, UPPER)) violations |= bit(Violation.NO_UPPERCASE);
+        if (requireDigit && !hasClass(scanned, DIGIT)) violations |= bit(Violation.NO_DIGIT);
+        if (requireSpecial && !hasClass(scanned, SPECIAL)) violations |= bit(Violation.NO_SPECIAL);
+        if (forbidSequences) violations |= scanned & bit(Violation.SEQUENCE);
+        if (forbidRepeating) violations |= scanned & bit(Violation.REPEATING);
+
+        if (forbidUsername && username != null && username.length() >= MIN_USERNAME_CHECK
+                && (containsIgnoreCase(password, username) || (length > 0 && containsIgnoreCase(username, password)))) {
+            violations |= bit(Violation.CONTAINS_USERNAME);
+        }
+
+        return violations;
+    }
+
+    private static int strength(int scanned, int length) {
+        if (length == 0) {
+            return 0;
+        }
+
+        int score = 0;
+        if (length >= 8) score += 10;
+        if (length >= 12) score += 10;
+        if (length >= 16) score += 10;
+        if (length >= 20) score += 10;
+
+        int variety = (hasClass(scanned, LOWER) ? 1 : 0) + (hasClass(scanned, UPPER) ? 1 : 0)
+                + (hasClass(scanned, DIGIT) ? 1 : 0) + (hasClass(scanned, SPECIAL) ? 1 : 0);
+        score += variety * 10;
+        if (length > 12 && variety >= 3) score += 10;
+
+        if ((scanned & bit(Violation.SEQUENCE)) == 0) score += 5;
+        if ((scanned & bit(Violation.REPEATING)) == 0) score += 5;
+
+        return Math.min(100, score);
+    }
+
+    private static boolean hasClass(int scanned, byte type) {
+        return (scanned & (HAS_CLASS << type)) != 0;
+    }
+
+    private static boolean containsIgnoreCase(CharSequence text, CharSequence part) {
+        int last = text.length() - part.length();
+        for (int start = 0; start <= last; start++) {
+            int i = 0;
+            while (i < part.length()
+                    && Character.toLowerCase(text.charAt(start + i)) == Character.toLowerCase(part.charAt(i))) {
+                i++;
+            }
+            if (i == part.length()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int bit(Violation violation) {
+        return 1 << violation.ordinal();
+    }
+
+    private List<String> buildRequirements() {
+        List<String> lines = new ArrayList<>();
+        lines.add("От §e" + minLength + "§7 до §e" + maxLength + "§7 символов");
+        if (requireUppercase) lines.add("Минимум одна заглавная буква (A-Z)");
+        if (requireLowercase) lines.add("Минимум одна строчная буква (a-z)");
+        if (requireDigit) lines.add("Минимум одна цифра (0-9)");
+        if (requireSpecial) lines.add("Минимум один спецсимвол");
+        lines.add("Разрешены латинские буквы, цифры и символы §e" + specialCharacters);
+        if (forbidSequences) lines.add("Без последовательностей вроде 123 или abc");
+        if (forbidRepeating) lines.add("Без повторов символа более 2 раз подряд");
+        if (forbidUsername) lines.add("Не должен содержать ваш никнейм");
+        return lines;
+    }
+
+    /**
+     * Текст сообщения для нарушения
+     */
+    public String describe(Violation violation) {
+        switch (violation) {
+            case TOO_SHORT: return "Пароль должен содержать минимум " + minLength + " символов";
+            case TOO_LONG: return "Пароль должен содержать максимум " + maxLength + " символов";
+            case INVALID_CHARACTER: return "Пароль содержит недопустимые символы. Разрешены: буквы, цифры и символы " + specialCharacters;
+            case NO_LOWERCASE: return "Пароль должен содержать минимум одну строчную букву (a-z)";
+            case NO_UPPERCASE: return "Пароль должен содержать минимум одну заглавную букву (A-Z)";
+            case NO_DIGIT: return "Пароль должен содержать минимум одну цифру (0-9)";
+            case NO_SPECIAL: return "Пароль должен содержать минимум один спецсимвол";
+            case SEQUENCE: return "Пароль не должен содержать последовательности типа '123' или 'abc'";
+            case REPEATING: return "Пароль не должен содержать повторяющиеся символы (более 2 подряд)";
+            case CONTAINS_USERNAME: return "Пароль не должен содержать ваш никнейм";
+            default: return violation.name();
+        }
+    }
+
+    // Геттеры
+    public int getMinLength() { return minLength; }
+    public int getMaxLength() { return maxLength; }
+    public String getSpecialCharacters() { return specialCharacters; }
+    /** Строки требований для игроков (без префикса пункта) */
+    public List<String> getRequirements() { return requirements; }
+
+    /**
+     * Результат проверки пароля
+     */
+    public final class Result {
+        private final int violations;
+        private final int strength;
+
+        private Result(int violations, int strength) {
+            this.violations = violations;
+            this.strength = strength;
+        }
+
+        public boolean isValid() {
+            return violations == 0;
+        }
+
+        public boolean has(Violation violation) {
+            return (violations & bit(violation)) != 0;
+        }
+
+        public Set<Violation> getViolations() {
+            Set<Violation> set = EnumSet.noneOf(Violation.class);
+            for (Violation violation : Violation.values()) {
+                if (has(violation)) {
+                    set.add(violation);
+                }
+            }
+            return set;
+        }
+
+        /** Сообщения о нарушениях для игрока */
+        public List<String> getMessages() {
+            List<String> messages = new ArrayList<>();
+            for (Violation violation : getViolations()) {
+                messages.add(describe(violation));
+            }
+            return messages;
+        }
+
+        /** Оценка надёжности от 0 до 100 */
+        public int getStrength() {
+            return strength;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package org.alex_melan.secureAuth.utils;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * PBKDF2-HMAC-SHA256 из JDK в формате PHC: $pbkdf2-sha256$i=310000$<соль>$<хеш>
+ */
+public class Pbkdf2Hasher implements PasswordHasher {
+
+    private static final String PREFIX = "$pbkdf2-sha256$";
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BYTES = 32;
+
+    private static final Base64.Encoder ENCODER = Base64.getEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getDecoder();
+
+    private final SecureRandom random = new SecureRandom();
+    private final int iterations;
+
+    public Pbkdf2Hasher(int iterations) {
+        this.iterations = iterations;
+    }
+
+    @Override
+    public String getName() {
+        return "pbkdf2";
+    }
+
+    @Override
+    public boolean supports(String storedHash) {
+        return storedHash != null && storedHash.startsWith(PREFIX);
+    }
+
+    @Override
+    public String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+
+        return PREFIX + "i=" + iterations + "$" + ENCODER.encodeToString(salt) + "$"
+                + ENCODER.encodeToString(derive(password, salt, iterations, HASH_BYTES));
+    }
+
+    @Override
+    public boolean verify(String password, String storedHash) {
+        if (password == null || !supports(storedHash)) {
+            return false;
+        }
+
+        try {
+            // $pbkdf2-sha256$i=N$соль$хеш -> ["", "pbkdf2-sha256", "i=N", соль, хеш]
+            String[] parts = storedHash.split("\\$");
+            if (parts.length != 5 || !parts[2].startsWith("i=")) {
+                return false;
+            }
+
+            int storedIterations = Integer.parseInt(parts[2].substring(2));
+            byte[] salt = DECODER.decode(parts[3]);
+            byte[] expected = DECODER.decode(parts[4]);
+
+            return MessageDigest.isEqual(expected, derive(password, salt, storedIterations, expected.length));
+        } catch (IllegalArgumentException e) {
+            // Повреждённый хеш
+            return false;
+        }
+    }
+
+    @Override
+    public boolean needsRehash(String storedHash) {
+        return !supports(storedHash) || !storedHash.startsWith(PREFIX + "i=" + iterations + "$");
+    }
+
+    @Override
+    public String extractSalt(String storedHash) {
+        return storedHash.split("\\$")[3];
+    }
+
+    @Override
+    public String describe() {
+        return "pbkdf2-sha256 (итераций: " + iterations + ")";
+    }
+
+    private static byte[] derive(String password, byte[] salt, int iterations, int length) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, length * 8);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PBKDF2-HMAC-SHA256 недоступен", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+}
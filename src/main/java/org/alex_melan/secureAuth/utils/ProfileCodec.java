@@ -0,0 +1,131 @@
+package org.alex_melan.secureAuth.utils;
+
+import org.yaml.snakeyaml.external.biz.base64Coder.Base64Coder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Двоичный формат хранения больших данных профиля (инвентари, достижения, статистика).
+ *
+ * Формат: [магический байт][версия][тип содержимого][исходный размер, 4 байта][данные Deflate].
+ * Инвентари хранятся без Base64: сериализованные байты сжимаются напрямую,
+ * при чтении строка Base64 восстанавливается для PlayerData.
+ */
+public final class ProfileCodec {
+
+    private static final byte MAGIC = 0x53;
+    private static final byte VERSION = 1;
+    private static final int HEADER_SIZE = 7;
+
+    /** Текст (JSON) в UTF-8 */
+    public static final byte TYPE_TEXT = 0;
+    /** Строка Base64, хранится как исходные байты */
+    public static final byte TYPE_BASE64 = 1;
+
+    private ProfileCodec() {
+    }
+
+    /**
+     * Сжатие значения
+     * @param value строковое значение из PlayerData
+     * @param type TYPE_TEXT или TYPE_BASE64
+     * @return BLOB или null для null
+     */
+    public static byte[] encode(String value, byte type) {
+        if (value == null) {
+            return null;
+        }
+
+        byte[] raw = null;
+        if (type == TYPE_BASE64) {
+            try {
+                raw = Base64Coder.decodeLines(value);
+            } catch (IllegalArgumentException e) {
+                // Некорректный Base64 сохраняем как есть, текстом
+                type = TYPE_TEXT;
+            }
+        }
+        if (raw == null) {
+            raw = value.getBytes(StandardCharsets.UTF_8);
+        }
+
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(HEADER_SIZE + raw.length / 2 + 16);
+            out.write(MAGIC);
+            out.write(VERSION);
+            out.write(type);
+            out.writeBytes(ByteBuffer.allocate(4).putInt(raw.length).array());
+
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(buffer);
+                out.write(buffer, 0, length);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Распаковка значения, записанного encode
+     * @throws IOException если данные повреждены или записаны неизвестной версией
+     */
+    public static String decode(byte[] blob) throws IOException {
+        if (blob == null) {
+            return null;
+        }
+        if (blob.length < HEADER_SIZE || blob[0] != MAGIC) {
+            throw new IOException("Неизвестный формат данных профиля");
+        }
+        if (blob[1] != VERSION) {
+            throw new IOException("Неподдерживаемая версия формата данных профиля: " + blob[1]);
+        }
+
+        byte type = blob[2];
+        int size = ByteBuffer.wrap(blob, 3, 4).getInt();
+        if (size < 0) {
+            throw new IOException("Некорректный размер данных профиля: " + size);
+        }
+
+        byte[] raw = new byte[size];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(blob, HEADER_SIZE, blob.length - HEADER_SIZE);
+            int read = 0;
+            while (read < size && !inflater.finished()) {
+                int n = inflater.inflate(raw, read, size - read);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                read += n;
+            }
+            if (read != size) {
+                throw new IOException("Данные профиля обрезаны: " + read + " из " + size + " байт");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Повреждённые данные профиля", e);
+        } finally {
+            inflater.end();
+        }
+
+        switch (type) {
+            case TYPE_TEXT:
+                return new String(raw, StandardCharsets.UTF_8);
+            case TYPE_BASE64:
+                return Base64Coder.encodeLines(raw);
+            default:
+                throw new IOException("Неизвестный тип данных профиля: " + type);
+        }
+    }
+}
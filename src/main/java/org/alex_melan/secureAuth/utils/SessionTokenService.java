@@ -0,0 +1,45 @@
+package org.alex_melan.secureAuth.utils;
+
+import java.security.SecureRandom;
+
+/**
+ * Идентификаторы сессий: случайный токен из SecureRandom.
+ *
+ * Токен не выдаётся игроку и не служит секретом - сессия ищется по имени игрока
+ * и IP, а хеш только идентифицирует запись. Поэтому достаточно самого случайного
+ * значения: создание сессии стоит чтение 32 байт вместо полного BCrypt.
+ * Хеши, созданные старыми версиями через BCrypt ($2a$/$2b$/$2y$), остаются
+ * действительными идентификаторами до истечения срока сессии.
+ */
+public class SessionTokenService {
+
+    private static final int TOKEN_BYTES = 32;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * Идентификатор новой сессии (64 шестнадцатеричных символа)
+     */
+    public String newSessionHash() {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        return toHex(bytes);
+    }
+
+    /**
+     * Хеш сессии, созданный старыми версиями через BCrypt
+     */
+    public static boolean isLegacyHash(String storedHash) {
+        return storedHash != null && storedHash.startsWith("$2");
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,85 @@
+package org.alex_melan.secureAuth.utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ограничение частоты по ключу без блокировок.
+ *
+ * Корзина токенов хранится одним числом - временем, к которому корзина снова
+ * станет полной (GCRA). Каждый запрос сдвигает его на интервал одного токена;
+ * если сдвиг выходит за ёмкость корзины, запрос отклоняется. Обновление - один
+ * compareAndSet, поэтому параллельные запросы не ждут друг друга.
+ */
+public class TokenBucketLimiter {
+
+    // Ключ для единственной общей корзины
+    private static final String GLOBAL_KEY = "";
+
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * @param perMinute пополнение корзины, токенов в минуту
+     * @param burst ёмкость корзины (запросов подряд без ожидания)
+     */
+    public TokenBucketLimiter(double perMinute, int burst) {
+        this.intervalNanos = (long) (60_000_000_000L / perMinute);
+        this.burstNanos = intervalNanos * burst;
+    }
+
+    /**
+     * Попытка взять токен
+     * @return 0 если токен выдан, иначе сколько миллисекунд ждать следующего
+     */
+    public long tryAcquire(String key) {
+        AtomicLong bucket = buckets.computeIfAbsent(key != null ? key : GLOBAL_KEY, k -> new AtomicLong(Long.MIN_VALUE));
+        long now = System.nanoTime();
+
+        while (true) {
+            long fullAt = bucket.get();
+            long next = (fullAt == Long.MIN_VALUE || fullAt - now < 0 ? now : fullAt) + intervalNanos;
+
+            long overflow = next - now - burstNanos;
+            if (overflow > 0) {
+                return Math.max(1, overflow / 1_000_000);
+            }
+
+            if (bucket.compareAndSet(fullAt, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Возврат токена, выданного tryAcquire (запрос отклонён другим лимитом)
+     */
+    public void release(String key) {
+        AtomicLong bucket = buckets.get(key != null ? key : GLOBAL_KEY);
+        if (bucket == null) {
+            return;
+        }
+
+        while (true) {
+            long fullAt = bucket.get();
+            if (fullAt == Long.MIN_VALUE || bucket.compareAndSet(fullAt, fullAt - intervalNanos)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Удаление полных корзин - по ним нет ограничений, запись не нужна.
+     * Запрос, совпавший с удалением, в худшем случае вернёт корзине один токен
+     */
+    public void cleanup() {
+        long now = System.nanoTime();
+        buckets.entrySet().removeIf(entry -> entry.getValue().get() - now < 0);
+    }
+
+    public int size() {
+        return buckets.size();
+    }
+}